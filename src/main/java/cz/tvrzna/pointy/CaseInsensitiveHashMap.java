@@ -8,7 +8,11 @@ import java.util.HashMap;
  *
  * @since 0.1.0
  * @author michalt
+ * @deprecated headers are stored in
+ *             {@link cz.tvrzna.pointy.http.HttpHeaders}, that does not allocate
+ *             new <code>String</code> for each lookup.
  */
+@Deprecated
 public class CaseInsensitiveHashMap extends HashMap<String, String>
 {
 	private static final long serialVersionUID = -7989053167461710859L;
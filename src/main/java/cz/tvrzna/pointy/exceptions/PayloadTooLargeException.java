@@ -0,0 +1,44 @@
+package cz.tvrzna.pointy.exceptions;
+
+/**
+ * The Class PayloadTooLargeException.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class PayloadTooLargeException extends RuntimeException
+{
+	private static final long serialVersionUID = -4378152279614092651L;
+
+	/**
+	 * Instantiates a new payload too large exception.
+	 */
+	public PayloadTooLargeException()
+	{
+		super();
+	}
+
+	/**
+	 * Instantiates a new payload too large exception.
+	 *
+	 * @param message
+	 *          the message
+	 */
+	public PayloadTooLargeException(String message)
+	{
+		super(message);
+	}
+
+	/**
+	 * Instantiates a new payload too large exception.
+	 *
+	 * @param message
+	 *          the message
+	 * @param throwable
+	 *          the throwable
+	 */
+	public PayloadTooLargeException(String message, Throwable throwable)
+	{
+		super(message, throwable);
+	}
+}
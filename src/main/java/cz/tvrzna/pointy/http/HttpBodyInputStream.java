@@ -0,0 +1,79 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The <code>InputStream</code> of request body, that is read directly from
+ * client's connection. It is bounded by <code>Content-Length</code> or by
+ * chunks of body, so it never reads next request on the same connection.
+ * Closing of stream does not close the connection, it skips unread rest of
+ * body instead.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+class HttpBodyInputStream extends InputStream
+{
+	private final InputStream is;
+	private final HttpRequestParser parser;
+	private final byte[] single = new byte[1];
+	private boolean closed = false;
+
+	/**
+	 * Instantiates a new http body input stream.
+	 *
+	 * @param is
+	 *          the input stream of client's connection
+	 * @param parser
+	 *          the parser with parsed head of request
+	 */
+	HttpBodyInputStream(InputStream is, HttpRequestParser parser)
+	{
+		this.is = is;
+		this.parser = parser;
+	}
+
+	@Override
+	public int read() throws IOException
+	{
+		int read;
+		do
+		{
+			read = read(single, 0, 1);
+		}
+		while (read == 0);
+		return read < 0 ? -1 : single[0] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException
+	{
+		if (closed)
+		{
+			return -1;
+		}
+		return parser.readBody(is, b, off, len);
+	}
+
+	/**
+	 * Skips unread rest of body, so the next request could be read from
+	 * connection.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	@Override
+	public void close() throws IOException
+	{
+		if (!closed)
+		{
+			byte[] buffer = new byte[4096];
+			while (read(buffer, 0, buffer.length) >= 0)
+			{
+				// Body is skipped.
+			}
+			closed = true;
+		}
+	}
+}
@@ -2,7 +2,11 @@ package cz.tvrzna.pointy.http;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.Socket;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.Map;
 
 /**
  * This class handles HTTP request and response is one object, that is used in
@@ -20,11 +24,12 @@ public class HttpContext
 
 	private final HttpRequest request;
 	private final HttpResponse response;
+	private Map<String, String> pathParams = Collections.emptyMap();
 
 	/**
 	 * Instantiates a new HttpContext and its {@link HttpRequest} and
 	 * {@link HttpResponse}. It also tries to recognize, if response could be
-	 * compressed with <code>GZIP</code>.
+	 * compressed with <code>GZIP</code> and if connection could be kept alive.
 	 *
 	 * @param socket
 	 *          the socket
@@ -33,11 +38,30 @@ public class HttpContext
 	 */
 	public HttpContext(Socket socket) throws IOException
 	{
-		request = new HttpRequest(socket);
-		response = new HttpResponse(socket.getOutputStream());
+		this(new HttpRequest(socket), new HttpResponse(socket.getOutputStream()));
+	}
+
+	/**
+	 * Instantiates a new HttpContext from already created {@link HttpRequest}
+	 * and {@link HttpResponse}. It also tries to recognize, if response could be
+	 * compressed with <code>GZIP</code>, if connection could be kept alive and
+	 * if only head of response should be sent.
+	 *
+	 * @param request
+	 *          the request
+	 * @param response
+	 *          the response
+	 * @since 0.3.0
+	 */
+	public HttpContext(HttpRequest request, HttpResponse response)
+	{
+		this.request = request;
+		this.response = response;
 
 		String acceptEncoding = getHeader(HEADER_ACCEPT_ENCODING);
 		response.setAllowedGzip(acceptEncoding != null && acceptEncoding.contains("gzip"));
+		response.setKeepAlive(request.isKeepAlive());
+		response.setHeadOnly("HEAD".equals(request.getMethod()));
 	}
 
 	/**
@@ -65,6 +89,44 @@ public class HttpContext
 		response.getHttpHeaders().put(headerName, headerValue);
 	}
 
+	/**
+	 * Gets the value of named path parameter, that is defined in route, e.g.
+	 * <code>id</code> in <code>/users/{id}</code>.
+	 *
+	 * @param name
+	 *          the name
+	 * @return the path parameter, or <code>null</code> if it is not defined
+	 * @since 0.3.0
+	 */
+	public String getPathParam(String name)
+	{
+		return pathParams.get(name);
+	}
+
+	/**
+	 * Gets the path parameters of currently handling route.
+	 *
+	 * @return the path params
+	 * @since 0.3.0
+	 */
+	public Map<String, String> getPathParams()
+	{
+		return pathParams;
+	}
+
+	/**
+	 * Sets the path parameters. It is set by router before each route is
+	 * invoked.
+	 *
+	 * @param pathParams
+	 *          the path params
+	 * @since 0.3.0
+	 */
+	public void setPathParams(Map<String, String> pathParams)
+	{
+		this.pathParams = pathParams;
+	}
+
 	/**
 	 * Gets the request uri.
 	 *
@@ -75,6 +137,19 @@ public class HttpContext
 		return request.getUri();
 	}
 
+	/**
+	 * Gets the request body as <code>InputStream</code>, that is read lazily
+	 * from client's connection.
+	 *
+	 * @return the body input stream
+	 * @see HttpRequest#getBodyInputStream()
+	 * @since 0.3.0
+	 */
+	public InputStream getBodyInputStream()
+	{
+		return request.getBodyInputStream();
+	}
+
 	/**
 	 * Gets the request.
 	 *
@@ -162,6 +237,25 @@ public class HttpContext
 		}
 	}
 
+	/**
+	 * Sends the <code>byte[]</code> content.
+	 *
+	 * @param content
+	 *          the content
+	 * @since 0.3.0
+	 */
+	public void send(byte[] content)
+	{
+		try
+		{
+			response.send(content);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Sends the <code>InputStream</code> content.
 	 *
@@ -180,6 +274,111 @@ public class HttpContext
 		}
 	}
 
+	/**
+	 * Sends the content of <code>file</code>.
+	 *
+	 * @param file
+	 *          the file
+	 * @since 0.3.0
+	 */
+	public void send(Path file)
+	{
+		try
+		{
+			response.send(file);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Streams the response body produced by <code>writer</code> with
+	 * <code>Transfer-Encoding: chunked</code>. Head is sent immediately, body is
+	 * sent in chunks, as it is written, so it is never held in memory as whole.
+	 * If writer fails, response is not finished and connection is closed, so
+	 * client could recognize incomplete body.
+	 *
+	 * @param writer
+	 *          the writer of body
+	 * @since 0.3.0
+	 */
+	public void stream(HttpStreamWriter writer)
+	{
+		try
+		{
+			OutputStream os = response.stream();
+			writer.write(os);
+			os.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Opens <code>Server-Sent Events</code> stream, that stays open after
+	 * handler returns. Events could be sent by returned stream, or by
+	 * {@link HttpEventBroadcaster}, that the stream is subscribed to.
+	 *
+	 * @return the event stream, or <code>null</code> if it could not be opened
+	 * @since 0.3.0
+	 */
+	public HttpEventStream eventStream()
+	{
+		try
+		{
+			return response.eventStream();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Upgrades connection to <code>WebSocket</code> protocol. Messages are
+	 * passed to <code>handler</code>, until connection is closed.
+	 *
+	 * @param handler
+	 *          the handler of messages
+	 * @return the web socket, or <code>null</code> if handshake is invalid
+	 * @since 0.3.0
+	 */
+	public HttpWebSocket upgrade(HttpWebSocketHandler handler)
+	{
+		try
+		{
+			return response.upgrade(request, handler);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Sends response with HTTP code 304, that tells client to use its cached
+	 * representation.
+	 *
+	 * @since 0.3.0
+	 */
+	public void notModified()
+	{
+		try
+		{
+			response.notModified();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
 	/**
 	 * Redirects (HTTP code 302) to defined <code>url</code>.
 	 *
@@ -0,0 +1,161 @@
+package cz.tvrzna.pointy.http;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Event of <code>Server-Sent Events</code> stream. Event is encoded only
+ * once, when it is created, including framing of chunked response, so the same
+ * bytes could be written to any count of {@link HttpEventStream}s.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public final class HttpEvent
+{
+	private final String id;
+	private final String event;
+	private final String data;
+	private final byte[] bytes;
+
+	/**
+	 * Instantiates a new http event with data only.
+	 *
+	 * @param data
+	 *          the data
+	 */
+	public HttpEvent(String data)
+	{
+		this(null, null, data);
+	}
+
+	/**
+	 * Instantiates a new http event with name of event.
+	 *
+	 * @param event
+	 *          the event, or <code>null</code> for default event
+	 * @param data
+	 *          the data
+	 */
+	public HttpEvent(String event, String data)
+	{
+		this(null, event, data);
+	}
+
+	/**
+	 * Instantiates a new http event with id, that client sends back in
+	 * <code>Last-Event-ID</code> header, when it reconnects.
+	 *
+	 * @param id
+	 *          the id, or <code>null</code>
+	 * @param event
+	 *          the event, or <code>null</code> for default event
+	 * @param data
+	 *          the data
+	 */
+	public HttpEvent(String id, String event, String data)
+	{
+		this.id = id;
+		this.event = event;
+		this.data = data;
+
+		StringBuilder sb = new StringBuilder();
+		appendField(sb, "id", id);
+		appendField(sb, "event", event);
+		if (data != null)
+		{
+			for (String line : data.split("\r\n|\r|\n", -1))
+			{
+				appendField(sb, "data", line);
+			}
+		}
+		sb.append('\n');
+		this.bytes = toChunk(sb.toString().getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Appends the field of event. Line breaks are removed from value, because
+	 * they would end the field.
+	 *
+	 * @param sb
+	 *          the sb
+	 * @param name
+	 *          the name
+	 * @param value
+	 *          the value
+	 */
+	private static void appendField(StringBuilder sb, String name, String value)
+	{
+		if (value != null)
+		{
+			sb.append(name).append(": ");
+			for (int i = 0; i < value.length(); i++)
+			{
+				char c = value.charAt(i);
+				if (c != '\r' && c != '\n')
+				{
+					sb.append(c);
+				}
+			}
+			sb.append('\n');
+		}
+	}
+
+	/**
+	 * Encodes the bytes as one chunk of chunked response.
+	 *
+	 * @param payload
+	 *          the payload
+	 * @return the chunk
+	 */
+	static byte[] toChunk(byte[] payload)
+	{
+		byte[] size = (Integer.toHexString(payload.length) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+		byte[] chunk = new byte[size.length + payload.length + 2];
+		System.arraycopy(size, 0, chunk, 0, size.length);
+		System.arraycopy(payload, 0, chunk, size.length, payload.length);
+		chunk[chunk.length - 2] = '\r';
+		chunk[chunk.length - 1] = '\n';
+		return chunk;
+	}
+
+	/**
+	 * Gets the id.
+	 *
+	 * @return the id
+	 */
+	public String getId()
+	{
+		return id;
+	}
+
+	/**
+	 * Gets the event.
+	 *
+	 * @return the event
+	 */
+	public String getEvent()
+	{
+		return event;
+	}
+
+	/**
+	 * Gets the data.
+	 *
+	 * @return the data
+	 */
+	public String getData()
+	{
+		return data;
+	}
+
+	/**
+	 * Gets the encoded chunk of event. Returned array is shared, so it must not
+	 * be modified.
+	 *
+	 * @return the bytes
+	 */
+	byte[] getBytes()
+	{
+		return bytes;
+	}
+}
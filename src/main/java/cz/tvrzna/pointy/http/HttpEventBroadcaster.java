@@ -0,0 +1,118 @@
+package cz.tvrzna.pointy.http;
+
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Broadcaster of <code>Server-Sent Events</code> to all subscribed
+ * {@link HttpEventStream}s. Each event is encoded only once and the same bytes
+ * are queued to all streams, so broadcast costs only one write per
+ * subscriber.<br>
+ * Events are queued by each stream without waiting for client, on
+ * {@link cz.tvrzna.pointy.server.PointyServer} they are written by worker of
+ * stream, on {@link cz.tvrzna.pointy.server.PointyNioServer} by event loop.
+ * Client, that does not read events, is disconnected instead of blocking
+ * others. Disconnected streams are unsubscribed automatically during
+ * broadcast or {@link #heartbeat()}.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class HttpEventBroadcaster
+{
+	private final Set<HttpEventStream> subscribers = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Subscribes the stream.
+	 *
+	 * @param stream
+	 *          the stream
+	 */
+	public void subscribe(HttpEventStream stream)
+	{
+		subscribers.add(stream);
+	}
+
+	/**
+	 * Unsubscribes the stream.
+	 *
+	 * @param stream
+	 *          the stream
+	 */
+	public void unsubscribe(HttpEventStream stream)
+	{
+		subscribers.remove(stream);
+	}
+
+	/**
+	 * Broadcasts the event to all subscribers.
+	 *
+	 * @param event
+	 *          the event
+	 * @return the count of subscribers, that received event
+	 */
+	public int broadcast(HttpEvent event)
+	{
+		int count = 0;
+		for (Iterator<HttpEventStream> it = subscribers.iterator(); it.hasNext();)
+		{
+			if (it.next().send(event))
+			{
+				count++;
+			}
+			else
+			{
+				it.remove();
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Broadcasts the event with data only to all subscribers.
+	 *
+	 * @param data
+	 *          the data
+	 * @return the count of subscribers, that received event
+	 */
+	public int broadcast(String data)
+	{
+		return broadcast(new HttpEvent(data));
+	}
+
+	/**
+	 * Sends heartbeat to all subscribers, so disconnected clients are detected
+	 * and unsubscribed. It should be invoked periodically, e.g. by
+	 * <code>ScheduledExecutorService</code>.
+	 *
+	 * @return the count of connected subscribers
+	 */
+	public int heartbeat()
+	{
+		subscribers.removeIf(stream -> !stream.heartbeat());
+		return subscribers.size();
+	}
+
+	/**
+	 * Closes and unsubscribes all streams.
+	 */
+	public void close()
+	{
+		for (Iterator<HttpEventStream> it = subscribers.iterator(); it.hasNext();)
+		{
+			it.next().close();
+			it.remove();
+		}
+	}
+
+	/**
+	 * Gets the count of subscribers.
+	 *
+	 * @return the subscriber count
+	 */
+	public int getSubscriberCount()
+	{
+		return subscribers.size();
+	}
+}
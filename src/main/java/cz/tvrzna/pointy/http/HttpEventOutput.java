@@ -0,0 +1,27 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Output of response, that is able to queue buffers of long-lived
+ * {@link HttpEventStream} without waiting for client, so one slow client does
+ * not block writing of events to other clients.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public interface HttpEventOutput extends HttpGatheringOutput
+{
+	/**
+	 * Queues the buffer without waiting. If client does not read and too many
+	 * bytes are already waiting to be written, connection is closed.
+	 *
+	 * @param buffer
+	 *          the buffer
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred, or that connection
+	 *           was closed.
+	 */
+	void offer(ByteBuffer buffer) throws IOException;
+}
@@ -0,0 +1,340 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Long-lived <code>Server-Sent Events</code> stream opened by
+ * {@link HttpContext#eventStream()}. Connection is kept open after handler
+ * returns, events could be sent from any <code>Thread</code>, until stream is
+ * closed by server or client.<br>
+ * Events are never written to client by other <code>Thread</code>, than the
+ * one, that opened stream. Events sent from other <code>Threads</code> are
+ * queued and they are written, while opening <code>Thread</code> waits in
+ * {@link #awaitClose()}, as worker of
+ * {@link cz.tvrzna.pointy.server.PointyServer} does. Client, that does not read
+ * events, is disconnected, when more than 256 kB of events are waiting for
+ * it, so it never blocks sender. On
+ * {@link cz.tvrzna.pointy.server.PointyNioServer} events are queued by
+ * connection in the same way.<br>
+ * Disconnect of client is detected, when writing fails, so idle streams should
+ * send {@link #heartbeat()} periodically. Streams, that send the same events,
+ * could be grouped in {@link HttpEventBroadcaster}.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public final class HttpEventStream
+{
+	private static final byte[] HEARTBEAT = HttpEvent.toChunk(":\n\n".getBytes(StandardCharsets.US_ASCII));
+	private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+
+	private static final int MAX_QUEUED_BYTES = 262144;
+
+	private final HttpResponse response;
+	private final OutputStream os;
+	private final Thread owner = Thread.currentThread();
+	private final Deque<byte[]> queue = new ArrayDeque<>();
+	private int queuedBytes = 0;
+	private boolean writing = false;
+	private boolean finished = false;
+	private volatile boolean aborted = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Instantiates a new http event stream.
+	 *
+	 * @param response
+	 *          the response
+	 * @param os
+	 *          the output stream of connection
+	 */
+	HttpEventStream(HttpResponse response, OutputStream os)
+	{
+		this.response = response;
+		this.os = os;
+	}
+
+	/**
+	 * Sends the event with data only.
+	 *
+	 * @param data
+	 *          the data
+	 * @return true, if event was sent
+	 */
+	public boolean send(String data)
+	{
+		return send(new HttpEvent(data));
+	}
+
+	/**
+	 * Sends the event.
+	 *
+	 * @param event
+	 *          the event
+	 * @param data
+	 *          the data
+	 * @return true, if event was sent
+	 */
+	public boolean send(String event, String data)
+	{
+		return send(new HttpEvent(event, data));
+	}
+
+	/**
+	 * Sends the event.
+	 *
+	 * @param event
+	 *          the event
+	 * @return true, if event was sent, false if stream is closed
+	 */
+	public boolean send(HttpEvent event)
+	{
+		return write(event.getBytes());
+	}
+
+	/**
+	 * Sends the time, that client should wait before reconnecting.
+	 *
+	 * @param retryMs
+	 *          the retry in milliseconds
+	 * @return true, if it was sent
+	 */
+	public boolean retry(long retryMs)
+	{
+		return write(HttpEvent.toChunk(("retry: " + retryMs + "\n\n").getBytes(StandardCharsets.US_ASCII)));
+	}
+
+	/**
+	 * Sends the comment, that is ignored by client, but it keeps connection
+	 * alive and detects disconnected client.
+	 *
+	 * @return true, if it was sent, false if client is disconnected
+	 */
+	public boolean heartbeat()
+	{
+		return write(HEARTBEAT);
+	}
+
+	/**
+	 * Writes the encoded chunk. On {@link HttpEventOutput} chunk is queued by
+	 * connection, otherwise it is added to queue of stream. Queue is written by
+	 * <code>Thread</code>, that created stream, either immediately, or by
+	 * {@link #awaitClose()}, other threads never wait for client. If client does
+	 * not read and queue exceeds <code>MAX_QUEUED_BYTES</code>, or if writing fails,
+	 * stream is aborted.
+	 *
+	 * @param chunk
+	 *          the chunk
+	 * @return true, if it was written or queued
+	 */
+	private boolean write(byte[] chunk)
+	{
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return false;
+			}
+			if (os instanceof HttpEventOutput)
+			{
+				try
+				{
+					((HttpEventOutput) os).offer(ByteBuffer.wrap(chunk));
+					return true;
+				}
+				catch (IOException e)
+				{
+					closed = true;
+					notifyAll();
+					return false;
+				}
+			}
+			if (queuedBytes + chunk.length > MAX_QUEUED_BYTES)
+			{
+				abort();
+				return false;
+			}
+			queue.add(chunk);
+			queuedBytes += chunk.length;
+			notifyAll();
+		}
+		if (Thread.currentThread() == owner)
+		{
+			drain(false);
+		}
+		return !aborted;
+	}
+
+	/**
+	 * Writes queued chunks to output, if no other <code>Thread</code> is writing
+	 * them. When stream is closed and all chunks are written, the last chunk is
+	 * written and response is finished.
+	 *
+	 * @param untilClosed
+	 *          true, if it should wait for next chunks, until stream is closed
+	 * @return true, if chunks were written by current <code>Thread</code>
+	 */
+	private boolean drain(boolean untilClosed)
+	{
+		synchronized (this)
+		{
+			if (writing)
+			{
+				return false;
+			}
+			writing = true;
+		}
+		try
+		{
+			while (true)
+			{
+				byte[] chunk;
+				synchronized (this)
+				{
+					while (untilClosed && queue.isEmpty() && !closed)
+					{
+						wait();
+					}
+					chunk = queue.poll();
+					if (chunk == null)
+					{
+						break;
+					}
+				}
+				os.write(chunk);
+				os.flush();
+				synchronized (this)
+				{
+					queuedBytes -= chunk.length;
+				}
+			}
+			if (closed && !aborted && !finished)
+			{
+				finished = true;
+				os.write(LAST_CHUNK);
+				response.finish();
+			}
+		}
+		catch (IOException e)
+		{
+			abort();
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+		finally
+		{
+			synchronized (this)
+			{
+				writing = false;
+				notifyAll();
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Aborts the stream without the last chunk. Queued chunks are dropped and
+	 * output is closed, so <code>Thread</code>, that is blocked by writing to
+	 * client, is released.
+	 */
+	private synchronized void abort()
+	{
+		closed = true;
+		aborted = true;
+		queue.clear();
+		queuedBytes = 0;
+		notifyAll();
+		try
+		{
+			os.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Closes the stream and finishes the response, so connection is closed.
+	 * Chunks queued before are written first.
+	 */
+	public void close()
+	{
+		synchronized (this)
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			notifyAll();
+			if (os instanceof HttpEventOutput)
+			{
+				try
+				{
+					os.write(LAST_CHUNK);
+					response.finish();
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+				return;
+			}
+		}
+		if (Thread.currentThread() == owner)
+		{
+			drain(false);
+		}
+	}
+
+	/**
+	 * Checks if is closed.
+	 *
+	 * @return true, if is closed
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
+	/**
+	 * Waits, until stream is closed by server or until disconnect of client is
+	 * detected. Meanwhile, events queued by other <code>Threads</code> are
+	 * written by current one.
+	 *
+	 * @throws InterruptedException
+	 *           the interrupted exception
+	 */
+	public void awaitClose() throws InterruptedException
+	{
+		while (!(os instanceof HttpEventOutput) && !drain(true))
+		{
+			synchronized (this)
+			{
+				while (writing)
+				{
+					wait();
+				}
+			}
+		}
+		synchronized (this)
+		{
+			while (!closed || writing)
+			{
+				wait();
+			}
+		}
+		if (Thread.interrupted())
+		{
+			throw new InterruptedException();
+		}
+	}
+}
@@ -0,0 +1,27 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Output of response, that is able to write more buffers at once without
+ * copying them into one, e.g. by gathering write of
+ * <code>SocketChannel</code>. {@link HttpResponse} uses it to write head and
+ * body of response together. Buffers must not be modified after they are
+ * passed to output.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public interface HttpGatheringOutput
+{
+	/**
+	 * Writes the buffers in defined order.
+	 *
+	 * @param buffers
+	 *          the buffers
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	void write(ByteBuffer... buffers) throws IOException;
+}
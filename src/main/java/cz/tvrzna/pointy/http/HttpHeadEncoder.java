@@ -0,0 +1,236 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Encoder of HTTP response head, that writes bytes directly into reusable
+ * buffer of current thread. Status lines of all status codes are encoded only
+ * once, <code>Date</code> header is encoded at most once per second.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+final class HttpHeadEncoder
+{
+	private static final int MAX_RETAINED_SIZE = 65536;
+	private static final byte[] HEADER_SEPARATOR = { ':', ' ' };
+	private static final byte[] CRLF = { '\r', '\n' };
+	private static final byte[][] STATUS_LINES = new byte[600][];
+	private static final ThreadLocal<Buffer> BUFFER = ThreadLocal.withInitial(Buffer::new);
+
+	private static volatile CachedDate cachedDate;
+
+	static
+	{
+		for (int status = 100; status < STATUS_LINES.length; status++)
+		{
+			STATUS_LINES[status] = encodeStatusLine(status);
+		}
+	}
+
+	/**
+	 * Instantiates a new http head encoder.
+	 */
+	private HttpHeadEncoder()
+	{
+	}
+
+	/**
+	 * Encodes the response head into buffer of current thread. Buffer has to be
+	 * returned by {@link #release(Buffer)}, when it is written.
+	 *
+	 * @param status
+	 *          the status
+	 * @param headers
+	 *          the headers
+	 * @return the buffer with encoded head
+	 */
+	static Buffer encode(int status, HttpHeaders headers)
+	{
+		Buffer buffer = BUFFER.get();
+		buffer.reset();
+		buffer.write(getStatusLine(status));
+		if (!headers.containsKey(HttpHeaders.DATE))
+		{
+			buffer.write(getDateHeader());
+		}
+		headers.forEachValue((name, value) -> {
+			buffer.writeAscii(name);
+			buffer.write(HEADER_SEPARATOR);
+			if (value != null)
+			{
+				buffer.writeAscii(value);
+			}
+			buffer.write(CRLF);
+		});
+		buffer.write(CRLF);
+		return buffer;
+	}
+
+	/**
+	 * Releases the buffer. Buffer, that grew too much, is not kept for next
+	 * response.
+	 *
+	 * @param buffer
+	 *          the buffer
+	 */
+	static void release(Buffer buffer)
+	{
+		if (buffer.capacity() > MAX_RETAINED_SIZE)
+		{
+			BUFFER.remove();
+		}
+		else
+		{
+			buffer.reset();
+		}
+	}
+
+	/**
+	 * Gets the encoded status line including line break.
+	 *
+	 * @param status
+	 *          the status
+	 * @return the status line
+	 */
+	static byte[] getStatusLine(int status)
+	{
+		if (status >= 100 && status < STATUS_LINES.length)
+		{
+			return STATUS_LINES[status];
+		}
+		return encodeStatusLine(status);
+	}
+
+	/**
+	 * Gets the encoded <code>Date</code> header including line break. Header is
+	 * encoded again only when second changes.
+	 *
+	 * @return the date header
+	 */
+	static byte[] getDateHeader()
+	{
+		long second = System.currentTimeMillis() / 1000;
+		CachedDate date = cachedDate;
+		if (date == null || date.second != second)
+		{
+			String header = HttpHeaders.DATE + ": " + HttpHeaders.formatDate(second * 1000) + "\r\n";
+			date = new CachedDate(second, header.getBytes(StandardCharsets.US_ASCII));
+			cachedDate = date;
+		}
+		return date.bytes;
+	}
+
+	/**
+	 * Encodes the status line.
+	 *
+	 * @param status
+	 *          the status
+	 * @return the status line
+	 */
+	private static byte[] encodeStatusLine(int status)
+	{
+		return ("HTTP/1.1 " + status + " " + HttpStatus.getReasonPhrase(status) + "\r\n").getBytes(StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * The reusable buffer, that writes <code>ASCII</code> characters without
+	 * charset encoder.
+	 */
+	static class Buffer extends ByteArrayOutputStream
+	{
+		/**
+		 * Instantiates a new buffer.
+		 */
+		private Buffer()
+		{
+			super(1024);
+		}
+
+		/**
+		 * Writes the string. Characters outside of <code>ASCII</code> are encoded
+		 * in <code>UTF-8</code>.
+		 *
+		 * @param value
+		 *          the value
+		 */
+		void writeAscii(String value)
+		{
+			int length = value.length();
+			for (int i = 0; i < length; i++)
+			{
+				if (value.charAt(i) >= 0x80)
+				{
+					write(value.getBytes(StandardCharsets.UTF_8));
+					return;
+				}
+			}
+			ensureCapacity(count + length);
+			for (int i = 0; i < length; i++)
+			{
+				buf[count++] = (byte) value.charAt(i);
+			}
+		}
+
+		/**
+		 * Writes the bytes.
+		 *
+		 * @param bytes
+		 *          the bytes
+		 */
+		@Override
+		public void write(byte[] bytes)
+		{
+			write(bytes, 0, bytes.length);
+		}
+
+		/**
+		 * Ensures capacity of buffer.
+		 *
+		 * @param capacity
+		 *          the capacity
+		 */
+		private void ensureCapacity(int capacity)
+		{
+			if (capacity > buf.length)
+			{
+				buf = Arrays.copyOf(buf, Math.max(buf.length * 2, capacity));
+			}
+		}
+
+		/**
+		 * Gets the capacity of buffer.
+		 *
+		 * @return the capacity
+		 */
+		int capacity()
+		{
+			return buf.length;
+		}
+	}
+
+	/**
+	 * The encoded date header of one second.
+	 */
+	private static class CachedDate
+	{
+		private final long second;
+		private final byte[] bytes;
+
+		/**
+		 * Instantiates a new cached date.
+		 *
+		 * @param second
+		 *          the second
+		 * @param bytes
+		 *          the bytes
+		 */
+		private CachedDate(long second, byte[] bytes)
+		{
+			this.second = second;
+			this.bytes = bytes;
+		}
+	}
+}
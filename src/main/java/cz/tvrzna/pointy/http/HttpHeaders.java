@@ -0,0 +1,719 @@
+package cz.tvrzna.pointy.http;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+
+/**
+ * Case insensitive container of HTTP headers. Names are stored in lower case,
+ * well-known names are replaced by shared constants, so they are not
+ * allocated again for each request. Lookup folds case of <code>ASCII</code>
+ * characters during hashing and comparing, so it does not allocate any
+ * object.<br>
+ * Header could have more values, that are added by {@link #add(String, String)}
+ * and read by {@link #getAll(String)}. Methods of <code>Map</code> work with
+ * the first value of each header, while {@link #forEachValue(BiConsumer)}
+ * iterates all values in order, in which they were added.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class HttpHeaders extends AbstractMap<String, String>
+{
+	public static final String ACCEPT = "accept";
+	public static final String ACCEPT_ENCODING = "accept-encoding";
+	public static final String ACCEPT_RANGES = "accept-ranges";
+	public static final String CACHE_CONTROL = "cache-control";
+	public static final String CONNECTION = "connection";
+	public static final String CONTENT_DISPOSITION = "content-disposition";
+	public static final String CONTENT_ENCODING = "content-encoding";
+	public static final String CONTENT_LENGTH = "content-length";
+	public static final String CONTENT_RANGE = "content-range";
+	public static final String CONTENT_TYPE = "content-type";
+	public static final String COOKIE = "cookie";
+	public static final String DATE = "date";
+	public static final String ETAG = "etag";
+	public static final String HOST = "host";
+	public static final String IF_MODIFIED_SINCE = "if-modified-since";
+	public static final String IF_NONE_MATCH = "if-none-match";
+	public static final String IF_RANGE = "if-range";
+	public static final String LAST_MODIFIED = "last-modified";
+	public static final String LOCATION = "location";
+	public static final String RANGE = "range";
+	public static final String SEC_WEBSOCKET_ACCEPT = "sec-websocket-accept";
+	public static final String SEC_WEBSOCKET_KEY = "sec-websocket-key";
+	public static final String SEC_WEBSOCKET_VERSION = "sec-websocket-version";
+	public static final String SET_COOKIE = "set-cookie";
+	public static final String TRANSFER_ENCODING = "transfer-encoding";
+	public static final String UPGRADE = "upgrade";
+	public static final String USER_AGENT = "user-agent";
+	public static final String VARY = "vary";
+
+	private static final String[] KNOWN_NAMES = createKnownNames(ACCEPT, ACCEPT_ENCODING, ACCEPT_RANGES, CACHE_CONTROL, CONNECTION, CONTENT_DISPOSITION,
+			CONTENT_ENCODING, CONTENT_LENGTH, CONTENT_RANGE, CONTENT_TYPE, COOKIE, DATE, ETAG, HOST, IF_MODIFIED_SINCE, IF_NONE_MATCH, IF_RANGE, LAST_MODIFIED,
+			LOCATION, RANGE, SEC_WEBSOCKET_ACCEPT, SEC_WEBSOCKET_KEY, SEC_WEBSOCKET_VERSION, SET_COOKIE, TRANSFER_ENCODING, UPGRADE, USER_AGENT,
+			VARY);
+	private static final int INITIAL_CAPACITY = 16;
+	private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US).withZone(ZoneOffset.UTC);
+
+	private String[] names = new String[INITIAL_CAPACITY];
+	private String[] values = new String[INITIAL_CAPACITY];
+	private int[] hashes = new int[INITIAL_CAPACITY];
+	private int[] slots = new int[INITIAL_CAPACITY * 2];
+	private int size = 0;
+	private int distinctSize = 0;
+	private Set<Map.Entry<String, String>> entrySet;
+
+	/**
+	 * Gets the first value of header.
+	 *
+	 * @param key
+	 *          the name of header
+	 * @return the value, or <code>null</code> if header is not defined
+	 */
+	@Override
+	public String get(Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return null;
+		}
+		int index = indexOf((String) key, hash((String) key));
+		return index >= 0 ? values[index] : null;
+	}
+
+	/**
+	 * Checks if header is defined.
+	 *
+	 * @param key
+	 *          the name of header
+	 * @return true, if header is defined
+	 */
+	@Override
+	public boolean containsKey(Object key)
+	{
+		return key instanceof String && indexOf((String) key, hash((String) key)) >= 0;
+	}
+
+	/**
+	 * Gets all values of header.
+	 *
+	 * @param name
+	 *          the name of header
+	 * @return the values, empty if header is not defined
+	 */
+	public List<String> getAll(String name)
+	{
+		int hash = hash(name);
+		int index = indexOf(name, hash);
+		if (index < 0)
+		{
+			return new ArrayList<>();
+		}
+		List<String> result = new ArrayList<>();
+		for (int i = index; i < size; i++)
+		{
+			if (hashes[i] == hash && names[i].equalsIgnoreCase(name))
+			{
+				result.add(values[i]);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Sets the header. All previous values of header are replaced.
+	 *
+	 * @param key
+	 *          the name of header
+	 * @param value
+	 *          the value
+	 * @return the previous first value, or <code>null</code> if header was not
+	 *         defined
+	 */
+	@Override
+	public String put(String key, String value)
+	{
+		int hash = hash(key);
+		int index = indexOf(key, hash);
+		if (index < 0)
+		{
+			append(normalize(key, hash), value, hash, true);
+			return null;
+		}
+		String previous = values[index];
+		values[index] = value;
+		if (removeFrom(index + 1, key, hash))
+		{
+			rebuildSlots();
+		}
+		return previous;
+	}
+
+	/**
+	 * Adds next value of header, previous values are kept.
+	 *
+	 * @param name
+	 *          the name of header
+	 * @param value
+	 *          the value
+	 */
+	public void add(String name, String value)
+	{
+		int hash = hash(name);
+		int index = indexOf(name, hash);
+		append(index < 0 ? normalize(name, hash) : names[index], value, hash, index < 0);
+	}
+
+	/**
+	 * Removes all values of header.
+	 *
+	 * @param key
+	 *          the name of header
+	 * @return the previous first value, or <code>null</code> if header was not
+	 *         defined
+	 */
+	@Override
+	public String remove(Object key)
+	{
+		if (!(key instanceof String))
+		{
+			return null;
+		}
+		String name = (String) key;
+		int hash = hash(name);
+		int index = indexOf(name, hash);
+		if (index < 0)
+		{
+			return null;
+		}
+		String previous = values[index];
+		removeFrom(index, name, hash);
+		distinctSize--;
+		rebuildSlots();
+		return previous;
+	}
+
+	@Override
+	public void clear()
+	{
+		Arrays.fill(names, 0, size, null);
+		Arrays.fill(values, 0, size, null);
+		Arrays.fill(slots, 0);
+		size = 0;
+		distinctSize = 0;
+	}
+
+	@Override
+	public int size()
+	{
+		return distinctSize;
+	}
+
+	/**
+	 * Performs the action for each value of each header, in order, in which
+	 * they were added.
+	 *
+	 * @param action
+	 *          the action
+	 */
+	public void forEachValue(BiConsumer<String, String> action)
+	{
+		for (int i = 0; i < size; i++)
+		{
+			action.accept(names[i], values[i]);
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<String, String>> entrySet()
+	{
+		if (entrySet == null)
+		{
+			entrySet = new EntrySet();
+		}
+		return entrySet;
+	}
+
+	/**
+	 * Gets the name of header from bytes, without allocation of well-known
+	 * names.
+	 *
+	 * @param bytes
+	 *          the bytes
+	 * @param offset
+	 *          the offset
+	 * @param length
+	 *          the length
+	 * @return the name in lower case
+	 */
+	public static String toName(byte[] bytes, int offset, int length)
+	{
+		int hash = 0;
+		for (int i = offset; i < offset + length; i++)
+		{
+			hash = 31 * hash + fold((char) (bytes[i] & 0xff));
+		}
+		hash = spread(hash);
+
+		int mask = KNOWN_NAMES.length - 1;
+		for (int slot = hash & mask; KNOWN_NAMES[slot] != null; slot = (slot + 1) & mask)
+		{
+			String known = KNOWN_NAMES[slot];
+			if (known.length() == length && equalsIgnoreCase(bytes, offset, known))
+			{
+				return known;
+			}
+		}
+		return toLowerCase(new String(bytes, offset, length, StandardCharsets.ISO_8859_1));
+	}
+
+	/**
+	 * Formats the time as HTTP date (e.g. <code>Sun, 06 Nov 1994 08:49:37
+	 * GMT</code>).
+	 *
+	 * @param millis
+	 *          the time in milliseconds
+	 * @return the formatted date
+	 */
+	public static String formatDate(long millis)
+	{
+		return DATE_FORMAT.format(Instant.ofEpochMilli(millis));
+	}
+
+	/**
+	 * Parses the HTTP date.
+	 *
+	 * @param date
+	 *          the date
+	 * @return the time in milliseconds, or <code>-1</code> if date is not valid
+	 */
+	public static long parseDate(String date)
+	{
+		try
+		{
+			return ZonedDateTime.parse(date.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli();
+		}
+		catch (DateTimeParseException e)
+		{
+			return -1l;
+		}
+	}
+
+	/**
+	 * Finds the index of the first entry of header.
+	 *
+	 * @param name
+	 *          the name
+	 * @param hash
+	 *          the hash
+	 * @return the index, or <code>-1</code> if header is not defined
+	 */
+	private int indexOf(String name, int hash)
+	{
+		int mask = slots.length - 1;
+		for (int slot = hash & mask; slots[slot] != 0; slot = (slot + 1) & mask)
+		{
+			int index = slots[slot] - 1;
+			if (hashes[index] == hash && names[index].equalsIgnoreCase(name))
+			{
+				return index;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Appends the entry.
+	 *
+	 * @param name
+	 *          the normalized name
+	 * @param value
+	 *          the value
+	 * @param hash
+	 *          the hash
+	 * @param first
+	 *          true, if it is the first entry of header
+	 */
+	private void append(String name, String value, int hash, boolean first)
+	{
+		if (size == names.length)
+		{
+			names = Arrays.copyOf(names, size * 2);
+			values = Arrays.copyOf(values, size * 2);
+			hashes = Arrays.copyOf(hashes, size * 2);
+		}
+		names[size] = name;
+		values[size] = value;
+		hashes[size] = hash;
+		size++;
+
+		if (first)
+		{
+			distinctSize++;
+			if (distinctSize * 2 > slots.length)
+			{
+				slots = new int[slots.length * 2];
+				rebuildSlots();
+			}
+			else
+			{
+				addSlot(size - 1);
+			}
+		}
+	}
+
+	/**
+	 * Removes all entries of header starting at <code>from</code>.
+	 *
+	 * @param from
+	 *          the first index to check
+	 * @param name
+	 *          the name
+	 * @param hash
+	 *          the hash
+	 * @return true, if any entry was removed
+	 */
+	private boolean removeFrom(int from, String name, int hash)
+	{
+		int target = from;
+		for (int i = from; i < size; i++)
+		{
+			if (!(hashes[i] == hash && names[i].equalsIgnoreCase(name)))
+			{
+				names[target] = names[i];
+				values[target] = values[i];
+				hashes[target] = hashes[i];
+				target++;
+			}
+		}
+		if (target == size)
+		{
+			return false;
+		}
+		Arrays.fill(names, target, size, null);
+		Arrays.fill(values, target, size, null);
+		size = target;
+		return true;
+	}
+
+	/**
+	 * Rebuilds the slots of the first entries of each header.
+	 */
+	private void rebuildSlots()
+	{
+		Arrays.fill(slots, 0);
+		for (int i = 0; i < size; i++)
+		{
+			if (indexOf(names[i], hashes[i]) < 0)
+			{
+				addSlot(i);
+			}
+		}
+	}
+
+	/**
+	 * Adds the slot of entry.
+	 *
+	 * @param index
+	 *          the index of entry
+	 */
+	private void addSlot(int index)
+	{
+		int mask = slots.length - 1;
+		int slot = hashes[index] & mask;
+		while (slots[slot] != 0)
+		{
+			slot = (slot + 1) & mask;
+		}
+		slots[slot] = index + 1;
+	}
+
+	/**
+	 * Normalizes the name of header.
+	 *
+	 * @param name
+	 *          the name
+	 * @param hash
+	 *          the hash
+	 * @return the well-known name, or name in lower case
+	 */
+	private static String normalize(String name, int hash)
+	{
+		int mask = KNOWN_NAMES.length - 1;
+		for (int slot = hash & mask; KNOWN_NAMES[slot] != null; slot = (slot + 1) & mask)
+		{
+			if (KNOWN_NAMES[slot].equalsIgnoreCase(name))
+			{
+				return KNOWN_NAMES[slot];
+			}
+		}
+		return toLowerCase(name);
+	}
+
+	/**
+	 * Creates the open addressed table of well-known names.
+	 *
+	 * @param knownNames
+	 *          the known names
+	 * @return the table
+	 */
+	private static String[] createKnownNames(String... knownNames)
+	{
+		String[] table = new String[64];
+		int mask = table.length - 1;
+		for (String name : knownNames)
+		{
+			int slot = hash(name) & mask;
+			while (table[slot] != null)
+			{
+				slot = (slot + 1) & mask;
+			}
+			table[slot] = name;
+		}
+		return table;
+	}
+
+	/**
+	 * Computes the hash of name with folded case of <code>ASCII</code>
+	 * characters.
+	 *
+	 * @param name
+	 *          the name
+	 * @return the hash
+	 */
+	private static int hash(String name)
+	{
+		int hash = 0;
+		for (int i = 0; i < name.length(); i++)
+		{
+			hash = 31 * hash + fold(name.charAt(i));
+		}
+		return spread(hash);
+	}
+
+	/**
+	 * Spreads higher bits of hash to lower ones.
+	 *
+	 * @param hash
+	 *          the hash
+	 * @return the spread hash
+	 */
+	private static int spread(int hash)
+	{
+		return hash ^ (hash >>> 16);
+	}
+
+	/**
+	 * Folds the <code>ASCII</code> upper case character to lower case.
+	 *
+	 * @param c
+	 *          the character
+	 * @return the folded character
+	 */
+	private static char fold(char c)
+	{
+		return c >= 'A' && c <= 'Z' ? (char) (c + 32) : c;
+	}
+
+	/**
+	 * Converts <code>ASCII</code> characters of name to lower case. Name, that
+	 * is already in lower case, is returned without allocation.
+	 *
+	 * @param name
+	 *          the name
+	 * @return the name in lower case
+	 */
+	private static String toLowerCase(String name)
+	{
+		for (int i = 0; i < name.length(); i++)
+		{
+			if (fold(name.charAt(i)) != name.charAt(i))
+			{
+				char[] chars = name.toCharArray();
+				for (int j = i; j < chars.length; j++)
+				{
+					chars[j] = fold(chars[j]);
+				}
+				return new String(chars);
+			}
+		}
+		return name;
+	}
+
+	/**
+	 * Compares bytes with lower case name.
+	 *
+	 * @param bytes
+	 *          the bytes
+	 * @param offset
+	 *          the offset
+	 * @param name
+	 *          the name
+	 * @return true, if bytes are equal to name ignoring case
+	 */
+	private static boolean equalsIgnoreCase(byte[] bytes, int offset, String name)
+	{
+		for (int i = 0; i < name.length(); i++)
+		{
+			if (fold((char) (bytes[offset + i] & 0xff)) != name.charAt(i))
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * The view of the first value of each header.
+	 */
+	private class EntrySet extends AbstractSet<Map.Entry<String, String>>
+	{
+		@Override
+		public Iterator<Map.Entry<String, String>> iterator()
+		{
+			return new Iterator<Map.Entry<String, String>>()
+			{
+				private int next = findNext(0);
+				private int last = -1;
+
+				@Override
+				public boolean hasNext()
+				{
+					return next < size;
+				}
+
+				@Override
+				public Map.Entry<String, String> next()
+				{
+					if (next >= size)
+					{
+						throw new NoSuchElementException();
+					}
+					last = next;
+					next = findNext(next + 1);
+					return new Entry(last);
+				}
+
+				@Override
+				public void remove()
+				{
+					if (last < 0)
+					{
+						throw new IllegalStateException();
+					}
+					HttpHeaders.this.remove(names[last]);
+					next = findNext(last);
+					last = -1;
+				}
+			};
+		}
+
+		/**
+		 * Finds the next first entry of header.
+		 *
+		 * @param from
+		 *          the from
+		 * @return the index
+		 */
+		private int findNext(int from)
+		{
+			int i = from;
+			while (i < size && indexOf(names[i], hashes[i]) != i)
+			{
+				i++;
+			}
+			return i;
+		}
+
+		@Override
+		public int size()
+		{
+			return distinctSize;
+		}
+
+		@Override
+		public void clear()
+		{
+			HttpHeaders.this.clear();
+		}
+	}
+
+	/**
+	 * The entry of header, that writes its value through.
+	 */
+	private class Entry implements Map.Entry<String, String>
+	{
+		private final String name;
+		private final int index;
+
+		/**
+		 * Instantiates a new entry.
+		 *
+		 * @param index
+		 *          the index
+		 */
+		private Entry(int index)
+		{
+			this.name = names[index];
+			this.index = index;
+		}
+
+		@Override
+		public String getKey()
+		{
+			return name;
+		}
+
+		@Override
+		public String getValue()
+		{
+			return index < size && names[index] == name ? values[index] : get(name);
+		}
+
+		@Override
+		public String setValue(String value)
+		{
+			return put(name, value);
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if (!(o instanceof Map.Entry))
+			{
+				return false;
+			}
+			Map.Entry<?, ?> e = (Map.Entry<?, ?>) o;
+			String value = getValue();
+			return name.equals(e.getKey()) && (value == null ? e.getValue() == null : value.equals(e.getValue()));
+		}
+
+		@Override
+		public int hashCode()
+		{
+			String value = getValue();
+			return name.hashCode() ^ (value == null ? 0 : value.hashCode());
+		}
+
+		@Override
+		public String toString()
+		{
+			return name + "=" + getValue();
+		}
+	}
+}
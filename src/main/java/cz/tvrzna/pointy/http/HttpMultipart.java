@@ -0,0 +1,319 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import cz.tvrzna.pointy.exceptions.BadRequestException;
+import cz.tvrzna.pointy.exceptions.PayloadTooLargeException;
+
+/**
+ * Streaming reader of <code>multipart/form-data</code> request body. Parts are
+ * read one by one via {@link #next()}, content of each part is read directly
+ * from request body, so the memory usage does not depend on size of uploaded
+ * files.<br>
+ * Size of each part and total size of body could be limited, larger content
+ * causes {@link PayloadTooLargeException}. Malformed body causes
+ * {@link BadRequestException}.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class HttpMultipart
+{
+	private static final int BUFFER_SIZE = 8192;
+	private static final int MAX_HEADER_LINE = 8192;
+
+	private final InputStream is;
+	private final byte[] delimiter;
+	private final long maxPartSize;
+	private final long maxTotalSize;
+	private final byte[] buffer;
+	private int position = 0;
+	private int limit = 0;
+	private boolean eof = false;
+	private long totalSize = 0;
+	private PartInputStream current;
+	private boolean finished = false;
+
+	/**
+	 * Instantiates a new <code>HttpMultipart</code> without limits.
+	 *
+	 * @param is
+	 *          the input stream of body
+	 * @param boundary
+	 *          the boundary
+	 */
+	public HttpMultipart(InputStream is, String boundary)
+	{
+		this(is, boundary, -1, -1);
+	}
+
+	/**
+	 * Instantiates a new <code>HttpMultipart</code>.
+	 *
+	 * @param is
+	 *          the input stream of body
+	 * @param boundary
+	 *          the boundary
+	 * @param maxPartSize
+	 *          the max size of content of one part in bytes, <code>-1</code>
+	 *          means no limit
+	 * @param maxTotalSize
+	 *          the max total size of body in bytes, <code>-1</code> means no
+	 *          limit
+	 */
+	public HttpMultipart(InputStream is, String boundary, long maxPartSize, long maxTotalSize)
+	{
+		if (boundary == null || boundary.isEmpty())
+		{
+			throw new BadRequestException("Missing multipart boundary.");
+		}
+		this.is = is;
+		this.delimiter = ("\r\n--" + boundary).getBytes(StandardCharsets.US_ASCII);
+		this.maxPartSize = maxPartSize;
+		this.maxTotalSize = maxTotalSize;
+		this.buffer = new byte[Math.max(Math.max(BUFFER_SIZE, MAX_HEADER_LINE + 2), delimiter.length * 2)];
+
+		// Body starts directly with boundary, so preceding line break is added.
+		buffer[limit++] = '\r';
+		buffer[limit++] = '\n';
+		current = new PartInputStream(-1);
+	}
+
+	/**
+	 * Gets the next part. Unread content of previous part is skipped.
+	 *
+	 * @return the next part, or <code>null</code> if there is no more part
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public HttpPart next() throws IOException
+	{
+		if (finished)
+		{
+			return null;
+		}
+		current.close();
+		position += delimiter.length;
+
+		if (!fill(2))
+		{
+			throw new BadRequestException("Unexpected end of multipart body.");
+		}
+		if (buffer[position] == '-' && buffer[position + 1] == '-')
+		{
+			finished = true;
+			current = null;
+			return null;
+		}
+		readLine();
+
+		HttpHeaders headers = new HttpHeaders();
+		String line;
+		while (!(line = readLine()).isEmpty())
+		{
+			int index = line.indexOf(":");
+			if (index > 0)
+			{
+				headers.add(line.substring(0, index).trim(), line.substring(index + 1).trim());
+			}
+		}
+
+		current = new PartInputStream(maxPartSize);
+		return new HttpPart(headers, current);
+	}
+
+	/**
+	 * Reads the line terminated by <code>CRLF</code>.
+	 *
+	 * @return the line
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private String readLine() throws IOException
+	{
+		int start = position;
+		int i = position;
+		while (true)
+		{
+			if (i + 1 >= limit)
+			{
+				int offset = i - position;
+				if (offset >= MAX_HEADER_LINE)
+				{
+					throw new BadRequestException("Multipart header is too large.");
+				}
+				if (!fill(offset + 2))
+				{
+					throw new BadRequestException("Unexpected end of multipart body.");
+				}
+				start = position;
+				i = position + offset;
+			}
+			if (buffer[i] == '\r' && buffer[i + 1] == '\n')
+			{
+				String line = new String(buffer, start, i - start, StandardCharsets.UTF_8);
+				position = i + 2;
+				return line;
+			}
+			i++;
+		}
+	}
+
+	/**
+	 * Fills the buffer, until it contains at least <code>required</code> bytes
+	 * from current position. More bytes, than buffer could hold, are never
+	 * required by well-formed body.
+	 *
+	 * @param required
+	 *          the required
+	 * @return true, if buffer contains required bytes
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private boolean fill(int required) throws IOException
+	{
+		if (limit - position >= required)
+		{
+			return true;
+		}
+		if (required > buffer.length)
+		{
+			throw new BadRequestException("Multipart header is too large.");
+		}
+		if (position > 0)
+		{
+			System.arraycopy(buffer, position, buffer, 0, limit - position);
+			limit -= position;
+			position = 0;
+		}
+		while (limit < required && !eof)
+		{
+			int read = is.read(buffer, limit, buffer.length - limit);
+			if (read < 0)
+			{
+				eof = true;
+				break;
+			}
+			totalSize += read;
+			if (maxTotalSize >= 0 && totalSize > maxTotalSize)
+			{
+				throw new PayloadTooLargeException("Multipart body is larger than " + maxTotalSize + " bytes.");
+			}
+			limit += read;
+		}
+		return limit - position >= required;
+	}
+
+	/**
+	 * Finds the delimiter in buffer.
+	 *
+	 * @return the index of delimiter, or <code>-1</code> if not found
+	 */
+	private int findDelimiter()
+	{
+		int last = limit - delimiter.length;
+		outer: for (int i = position; i <= last; i++)
+		{
+			for (int j = 0; j < delimiter.length; j++)
+			{
+				if (buffer[i + j] != delimiter[j])
+				{
+					continue outer;
+				}
+			}
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * The <code>InputStream</code> of one part, that ends before the next
+	 * delimiter.
+	 */
+	private class PartInputStream extends InputStream
+	{
+		private final long maxSize;
+		private final byte[] single = new byte[1];
+		private long size = 0;
+		private boolean ended = false;
+
+		/**
+		 * Instantiates a new part input stream.
+		 *
+		 * @param maxSize
+		 *          the max size
+		 */
+		private PartInputStream(long maxSize)
+		{
+			this.maxSize = maxSize;
+		}
+
+		@Override
+		public int read() throws IOException
+		{
+			return read(single, 0, 1) < 0 ? -1 : single[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			if (ended || current != this)
+			{
+				return -1;
+			}
+			if (len == 0)
+			{
+				return 0;
+			}
+
+			fill(delimiter.length);
+			int index = findDelimiter();
+			int available;
+			if (index >= 0)
+			{
+				available = index - position;
+				if (available == 0)
+				{
+					ended = true;
+					return -1;
+				}
+			}
+			else if (eof)
+			{
+				throw new BadRequestException("Unexpected end of multipart body.");
+			}
+			else
+			{
+				available = limit - position - delimiter.length + 1;
+			}
+
+			int count = Math.min(len, available);
+			size += count;
+			if (maxSize >= 0 && size > maxSize)
+			{
+				throw new PayloadTooLargeException("Multipart part is larger than " + maxSize + " bytes.");
+			}
+			System.arraycopy(buffer, position, b, off, count);
+			position += count;
+			return count;
+		}
+
+		/**
+		 * Skips unread rest of part.
+		 *
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		@Override
+		public void close() throws IOException
+		{
+			byte[] skip = new byte[BUFFER_SIZE];
+			while (read(skip, 0, skip.length) >= 0)
+			{
+				// Content is skipped.
+			}
+		}
+	}
+}
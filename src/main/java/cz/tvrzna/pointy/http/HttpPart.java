@@ -0,0 +1,110 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.InputStream;
+
+/**
+ * The class represents one part of <code>multipart/form-data</code> request
+ * body, e.g. form field or uploaded file. Its content is read directly from
+ * request body via {@link #getInputStream()}, so it is available only until
+ * the next part is requested from {@link HttpMultipart}.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class HttpPart
+{
+	private final HttpHeaders httpHeaders;
+	private final InputStream inputStream;
+	private String name;
+	private String fileName;
+
+	/**
+	 * Instantiates a new <code>HttpPart</code>.
+	 *
+	 * @param httpHeaders
+	 *          the http headers
+	 * @param inputStream
+	 *          the input stream
+	 */
+	HttpPart(HttpHeaders httpHeaders, InputStream inputStream)
+	{
+		this.httpHeaders = httpHeaders;
+		this.inputStream = inputStream;
+
+		String contentDisposition = httpHeaders.get(HttpHeaders.CONTENT_DISPOSITION);
+		if (contentDisposition != null)
+		{
+			for (String param : contentDisposition.split(";"))
+			{
+				int index = param.indexOf("=");
+				if (index > 0)
+				{
+					String key = param.substring(0, index).trim().toLowerCase();
+					String value = param.substring(index + 1).trim();
+					if (value.length() > 1 && value.startsWith("\"") && value.endsWith("\""))
+					{
+						value = value.substring(1, value.length() - 1);
+					}
+					if ("name".equals(key))
+					{
+						name = value;
+					}
+					else if ("filename".equals(key))
+					{
+						fileName = value;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets the name of form field.
+	 *
+	 * @return the name
+	 */
+	public String getName()
+	{
+		return name;
+	}
+
+	/**
+	 * Gets the file name of uploaded file.
+	 *
+	 * @return the file name, or <code>null</code> if part is not a file
+	 */
+	public String getFileName()
+	{
+		return fileName;
+	}
+
+	/**
+	 * Gets the content type.
+	 *
+	 * @return the content type
+	 */
+	public String getContentType()
+	{
+		return httpHeaders.get(HttpHeaders.CONTENT_TYPE);
+	}
+
+	/**
+	 * Gets the http headers of part.
+	 *
+	 * @return the http headers
+	 */
+	public HttpHeaders getHttpHeaders()
+	{
+		return httpHeaders;
+	}
+
+	/**
+	 * Gets the content of part as <code>InputStream</code>.
+	 *
+	 * @return the input stream
+	 */
+	public InputStream getInputStream()
+	{
+		return inputStream;
+	}
+}
@@ -0,0 +1,185 @@
+package cz.tvrzna.pointy.http;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Range of bytes requested by <code>Range</code> header. Positions are
+ * resolved against length of content, so suffix ranges (e.g.
+ * <code>bytes=-500</code>) and open ranges (e.g. <code>bytes=500-</code>)
+ * have absolute start and end.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public final class HttpRange
+{
+	private static final String BYTES_UNIT = "bytes=";
+	private static final int MAX_RANGES = 16;
+
+	private final long start;
+	private final long end;
+
+	/**
+	 * Instantiates a new http range.
+	 *
+	 * @param start
+	 *          the position of the first byte
+	 * @param end
+	 *          the position of the last byte
+	 */
+	public HttpRange(long start, long end)
+	{
+		this.start = start;
+		this.end = end;
+	}
+
+	/**
+	 * Parses the value of <code>Range</code> header. Overlapping and adjacent
+	 * ranges are merged, so each byte is sent only once.
+	 *
+	 * @param header
+	 *          the value of range header
+	 * @param length
+	 *          the length of content
+	 * @return the sorted list of ranges, empty list if none of ranges is
+	 *         satisfiable, or <code>null</code> if header is not valid or it
+	 *         contains more than 16 ranges, so it should be ignored
+	 */
+	public static List<HttpRange> parse(String header, long length)
+	{
+		if (header == null || !header.regionMatches(true, 0, BYTES_UNIT, 0, BYTES_UNIT.length()))
+		{
+			return null;
+		}
+
+		String[] specs = header.substring(BYTES_UNIT.length()).split(",");
+		if (specs.length > MAX_RANGES)
+		{
+			return null;
+		}
+
+		List<HttpRange> ranges = new ArrayList<>(specs.length);
+		for (String spec : specs)
+		{
+			spec = spec.trim();
+			int dash = spec.indexOf('-');
+			if (dash < 0)
+			{
+				return null;
+			}
+			try
+			{
+				String last = spec.substring(dash + 1);
+				long start;
+				long end;
+				if (dash == 0)
+				{
+					long suffix = Long.parseLong(last);
+					if (suffix <= 0)
+					{
+						continue;
+					}
+					start = Math.max(0, length - suffix);
+					end = length - 1;
+				}
+				else
+				{
+					start = Long.parseLong(spec.substring(0, dash));
+					end = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+					if (start < 0 || end < start)
+					{
+						return null;
+					}
+					end = Math.min(end, length - 1);
+				}
+				if (start < length)
+				{
+					ranges.add(new HttpRange(start, end));
+				}
+			}
+			catch (NumberFormatException e)
+			{
+				return null;
+			}
+		}
+		return merge(ranges);
+	}
+
+	/**
+	 * Merges the overlapping and adjacent ranges.
+	 *
+	 * @param ranges
+	 *          the ranges
+	 * @return the sorted list of merged ranges
+	 */
+	private static List<HttpRange> merge(List<HttpRange> ranges)
+	{
+		if (ranges.size() < 2)
+		{
+			return ranges;
+		}
+		Collections.sort(ranges, Comparator.comparingLong(HttpRange::getStart));
+		List<HttpRange> merged = new ArrayList<>(ranges.size());
+		HttpRange current = ranges.get(0);
+		for (int i = 1; i < ranges.size(); i++)
+		{
+			HttpRange range = ranges.get(i);
+			if (range.start <= current.end + 1)
+			{
+				current = new HttpRange(current.start, Math.max(current.end, range.end));
+			}
+			else
+			{
+				merged.add(current);
+				current = range;
+			}
+		}
+		merged.add(current);
+		return merged;
+	}
+
+	/**
+	 * Gets the position of the first byte.
+	 *
+	 * @return the start
+	 */
+	public long getStart()
+	{
+		return start;
+	}
+
+	/**
+	 * Gets the position of the last byte.
+	 *
+	 * @return the end
+	 */
+	public long getEnd()
+	{
+		return end;
+	}
+
+	/**
+	 * Gets the count of bytes.
+	 *
+	 * @return the length
+	 */
+	public long getLength()
+	{
+		return end - start + 1;
+	}
+
+	/**
+	 * Gets the value of <code>Content-Range</code> header.
+	 *
+	 * @param length
+	 *          the length of whole content
+	 * @return the content range
+	 */
+	public String toContentRange(long length)
+	{
+		return "bytes " + start + "-" + end + "/" + length;
+	}
+}
@@ -1,22 +1,26 @@
 package cz.tvrzna.pointy.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.StringWriter;
 import java.io.UnsupportedEncodingException;
 import java.net.Socket;
+import java.net.SocketAddress;
 import java.net.URLDecoder;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
 
-import cz.tvrzna.pointy.CaseInsensitiveHashMap;
+import cz.tvrzna.pointy.exceptions.BadRequestException;
 
 /**
  * The class represents incoming HTTP request. In constructor it reads
  * <code>InputStream</code> from {@link Socket}. Its parses content into headers
- * and body.
+ * and body. Only the request itself is read, so another requests sent on the
+ * same connection could be read by next instance. Body is read lazily, when it
+ * is requested via {@link #getBody()} or {@link #getBodyInputStream()}.
  *
  * @since 0.1.0
  * @author michalt
@@ -24,14 +28,22 @@ import cz.tvrzna.pointy.CaseInsensitiveHashMap;
 public class HttpRequest
 {
 	private static final String CONTENT_TYPE_FORM_URLENCODED = "application/x-www-form-urlencoded";
+	private static final String CONTENT_TYPE_MULTIPART_FORM_DATA = "multipart/form-data";
+	private static final String BOUNDARY = "boundary=";
 	private static final String DEFAULT_CHARSET = "utf-8";
+	private static final String HTTP_1_0 = "HTTP/1.0";
+	private static final String HTTP_1_1 = "HTTP/1.1";
+	private static final String HEADER_CONNECTION = "Connection";
 
 	private String method;
 	private String uri;
-	private Map<String, String> httpHeaders = new CaseInsensitiveHashMap();
+	private String protocol = HTTP_1_0;
+	private HttpHeaders httpHeaders;
 	private List<HttpParam> params = new ArrayList<>();
-	private List<HttpParam> postParams = new ArrayList<>();
+	private List<HttpParam> postParams;
 	private String body;
+	private byte[] bodyData;
+	private InputStream bodyInputStream;
 	private String clientIp;
 
 	/**
@@ -46,62 +58,142 @@ public class HttpRequest
 	 */
 	public HttpRequest(Socket socket) throws IOException
 	{
-		@SuppressWarnings("resource")
-		InputStream is = socket.getInputStream();
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		this(socket.getInputStream(), parseClientIp(socket.getRemoteSocketAddress()));
+	}
 
-		do
-		{
-			baos.write(is.read());
-		} while (is.available() > 0);
+	/**
+	 * Instantiates a new <code>HttpRequest</code>. It reads
+	 * <code>InputStream</code> of client's connection and parses it into Http
+	 * Headers, Url Params and body.<br>
+	 * Only head of request is read in constructor, body stays in
+	 * <code>InputStream</code>, until it is requested. Body is defined by
+	 * <code>Content-Length</code> header or by <code>Transfer-Encoding:
+	 * chunked</code>, so the next request sent on the same connection stays in
+	 * <code>InputStream</code>, when body is read or closed. If request does not
+	 * define any of them, it has no body.
+	 *
+	 * @param is
+	 *          the input stream of client's connection
+	 * @param clientIp
+	 *          the client ip
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public HttpRequest(InputStream is, String clientIp) throws IOException
+	{
+		this(is, clientIp, -1);
+	}
 
-		String request = new String(baos.toByteArray());
-		baos.close();
+	/**
+	 * Instantiates a new <code>HttpRequest</code>. It reads
+	 * <code>InputStream</code> of client's connection and parses it into Http
+	 * Headers, Url Params and body. Body is framed by
+	 * <code>Content-Length</code> header or by <code>Transfer-Encoding:
+	 * chunked</code>, if it is larger than <code>maxBodySize</code>,
+	 * {@link cz.tvrzna.pointy.exceptions.PayloadTooLargeException} is thrown.
+	 *
+	 * @param is
+	 *          the input stream of client's connection
+	 * @param clientIp
+	 *          the client ip
+	 * @param maxBodySize
+	 *          the max body size in bytes, <code>-1</code> means no limit
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public HttpRequest(InputStream is, String clientIp, long maxBodySize) throws IOException
+	{
+		this(readHead(is, maxBodySize), clientIp, is);
+	}
+
+	/**
+	 * Instantiates a new <code>HttpRequest</code> from complete
+	 * {@link HttpRequestParser}.
+	 *
+	 * @param parser
+	 *          the parser
+	 * @param clientIp
+	 *          the client ip
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public HttpRequest(HttpRequestParser parser, String clientIp) throws IOException
+	{
+		this(parser, clientIp, null);
+	}
 
-		boolean readBody = false;
-		String[] httpLines = request.replace("\r", "").split("\n");
-		StringWriter swBody = new StringWriter();
-		for (int i = 0; i < httpLines.length; i++)
+	/**
+	 * Instantiates a new <code>HttpRequest</code> from {@link HttpRequestParser}.
+	 * If <code>is</code> is defined, parser contains only head of request and
+	 * body is read lazily from <code>is</code>, otherwise body is taken from
+	 * complete parser.
+	 *
+	 * @param parser
+	 *          the parser
+	 * @param clientIp
+	 *          the client ip
+	 * @param is
+	 *          the input stream of client's connection
+	 */
+	private HttpRequest(HttpRequestParser parser, String clientIp, InputStream is)
+	{
+		method = parser.getMethod();
+		uri = parser.getUri();
+		if (parser.getProtocol() != null)
 		{
-			String line = httpLines[i];
-			if (!readBody)
-			{
-				if (line.indexOf(":") > 0)
-				{
-					String key = line.substring(0, line.indexOf(":")).trim();
-					String value = line.substring(line.indexOf(":") + 1, line.length()).trim();
-					httpHeaders.put(key, value);
-				}
-				else if (i == 0)
-				{
-					String[] firstLine = line.trim().split(" ");
-					method = firstLine[0].trim();
-
-					String[] strRequestUri = firstLine[1].trim().split("\\?");
-					uri = strRequestUri[0].trim();
-					if (strRequestUri.length > 1)
-					{
-						parseParams(strRequestUri[1], params);
-					}
-				}
-				if (line.trim().isEmpty())
-				{
-					readBody = true;
-				}
-			}
-			else
-			{
-				swBody.append(line);
-			}
+			protocol = parser.getProtocol();
 		}
-		body = swBody.toString().trim();
-		if (method != null && CONTENT_TYPE_FORM_URLENCODED.equals(httpHeaders.getOrDefault("content-type", "").toLowerCase()))
+		httpHeaders = parser.getHeaders();
+		if (parser.getQuery() != null)
 		{
-			parseParams(body, postParams);
+			parseParams(parser.getQuery(), params);
 		}
 
-		clientIp = socket.getRemoteSocketAddress().toString().replace("/", "");
-		clientIp = clientIp.substring(0, clientIp.lastIndexOf(":"));
+		if (is != null)
+		{
+			bodyInputStream = new HttpBodyInputStream(is, parser);
+		}
+		else
+		{
+			bodyData = parser.getBody();
+		}
+
+		this.clientIp = clientIp;
+	}
+
+	/**
+	 * Reads the head of request from <code>InputStream</code> by
+	 * {@link HttpRequestParser}.
+	 *
+	 * @param is
+	 *          the is
+	 * @param maxBodySize
+	 *          the max body size
+	 * @return the parser with parsed head
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static HttpRequestParser readHead(InputStream is, long maxBodySize) throws IOException
+	{
+		HttpRequestParser parser = new HttpRequestParser(maxBodySize);
+		parser.parseHead(is);
+		return parser;
+	}
+
+	/**
+	 * Parses the client ip from its <code>SocketAddress</code>.
+	 *
+	 * @param address
+	 *          the address
+	 * @return the client ip
+	 */
+	private static String parseClientIp(SocketAddress address)
+	{
+		String clientIp = address.toString().replace("/", "");
+		return clientIp.substring(0, clientIp.lastIndexOf(":"));
 	}
 
 	/**
@@ -157,6 +249,36 @@ public class HttpRequest
 		return method;
 	}
 
+	/**
+	 * Gets the HTTP protocol version, e.g. <code>HTTP/1.1</code>.
+	 *
+	 * @return the protocol
+	 * @since 0.3.0
+	 */
+	public String getProtocol()
+	{
+		return protocol;
+	}
+
+	/**
+	 * Checks if client wants to keep connection open for another requests.
+	 * <code>HTTP/1.1</code> connections are persistent unless
+	 * <code>Connection: close</code> is requested, <code>HTTP/1.0</code>
+	 * connections are persistent only with <code>Connection: keep-alive</code>.
+	 *
+	 * @return true, if connection should be kept alive
+	 * @since 0.3.0
+	 */
+	public boolean isKeepAlive()
+	{
+		String connection = httpHeaders.get(HEADER_CONNECTION);
+		if (HTTP_1_1.equals(protocol))
+		{
+			return connection == null || !connection.toLowerCase().contains("close");
+		}
+		return connection != null && connection.toLowerCase().contains("keep-alive");
+	}
+
 	/**
 	 * Gets the uri.
 	 *
@@ -172,21 +294,142 @@ public class HttpRequest
 	 *
 	 * @return the http headers
 	 */
-	public Map<String, String> getHttpHeaders()
+	public HttpHeaders getHttpHeaders()
 	{
 		return httpHeaders;
 	}
 
 	/**
-	 * Gets the body.
+	 * Gets the body. Body is read from connection and buffered on the first
+	 * call. If body was already partially read via
+	 * {@link #getBodyInputStream()}, it returns only the rest.
 	 *
 	 * @return the body
 	 */
 	public String getBody()
 	{
+		if (body == null)
+		{
+			try
+			{
+				body = new String(readBodyData(), DEFAULT_CHARSET);
+			}
+			catch (IOException e)
+			{
+				throw new BadRequestException("Request body could not be read.", e);
+			}
+		}
 		return body;
 	}
 
+	/**
+	 * Reads and buffers the rest of body.
+	 *
+	 * @return the body data
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private byte[] readBodyData() throws IOException
+	{
+		if (bodyData == null)
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[4096];
+			int read;
+			while ((read = bodyInputStream.read(buffer)) >= 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+			bodyData = baos.toByteArray();
+		}
+		return bodyData;
+	}
+
+	/**
+	 * Gets the body as <code>InputStream</code>, that is read lazily from
+	 * client's connection, so large body could be processed without loading it
+	 * into memory. Stream is bounded by <code>Content-Length</code> or chunks of
+	 * body. Closing of stream skips the rest of body, it does not close the
+	 * connection. If body was already read by {@link #getBody()}, it returns
+	 * stream of buffered body.
+	 *
+	 * @return the body input stream
+	 * @since 0.3.0
+	 */
+	public InputStream getBodyInputStream()
+	{
+		if (bodyData != null)
+		{
+			return new ByteArrayInputStream(bodyData);
+		}
+		return bodyInputStream;
+	}
+
+	/**
+	 * Gets the body as <code>ReadableByteChannel</code>.
+	 *
+	 * @return the body channel
+	 * @see #getBodyInputStream()
+	 * @since 0.3.0
+	 */
+	public ReadableByteChannel getBodyChannel()
+	{
+		return Channels.newChannel(getBodyInputStream());
+	}
+
+	/**
+	 * Gets the <code>multipart/form-data</code> body, that is read as stream of
+	 * parts. Size of parts is not limited.
+	 *
+	 * @return the multipart
+	 * @see #getMultipart(long, long)
+	 * @since 0.3.0
+	 */
+	public HttpMultipart getMultipart()
+	{
+		return getMultipart(-1, -1);
+	}
+
+	/**
+	 * Gets the <code>multipart/form-data</code> body, that is read as stream of
+	 * parts via {@link HttpMultipart#next()}. Parts are read directly from
+	 * {@link #getBodyInputStream()}, so uploaded files are never loaded into
+	 * memory. If request is not <code>multipart/form-data</code>,
+	 * {@link BadRequestException} is thrown.
+	 *
+	 * @param maxPartSize
+	 *          the max size of content of one part in bytes, <code>-1</code>
+	 *          means no limit
+	 * @param maxTotalSize
+	 *          the max total size of body in bytes, <code>-1</code> means no
+	 *          limit
+	 * @return the multipart
+	 * @since 0.3.0
+	 */
+	public HttpMultipart getMultipart(long maxPartSize, long maxTotalSize)
+	{
+		String contentType = httpHeaders.getOrDefault(HttpHeaders.CONTENT_TYPE, "");
+		if (!contentType.toLowerCase().startsWith(CONTENT_TYPE_MULTIPART_FORM_DATA))
+		{
+			throw new BadRequestException("Request is not multipart/form-data.");
+		}
+
+		String boundary = null;
+		for (String param : contentType.split(";"))
+		{
+			param = param.trim();
+			if (param.toLowerCase().startsWith(BOUNDARY))
+			{
+				boundary = param.substring(BOUNDARY.length());
+				if (boundary.length() > 1 && boundary.startsWith("\"") && boundary.endsWith("\""))
+				{
+					boundary = boundary.substring(1, boundary.length() - 1);
+				}
+			}
+		}
+		return new HttpMultipart(getBodyInputStream(), boundary, maxPartSize, maxTotalSize);
+	}
+
 	/**
 	 * Gets the client ip.
 	 *
@@ -233,6 +476,14 @@ public class HttpRequest
 	 */
 	public HttpParam getPostParameter(String param)
 	{
+		if (postParams == null)
+		{
+			postParams = new ArrayList<>();
+			if (method != null && CONTENT_TYPE_FORM_URLENCODED.equals(httpHeaders.getOrDefault(HttpHeaders.CONTENT_TYPE, "").toLowerCase()))
+			{
+				parseParams(getBody(), postParams);
+			}
+		}
 		return findParameter(postParams, param);
 	}
 }
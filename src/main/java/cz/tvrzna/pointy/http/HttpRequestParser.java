@@ -0,0 +1,923 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import cz.tvrzna.pointy.exceptions.BadRequestException;
+import cz.tvrzna.pointy.exceptions.PayloadTooLargeException;
+
+/**
+ * Incremental parser of HTTP request, that works directly with bytes. Request
+ * could be passed in any number of chunks via {@link #parse(byte[], int, int)}
+ * or {@link #parse(ByteBuffer)}, parser remembers its state and continues,
+ * when more bytes arrive. It consumes only bytes of single request, so any
+ * following bytes (e.g. pipelined request) stay unconsumed.<br>
+ * Parser reads request line, headers and body, that is defined by
+ * <code>Content-Length</code> header or by <code>Transfer-Encoding:
+ * chunked</code>. Request without them has no body according to RFC 7230.
+ * Conflicting <code>Content-Length</code> headers, request with both
+ * <code>Transfer-Encoding</code> and <code>Content-Length</code>, or with any
+ * transfer coding other than single <code>chunked</code> cause
+ * {@link BadRequestException}, so request could not be framed differently by
+ * proxy and by server. Chunked body is decoded and its trailers are
+ * skipped. Size of body could be limited, larger body causes
+ * {@link PayloadTooLargeException}. Strings are created only for values, that
+ * are really needed, well known methods and protocols are not allocated at
+ * all.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class HttpRequestParser
+{
+	private static final int MAX_HEAD_SIZE = 65536;
+	private static final int READ_BUFFER_SIZE = 4096;
+	private static final String[] KNOWN_TOKENS = { "GET", "POST", "PUT", "DELETE", "HEAD", "OPTIONS", "PATCH", "HTTP/1.1", "HTTP/1.0" };
+	private static final byte[][] KNOWN_TOKEN_BYTES = new byte[KNOWN_TOKENS.length][];
+	private static final byte[] CONTENT_LENGTH = "content-length".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] TRANSFER_ENCODING = "transfer-encoding".getBytes(StandardCharsets.US_ASCII);
+	private static final String CHUNKED = "chunked";
+
+	static
+	{
+		for (int i = 0; i < KNOWN_TOKENS.length; i++)
+		{
+			KNOWN_TOKEN_BYTES[i] = KNOWN_TOKENS[i].getBytes(StandardCharsets.US_ASCII);
+		}
+	}
+
+	/**
+	 * States of parser.
+	 */
+	private enum State
+	{
+		REQUEST_LINE, HEADER, BODY, CHUNK_SIZE, CHUNK_DATA, CHUNK_END, TRAILER, COMPLETE
+	}
+
+	private final long maxBodySize;
+
+	private State state = State.REQUEST_LINE;
+	private byte[] line = new byte[256];
+	private int lineLength = 0;
+	private int headSize = 0;
+
+	private String method;
+	private String uri;
+	private String query;
+	private String protocol;
+	private final HttpHeaders headers = new HttpHeaders();
+	private String lastHeaderName;
+	private long contentLength = -1;
+	private boolean chunked = false;
+	private String transferEncoding;
+	private long remaining = 0;
+	private long bodySize = 0;
+	private ByteArrayOutputStream body;
+	private boolean streaming = false;
+	private byte[] readBuffer;
+
+	/**
+	 * Instantiates a new <code>HttpRequestParser</code> without limit of body
+	 * size.
+	 */
+	public HttpRequestParser()
+	{
+		this(-1);
+	}
+
+	/**
+	 * Instantiates a new <code>HttpRequestParser</code>. If body of request is
+	 * larger than <code>maxBodySize</code>, {@link PayloadTooLargeException} is
+	 * thrown.
+	 *
+	 * @param maxBodySize
+	 *          the max body size in bytes, <code>-1</code> means no limit
+	 */
+	public HttpRequestParser(long maxBodySize)
+	{
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Parses the chunk of bytes. It consumes bytes until the end of request. If
+	 * body is read from <code>InputStream</code>, it stops before the data of
+	 * body.
+	 *
+	 * @param data
+	 *          the data
+	 * @param offset
+	 *          the offset
+	 * @param length
+	 *          the length
+	 * @return number of consumed bytes
+	 */
+	public int parse(byte[] data, int offset, int length)
+	{
+		int i = offset;
+		int end = offset + length;
+		while (i < end && state != State.COMPLETE)
+		{
+			if (isReadingData())
+			{
+				if (streaming)
+				{
+					break;
+				}
+				if (body == null)
+				{
+					body = new ByteArrayOutputStream((int) Math.min(remaining, READ_BUFFER_SIZE));
+				}
+				int count = (int) Math.min(end - i, remaining);
+				body.write(data, i, count);
+				remaining -= count;
+				i += count;
+				if (remaining == 0)
+				{
+					state = state == State.BODY ? State.COMPLETE : State.CHUNK_END;
+				}
+				continue;
+			}
+
+			int lineEnd = i;
+			while (lineEnd < end && data[lineEnd] != '\n')
+			{
+				lineEnd++;
+			}
+			appendLine(data, i, lineEnd - i);
+			i = lineEnd;
+			if (i < end)
+			{
+				i++;
+				completeLine();
+			}
+		}
+		return i - offset;
+	}
+
+	/**
+	 * Parses bytes remaining in <code>buffer</code>. Position of buffer is moved
+	 * behind consumed bytes.
+	 *
+	 * @param buffer
+	 *          the buffer
+	 * @return number of consumed bytes
+	 */
+	public int parse(ByteBuffer buffer)
+	{
+		int consumed;
+		if (buffer.hasArray())
+		{
+			consumed = parse(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+		}
+		else
+		{
+			byte[] data = new byte[buffer.remaining()];
+			buffer.duplicate().get(data);
+			consumed = parse(data, 0, data.length);
+		}
+		buffer.position(buffer.position() + consumed);
+		return consumed;
+	}
+
+	/**
+	 * Reads and parses whole request from <code>InputStream</code> including
+	 * its body.
+	 *
+	 * @param is
+	 *          the is
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @see #parseHead(InputStream)
+	 * @see #readBody(InputStream, byte[], int, int)
+	 */
+	public void parse(InputStream is) throws IOException
+	{
+		parseHead(is);
+		byte[] buffer = new byte[READ_BUFFER_SIZE];
+		body = new ByteArrayOutputStream();
+		int read;
+		while ((read = readBody(is, buffer, 0, buffer.length)) >= 0)
+		{
+			body.write(buffer, 0, read);
+		}
+	}
+
+	/**
+	 * Reads and parses only head of request from <code>InputStream</code>, body
+	 * stays in stream and it could be read via
+	 * {@link #readBody(InputStream, byte[], int, int)}. If stream supports
+	 * <code>mark</code>, it is read in chunks and unconsumed bytes are returned
+	 * back to stream, otherwise the head of request is read byte by byte.<br>
+	 * If stream ends before end of head, head is considered as complete.
+	 *
+	 * @param is
+	 *          the is
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public void parseHead(InputStream is) throws IOException
+	{
+		streaming = true;
+		boolean empty = true;
+		while (!isHeadComplete())
+		{
+			if (feed(is) < 0)
+			{
+				if (empty)
+				{
+					throw new EOFException("Connection was closed before request.");
+				}
+				finish();
+				break;
+			}
+			empty = false;
+		}
+	}
+
+	/**
+	 * Reads next part of body from <code>InputStream</code> into
+	 * <code>buffer</code>. Body is read exactly in its length, or in length of
+	 * its chunks, so the stream is never read behind the end of request.
+	 *
+	 * @param is
+	 *          the is
+	 * @param buffer
+	 *          the buffer
+	 * @param offset
+	 *          the offset
+	 * @param length
+	 *          the length
+	 * @return number of read bytes, or <code>-1</code> if whole body was read
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public int readBody(InputStream is, byte[] buffer, int offset, int length) throws IOException
+	{
+		streaming = true;
+		if (length == 0)
+		{
+			return 0;
+		}
+		while (!isComplete())
+		{
+			if (isReadingData())
+			{
+				int read = is.read(buffer, offset, (int) Math.min(length, remaining));
+				if (read < 0)
+				{
+					throw new EOFException("Connection was closed before end of request body.");
+				}
+				remaining -= read;
+				if (remaining == 0)
+				{
+					state = state == State.BODY ? State.COMPLETE : State.CHUNK_END;
+				}
+				return read;
+			}
+			if (feed(is) < 0)
+			{
+				throw new EOFException("Connection was closed before end of request body.");
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads bytes from <code>InputStream</code> and parses them. Unconsumed
+	 * bytes are returned back to stream, if it supports <code>mark</code>,
+	 * otherwise only one byte is read.
+	 *
+	 * @param is
+	 *          the is
+	 * @return number of read bytes, or <code>-1</code> if stream ended
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private int feed(InputStream is) throws IOException
+	{
+		if (readBuffer == null)
+		{
+			readBuffer = new byte[is.markSupported() ? READ_BUFFER_SIZE : 1];
+		}
+		if (is.markSupported())
+		{
+			is.mark(readBuffer.length);
+		}
+		int read = is.read(readBuffer, 0, readBuffer.length);
+		if (read > 0)
+		{
+			int consumed = parse(readBuffer, 0, read);
+			if (consumed < read)
+			{
+				is.reset();
+				long skip = consumed;
+				while (skip > 0)
+				{
+					skip -= is.skip(skip);
+				}
+			}
+		}
+		return read;
+	}
+
+	/**
+	 * Finishes parsing, when no more bytes are available. Unfinished head is
+	 * considered as complete.
+	 */
+	public void finish()
+	{
+		if (state == State.REQUEST_LINE || state == State.HEADER)
+		{
+			if (lineLength > 0)
+			{
+				completeLine();
+			}
+			if (method == null)
+			{
+				throw new BadRequestException("Missing request line.");
+			}
+			state = State.COMPLETE;
+		}
+	}
+
+	/**
+	 * Appends bytes to current line.
+	 *
+	 * @param data
+	 *          the data
+	 * @param offset
+	 *          the offset
+	 * @param length
+	 *          the length
+	 */
+	private void appendLine(byte[] data, int offset, int length)
+	{
+		headSize += length;
+		if (headSize > MAX_HEAD_SIZE)
+		{
+			throw new BadRequestException(isHeadComplete() ? "Chunk line is too large." : "Request head is too large.");
+		}
+		if (lineLength + length > line.length)
+		{
+			line = Arrays.copyOf(line, Math.max(line.length * 2, lineLength + length));
+		}
+		System.arraycopy(data, offset, line, lineLength, length);
+		lineLength += length;
+	}
+
+	/**
+	 * Completes current line, that is terminated by <code>LF</code> or
+	 * <code>CRLF</code>.
+	 */
+	private void completeLine()
+	{
+		int length = lineLength;
+		if (length > 0 && line[length - 1] == '\r')
+		{
+			length--;
+		}
+		lineLength = 0;
+
+		switch (state)
+		{
+			case REQUEST_LINE:
+				if (length > 0)
+				{
+					parseRequestLine(length);
+					state = State.HEADER;
+				}
+				break;
+			case HEADER:
+				if (length == 0)
+				{
+					completeHead();
+				}
+				else
+				{
+					parseHeader(length);
+				}
+				break;
+			case CHUNK_SIZE:
+				headSize = 0;
+				parseChunkSize(length);
+				break;
+			case CHUNK_END:
+				headSize = 0;
+				if (length > 0)
+				{
+					throw new BadRequestException("Invalid end of chunk.");
+				}
+				state = State.CHUNK_SIZE;
+				break;
+			case TRAILER:
+				headSize = 0;
+				if (length == 0)
+				{
+					state = State.COMPLETE;
+				}
+				break;
+			default:
+				break;
+		}
+	}
+
+	/**
+	 * Parses the request line, e.g. <code>GET /uri?param=value HTTP/1.1</code>.
+	 *
+	 * @param length
+	 *          the length of line
+	 */
+	private void parseRequestLine(int length)
+	{
+		int methodEnd = indexOf(line, 0, length, (byte) ' ');
+		if (methodEnd <= 0)
+		{
+			throw new BadRequestException("Invalid request line.");
+		}
+		int targetStart = skipSpaces(methodEnd, length);
+		int targetEnd = indexOf(line, targetStart, length, (byte) ' ');
+		if (targetEnd < 0)
+		{
+			targetEnd = length;
+		}
+		if (targetStart >= targetEnd)
+		{
+			throw new BadRequestException("Invalid request line.");
+		}
+
+		method = toToken(0, methodEnd);
+
+		int queryStart = indexOf(line, targetStart, targetEnd, (byte) '?');
+		if (queryStart < 0)
+		{
+			uri = new String(line, targetStart, targetEnd - targetStart, StandardCharsets.UTF_8);
+		}
+		else
+		{
+			uri = new String(line, targetStart, queryStart - targetStart, StandardCharsets.UTF_8);
+			query = new String(line, queryStart + 1, targetEnd - queryStart - 1, StandardCharsets.UTF_8);
+		}
+
+		int protocolStart = skipSpaces(targetEnd, length);
+		int protocolEnd = length;
+		while (protocolEnd > protocolStart && line[protocolEnd - 1] == ' ')
+		{
+			protocolEnd--;
+		}
+		if (protocolStart < protocolEnd)
+		{
+			protocol = toToken(protocolStart, protocolEnd);
+		}
+	}
+
+	/**
+	 * Parses the header line. Line starting with whitespace continues value of
+	 * previous header.
+	 *
+	 * @param length
+	 *          the length of line
+	 */
+	private void parseHeader(int length)
+	{
+		if ((line[0] == ' ' || line[0] == '\t') && lastHeaderName != null)
+		{
+			int valueStart = skipSpaces(0, length);
+			String value = new String(line, valueStart, trimEnd(valueStart, length) - valueStart, StandardCharsets.UTF_8);
+			headers.put(lastHeaderName, headers.get(lastHeaderName) + " " + value);
+			return;
+		}
+
+		int colon = indexOf(line, 0, length, (byte) ':');
+		if (colon <= 0)
+		{
+			return;
+		}
+		int nameEnd = trimEnd(0, colon);
+		int valueStart = skipSpaces(colon + 1, length);
+		int valueEnd = trimEnd(valueStart, length);
+
+		if (equalsIgnoreCase(line, 0, nameEnd, CONTENT_LENGTH))
+		{
+			long value = parseContentLength(valueStart, valueEnd);
+			if (contentLength >= 0 && contentLength != value)
+			{
+				throw new BadRequestException("Conflicting Content-Length headers.");
+			}
+			contentLength = value;
+		}
+
+		lastHeaderName = HttpHeaders.toName(line, 0, nameEnd);
+		String value = new String(line, valueStart, valueEnd - valueStart, StandardCharsets.UTF_8);
+		if (equalsIgnoreCase(line, 0, nameEnd, TRANSFER_ENCODING))
+		{
+			transferEncoding = transferEncoding == null ? value : transferEncoding + "," + value;
+		}
+		headers.add(lastHeaderName, value);
+	}
+
+	/**
+	 * Parses the chunk size line, e.g. <code>1a2b;extension=value</code>. Chunk
+	 * extensions are ignored. Zero size means the last chunk, that could be
+	 * followed by trailers.
+	 *
+	 * @param length
+	 *          the length of line
+	 */
+	private void parseChunkSize(int length)
+	{
+		int end = indexOf(line, 0, length, (byte) ';');
+		end = trimEnd(0, end < 0 ? length : end);
+		int start = skipSpaces(0, end);
+		if (start >= end || end - start > 15)
+		{
+			throw new BadRequestException("Invalid chunk size.");
+		}
+
+		long size = 0;
+		for (int i = start; i < end; i++)
+		{
+			int digit = Character.digit(line[i], 16);
+			if (digit < 0)
+			{
+				throw new BadRequestException("Invalid chunk size.");
+			}
+			size = size * 16 + digit;
+		}
+
+		if (size == 0)
+		{
+			state = State.TRAILER;
+		}
+		else
+		{
+			checkBodySize(size);
+			remaining = size;
+			state = State.CHUNK_DATA;
+		}
+	}
+
+	/**
+	 * Adds size of next part of body, and checks if body is not too large.
+	 *
+	 * @param size
+	 *          the size of next part of body
+	 */
+	private void checkBodySize(long size)
+	{
+		bodySize += size;
+		if ((maxBodySize >= 0 && bodySize > maxBodySize) || bodySize > Integer.MAX_VALUE)
+		{
+			throw new PayloadTooLargeException("Request body is larger than " + maxBodySize + " bytes.");
+		}
+	}
+
+	/**
+	 * Completes the head of request. If request has body, parser continues
+	 * with body.
+	 */
+	private void completeHead()
+	{
+		headSize = 0;
+		if (transferEncoding != null)
+		{
+			checkTransferEncoding();
+		}
+		if (chunked)
+		{
+			contentLength = -1;
+			state = State.CHUNK_SIZE;
+		}
+		else if (contentLength > 0)
+		{
+			checkBodySize(contentLength);
+			remaining = contentLength;
+			state = State.BODY;
+		}
+		else
+		{
+			state = State.COMPLETE;
+		}
+	}
+
+	/**
+	 * Checks all values of <code>Transfer-Encoding</code> headers. The only
+	 * supported coding is <code>chunked</code>, it has to be the only one and it
+	 * could not be combined with <code>Content-Length</code>.
+	 */
+	private void checkTransferEncoding()
+	{
+		int codings = 0;
+		for (String coding : transferEncoding.split(","))
+		{
+			coding = coding.trim();
+			if (coding.isEmpty())
+			{
+				continue;
+			}
+			if (!CHUNKED.equalsIgnoreCase(coding) || ++codings > 1)
+			{
+				throw new BadRequestException("Unsupported Transfer-Encoding.");
+			}
+		}
+		if (codings == 0)
+		{
+			throw new BadRequestException("Unsupported Transfer-Encoding.");
+		}
+		if (contentLength >= 0)
+		{
+			throw new BadRequestException("Both Transfer-Encoding and Content-Length.");
+		}
+		chunked = true;
+	}
+
+	/**
+	 * Parses the <code>Content-Length</code> value.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the content length
+	 */
+	private long parseContentLength(int start, int end)
+	{
+		if (start >= end || end - start > 18)
+		{
+			throw new BadRequestException("Invalid Content-Length.");
+		}
+		long value = 0;
+		for (int i = start; i < end; i++)
+		{
+			if (line[i] < '0' || line[i] > '9')
+			{
+				throw new BadRequestException("Invalid Content-Length.");
+			}
+			value = value * 10 + (line[i] - '0');
+		}
+		if (value > Integer.MAX_VALUE)
+		{
+			throw new BadRequestException("Invalid Content-Length.");
+		}
+		return value;
+	}
+
+	/**
+	 * Gets the token from current line. Well known tokens are returned as
+	 * constants without any allocation.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the token
+	 */
+	private String toToken(int start, int end)
+	{
+		for (int i = 0; i < KNOWN_TOKEN_BYTES.length; i++)
+		{
+			byte[] token = KNOWN_TOKEN_BYTES[i];
+			if (token.length == end - start && regionMatches(line, start, token))
+			{
+				return KNOWN_TOKENS[i];
+			}
+		}
+		return new String(line, start, end - start, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Skips spaces in current line.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the index of first non-space byte
+	 */
+	private int skipSpaces(int start, int end)
+	{
+		int i = start;
+		while (i < end && (line[i] == ' ' || line[i] == '\t'))
+		{
+			i++;
+		}
+		return i;
+	}
+
+	/**
+	 * Trims spaces from the end of region in current line.
+	 *
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @return the end of region without spaces
+	 */
+	private int trimEnd(int start, int end)
+	{
+		int i = end;
+		while (i > start && (line[i - 1] == ' ' || line[i - 1] == '\t'))
+		{
+			i--;
+		}
+		return i;
+	}
+
+	/**
+	 * Finds index of byte in region.
+	 *
+	 * @param data
+	 *          the data
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @param b
+	 *          the b
+	 * @return the index, or <code>-1</code> if not found
+	 */
+	private static int indexOf(byte[] data, int start, int end, byte b)
+	{
+		for (int i = start; i < end; i++)
+		{
+			if (data[i] == b)
+			{
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks if region starting at <code>start</code> matches
+	 * <code>token</code>.
+	 *
+	 * @param data
+	 *          the data
+	 * @param start
+	 *          the start
+	 * @param token
+	 *          the token
+	 * @return true, if region matches
+	 */
+	private static boolean regionMatches(byte[] data, int start, byte[] token)
+	{
+		for (int i = 0; i < token.length; i++)
+		{
+			if (data[start + i] != token[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if region is equal to lower case <code>token</code> ignoring case
+	 * of ASCII letters.
+	 *
+	 * @param data
+	 *          the data
+	 * @param start
+	 *          the start
+	 * @param end
+	 *          the end
+	 * @param token
+	 *          the lower case token
+	 * @return true, if region is equal
+	 */
+	private static boolean equalsIgnoreCase(byte[] data, int start, int end, byte[] token)
+	{
+		if (end - start != token.length)
+		{
+			return false;
+		}
+		for (int i = 0; i < token.length; i++)
+		{
+			int b = data[start + i];
+			if (b >= 'A' && b <= 'Z')
+			{
+				b += 'a' - 'A';
+			}
+			if (b != token[i])
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if parser is reading data of known length.
+	 *
+	 * @return true, if is reading data
+	 */
+	private boolean isReadingData()
+	{
+		return state == State.BODY || state == State.CHUNK_DATA;
+	}
+
+	/**
+	 * Checks if head of request was parsed.
+	 *
+	 * @return true, if head is complete
+	 */
+	public boolean isHeadComplete()
+	{
+		return state != State.REQUEST_LINE && state != State.HEADER;
+	}
+
+	/**
+	 * Checks if whole request was parsed.
+	 *
+	 * @return true, if is complete
+	 */
+	public boolean isComplete()
+	{
+		return state == State.COMPLETE;
+	}
+
+	/**
+	 * Gets the HTTP method.
+	 *
+	 * @return the method
+	 */
+	public String getMethod()
+	{
+		return method;
+	}
+
+	/**
+	 * Gets the uri without query.
+	 *
+	 * @return the uri
+	 */
+	public String getUri()
+	{
+		return uri;
+	}
+
+	/**
+	 * Gets the query, that follows <code>?</code> in uri.
+	 *
+	 * @return the query, or <code>null</code> if uri has no query
+	 */
+	public String getQuery()
+	{
+		return query;
+	}
+
+	/**
+	 * Gets the protocol.
+	 *
+	 * @return the protocol, or <code>null</code> if it was not defined
+	 */
+	public String getProtocol()
+	{
+		return protocol;
+	}
+
+	/**
+	 * Gets the headers.
+	 *
+	 * @return the headers
+	 */
+	public HttpHeaders getHeaders()
+	{
+		return headers;
+	}
+
+	/**
+	 * Gets the content length.
+	 *
+	 * @return the content length, or <code>-1</code> if it was not defined
+	 */
+	public long getContentLength()
+	{
+		return contentLength;
+	}
+
+	/**
+	 * Checks if body of request is chunked.
+	 *
+	 * @return true, if is chunked
+	 */
+	public boolean isChunked()
+	{
+		return chunked;
+	}
+
+	/**
+	 * Gets the body.
+	 *
+	 * @return the body
+	 */
+	public byte[] getBody()
+	{
+		return body != null ? body.toByteArray() : new byte[0];
+	}
+}
@@ -1,15 +1,22 @@
 package cz.tvrzna.pointy.http;
 
 import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.PrintWriter;
-import java.util.Map;
-import java.util.function.Consumer;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.zip.GZIPOutputStream;
 
-import cz.tvrzna.pointy.CaseInsensitiveHashMap;
 
 /**
  * This class represents and handles HTTP response.
@@ -19,12 +26,24 @@ import cz.tvrzna.pointy.CaseInsensitiveHashMap;
  */
 public class HttpResponse
 {
+	private static final int MAX_COPIED_BODY_SIZE = 65536;
+	private static final String CHARSET = "charset=";
+	private static final int CHUNK_SIZE = 8192;
+	private static final int CHUNK_HEAD_SIZE = 10;
+	private static final byte[] CRLF = { '\r', '\n' };
+	private static final byte[] LAST_CHUNK = { '0', '\r', '\n', '\r', '\n' };
+
 	private final OutputStream os;
 	private boolean allowedGzip = false;
-	private boolean closed = false;
+	private boolean keepAlive = false;
+	private boolean headOnly = false;
+	private boolean committed = false;
+	private volatile boolean closed = false;
+	private HttpEventStream eventStream;
+	private HttpWebSocket webSocket;
 
 	private int httpStatus = HttpStatus.OK_200;
-	private final Map<String, String> httpHeaders = new CaseInsensitiveHashMap();
+	private final HttpHeaders httpHeaders = new HttpHeaders();
 
 	/**
 	 * Instantiates a new http response.
@@ -67,7 +86,7 @@ public class HttpResponse
 	 */
 	public void setContentType(String contentType)
 	{
-		httpHeaders.put("Content-Type", contentType);
+		httpHeaders.put(HttpHeaders.CONTENT_TYPE, contentType);
 	}
 
 	/**
@@ -77,73 +96,148 @@ public class HttpResponse
 	 */
 	public String getContentType()
 	{
-		return httpHeaders.get("Content-Type");
+		return httpHeaders.get(HttpHeaders.CONTENT_TYPE);
 	}
 
 	/**
-	 * Sends HTTP response by writing into <code>OutputStream</code>. Sending
-	 * response closes whole Client connection, because after response there is no
-	 * other action, that could be performed. If <code>allowedGzip</code> is set
-	 * to true, it compress output with gzip.
+	 * Sends HTTP response by writing into <code>OutputStream</code>. Body is
+	 * prepared first, so the <code>Content-Length</code> header could be sent.
+	 * If connection should not be kept alive, sending response closes whole
+	 * Client connection, because after response there is no other action, that
+	 * could be performed. If <code>allowedGzip</code> is set to true, it
+	 * compress output with gzip. Head of response is encoded by
+	 * {@link HttpHeadEncoder} with cached status line and <code>Date</code>
+	 * header. If response is <code>headOnly</code>, body is not written, but
+	 * <code>Content-Length</code> stays the same.
 	 *
-	 * @param bodyHandler
-	 *          the body handler
+	 * @param body
+	 *          the body
+	 * @param length
+	 *          the length of body
 	 * @throws IOException
 	 *           Signals that an I/O exception has occurred.
 	 */
-	private void send(Consumer<OutputStream> bodyHandler) throws IOException
+	private void send(byte[] body, int length) throws IOException
 	{
-		httpHeaders.put("Connection", "keep-alive");
+		httpHeaders.put(HttpHeaders.CONNECTION, keepAlive ? "keep-alive" : "close");
+
 		if (allowedGzip)
 		{
-			httpHeaders.put("Content-Encoding", "gzip");
+			httpHeaders.put(HttpHeaders.CONTENT_ENCODING, "gzip");
+			BodyBuffer compressed = new BodyBuffer(Math.max(32, length / 2));
+			GZIPOutputStream gzip = new GZIPOutputStream(compressed);
+			gzip.write(body, 0, length);
+			gzip.finish();
+			gzip.close();
+			body = compressed.getBuffer();
+			length = compressed.size();
 		}
+		httpHeaders.put(HttpHeaders.CONTENT_LENGTH, Integer.toString(length));
 
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-		PrintWriter w = new PrintWriter(baos);
-
-		w.write("HTTP/1.1 ");
-		w.write(Integer.toString(httpStatus));
-		w.write("\r\n");
-
-		for (Map.Entry<String, String> entry : httpHeaders.entrySet())
+		HttpHeadEncoder.Buffer head = encodeHead();
+		try
 		{
-			w.write(entry.getKey());
-			w.write(": ");
-			w.write(entry.getValue() != null ? entry.getValue() : "");
-			w.write("\r\n");
+			write(head, body, headOnly ? 0 : length);
+		}
+		finally
+		{
+			HttpHeadEncoder.release(head);
 		}
 
-		w.write("\r\n");
-		w.flush();
+		finish();
+	}
 
-		GZIPOutputStream gzip = null;
-		if (allowedGzip)
+	/**
+	 * Writes encoded head and body. {@link HttpGatheringOutput} gets both
+	 * without copying of body. Small body is copied behind head, so it is
+	 * written at once, larger body is written directly after head.
+	 *
+	 * @param head
+	 *          the head
+	 * @param body
+	 *          the body
+	 * @param length
+	 *          the length of body
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void write(HttpHeadEncoder.Buffer head, byte[] body, int length) throws IOException
+	{
+		if (os instanceof HttpGatheringOutput)
 		{
-			gzip = new GZIPOutputStream(baos);
-			bodyHandler.accept(gzip);
-			baos.flush();
-			gzip.finish();
+			((HttpGatheringOutput) os).write(ByteBuffer.wrap(head.toByteArray()), ByteBuffer.wrap(body, 0, length));
+		}
+		else if (length <= MAX_COPIED_BODY_SIZE)
+		{
+			head.write(body, 0, length);
+			head.writeTo(os);
 		}
 		else
 		{
-			bodyHandler.accept(baos);
+			head.writeTo(os);
+			os.write(body, 0, length);
 		}
+	}
 
-		baos.writeTo(os);
-
-		os.close();
-		if (gzip != null)
+	/**
+	 * Gets the charset of body defined in <code>Content-Type</code>, default is
+	 * <code>UTF-8</code>.
+	 *
+	 * @return the charset
+	 */
+	private Charset getCharset()
+	{
+		String contentType = getContentType();
+		int index = contentType != null ? contentType.toLowerCase().indexOf(CHARSET) : -1;
+		if (index >= 0)
 		{
-			gzip.close();
+			String charset = contentType.substring(index + CHARSET.length());
+			int end = charset.indexOf(';');
+			charset = (end >= 0 ? charset.substring(0, end) : charset).trim().replace("\"", "");
+			try
+			{
+				return Charset.forName(charset);
+			}
+			catch (IllegalArgumentException e)
+			{
+				e.printStackTrace();
+			}
 		}
+		return StandardCharsets.UTF_8;
+	}
+
+	/**
+	 * Encodes the head of response. Response is committed since then, so no
+	 * other response could be sent.
+	 *
+	 * @return the buffer with encoded head
+	 */
+	private HttpHeadEncoder.Buffer encodeHead()
+	{
+		committed = true;
+		return HttpHeadEncoder.encode(httpStatus, httpHeaders);
+	}
 
+	/**
+	 * Finishes the response. If connection should not be kept alive,
+	 * <code>OutputStream</code> is closed.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	void finish() throws IOException
+	{
+		os.flush();
+		if (!keepAlive)
+		{
+			os.close();
+		}
 		closed = true;
 	}
 
 	/**
-	 * Sends <code>body</code> as response.
+	 * Sends <code>body</code> as response. Body is encoded by charset defined in
+	 * <code>Content-Type</code>, or by <code>UTF-8</code>.
 	 *
 	 * @param body
 	 *          the body
@@ -152,51 +246,581 @@ public class HttpResponse
 	 */
 	public void send(String body) throws IOException
 	{
-		send(out -> {
-			httpHeaders.put("Content-Length", Integer.toString(body != null ? body.length() : 0));
-			try
+		byte[] bytes = body != null ? body.getBytes(getCharset()) : new byte[0];
+		send(bytes, bytes.length);
+	}
+
+	/**
+	 * Sends <code>body</code> as response. Array is sent without copying, so it
+	 * could be shared by more responses.
+	 *
+	 * @param body
+	 *          the body
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public void send(byte[] body) throws IOException
+	{
+		send(body, body.length);
+	}
+
+	/**
+	 * Sends <code>InputStream</code> as response. Stream is read until its end
+	 * and closed. Content up to 64 kB is sent with <code>Content-Length</code>,
+	 * larger content is streamed in chunks as by {@link #stream()}, so it is
+	 * never held in memory as whole. If reading of stream fails, exception is
+	 * thrown and response is not finished, so client could recognize
+	 * incomplete body.
+	 *
+	 * @param is
+	 *          the is
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public void send(InputStream is) throws IOException
+	{
+		if (is == null)
+		{
+			send(new byte[0], 0);
+			return;
+		}
+		try
+		{
+			BodyBuffer body = new BodyBuffer(8192);
+			byte[] buffer = new byte[8192];
+			int read = 0;
+			while (body.size() < MAX_COPIED_BODY_SIZE && (read = is.read(buffer)) != -1)
 			{
-				out.write(body.getBytes());
+				body.write(buffer, 0, read);
 			}
-			catch (Exception e)
+			if (read == -1)
 			{
-				e.printStackTrace();
+				send(body.getBuffer(), body.size());
+				return;
 			}
-		});
+
+			OutputStream chunked = stream();
+			chunked.write(body.getBuffer(), 0, body.size());
+			while ((read = is.read(buffer)) != -1)
+			{
+				chunked.write(buffer, 0, read);
+			}
+			chunked.close();
+		}
+		finally
+		{
+			is.close();
+		}
 	}
 
 	/**
-	 * Sends <code>InputStream</code> as response.
+	 * Sends content of <code>file</code> as response. Content is not loaded into
+	 * heap, it is transferred directly from file to connection, or compressed
+	 * incrementally, see {@link #send(FileChannel, long, long)}.
 	 *
-	 * @param is
-	 *          the is
+	 * @param file
+	 *          the file
 	 * @throws IOException
 	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
 	 */
-	public void send(InputStream is) throws IOException
+	public void send(Path file) throws IOException
 	{
-		send(out -> {
-			try
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		send(channel, 0, channel.size());
+	}
+
+	/**
+	 * Sends part of file as response. If output of response is
+	 * {@link HttpTransferOutput}, file is sent by
+	 * {@link FileChannel#transferTo(long, long, WritableByteChannel)} to
+	 * <code>SocketChannel</code>, otherwise it is streamed to
+	 * <code>OutputStream</code> through small transfer buffer. If
+	 * <code>allowedGzip</code> is set to true, content is compressed
+	 * incrementally and sent in chunks as by {@link #stream()}, so only small
+	 * part of file is held in memory. If response is <code>headOnly</code>, file
+	 * is not sent at all.
+	 * The <code>channel</code> is closed, when it is sent.
+	 *
+	 * @param channel
+	 *          the channel
+	 * @param position
+	 *          the position of the first byte
+	 * @param count
+	 *          the count of bytes
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public void send(FileChannel channel, long position, long count) throws IOException
+	{
+		try
+		{
+			if (allowedGzip)
 			{
-				int contentLength = 0;
+				OutputStream body = stream();
+				if (!headOnly)
+				{
+					transfer(channel, position, count, body);
+				}
+				body.close();
+				return;
+			}
 
-				while (is.available() > 0)
+			httpHeaders.put(HttpHeaders.CONNECTION, keepAlive ? "keep-alive" : "close");
+			httpHeaders.put(HttpHeaders.CONTENT_LENGTH, Long.toString(count));
+
+			HttpHeadEncoder.Buffer head = encodeHead();
+			try
+			{
+				if (headOnly)
+				{
+					head.writeTo(os);
+				}
+				else if (os instanceof HttpTransferOutput)
+				{
+					HttpTransferOutput output = (HttpTransferOutput) os;
+					output.write(ByteBuffer.wrap(head.toByteArray()));
+					FileChannel transferred = channel;
+					channel = null;
+					output.transferFrom(transferred, position, count);
+				}
+				else
 				{
-					out.write(is.read());
-					contentLength++;
+					head.writeTo(os);
+					transfer(channel, position, count, os);
 				}
+			}
+			finally
+			{
+				HttpHeadEncoder.release(head);
+			}
+
+			finish();
+		}
+		finally
+		{
+			if (channel != null)
+			{
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Starts streaming response. Head is written immediately with
+	 * <code>Transfer-Encoding: chunked</code> instead of
+	 * <code>Content-Length</code>, body is written in chunks of 8 kB, as it is
+	 * produced, so only one chunk is held in memory. If
+	 * <code>allowedGzip</code> is set to true, body is compressed
+	 * incrementally. If response is <code>headOnly</code>, written body is
+	 * discarded. Closing of returned stream ends the response.
+	 *
+	 * @return the output stream of body
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public OutputStream stream() throws IOException
+	{
+		if (committed)
+		{
+			throw new IllegalStateException("Response is already committed.");
+		}
+		httpHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+		httpHeaders.put(HttpHeaders.TRANSFER_ENCODING, "chunked");
+		httpHeaders.put(HttpHeaders.CONNECTION, keepAlive ? "keep-alive" : "close");
+		if (allowedGzip)
+		{
+			httpHeaders.put(HttpHeaders.CONTENT_ENCODING, "gzip");
+		}
+
+		HttpHeadEncoder.Buffer head = encodeHead();
+		try
+		{
+			head.writeTo(os);
+		}
+		finally
+		{
+			HttpHeadEncoder.release(head);
+		}
+		os.flush();
+
+		OutputStream chunked = new ChunkedOutputStream();
+		return allowedGzip && !headOnly ? new GZIPOutputStream(chunked, CHUNK_SIZE, true) : chunked;
+	}
+
+	/**
+	 * Opens <code>Server-Sent Events</code> stream. Head with
+	 * <code>Content-Type: text/event-stream</code> is written immediately and
+	 * connection is kept open after handler returns, until stream is closed.
+	 * Connection is not reused for other requests afterwards.
+	 *
+	 * @return the event stream
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public HttpEventStream eventStream() throws IOException
+	{
+		if (committed)
+		{
+			throw new IllegalStateException("Response is already committed.");
+		}
+		keepAlive = false;
+		allowedGzip = false;
+		setContentType("text/event-stream; charset=utf-8");
+		httpHeaders.put(HttpHeaders.CACHE_CONTROL, "no-cache");
+		httpHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+		httpHeaders.remove(HttpHeaders.CONTENT_ENCODING);
+		httpHeaders.put(HttpHeaders.TRANSFER_ENCODING, "chunked");
+		httpHeaders.put(HttpHeaders.CONNECTION, "close");
+
+		HttpHeadEncoder.Buffer head = encodeHead();
+		try
+		{
+			head.writeTo(os);
+		}
+		finally
+		{
+			HttpHeadEncoder.release(head);
+		}
+		os.flush();
+
+		eventStream = new HttpEventStream(this, os);
+		return eventStream;
+	}
+
+	/**
+	 * Gets the event stream opened by {@link #eventStream()}.
+	 *
+	 * @return the event stream, or <code>null</code> if response is not event
+	 *         stream
+	 * @since 0.3.0
+	 */
+	public HttpEventStream getEventStream()
+	{
+		return eventStream;
+	}
 
-				httpHeaders.put("Content-Length", Integer.toString(contentLength));
+	/**
+	 * Upgrades connection to <code>WebSocket</code> protocol according to RFC
+	 * 6455. Handshake is validated and answered with
+	 * <code>101 Switching Protocols</code>, then the same connection is used
+	 * for messages of {@link HttpWebSocket}, until it is closed. Invalid
+	 * handshake is answered with <code>400 Bad Request</code>, unsupported
+	 * version with <code>426 Upgrade Required</code>.
+	 *
+	 * @param request
+	 *          the request of handshake
+	 * @param handler
+	 *          the handler of messages
+	 * @return the web socket, or <code>null</code> if handshake is invalid
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public HttpWebSocket upgrade(HttpRequest request, HttpWebSocketHandler handler) throws IOException
+	{
+		if (committed)
+		{
+			throw new IllegalStateException("Response is already committed.");
+		}
+		HttpHeaders requestHeaders = request.getHttpHeaders();
+		String key = requestHeaders.get(HttpHeaders.SEC_WEBSOCKET_KEY);
+		if (!"GET".equalsIgnoreCase(request.getMethod()) || !containsToken(requestHeaders.get(HttpHeaders.UPGRADE), "websocket")
+				|| !containsToken(requestHeaders.get(HttpHeaders.CONNECTION), "upgrade") || key == null || key.trim().isEmpty())
+		{
+			setStatus(HttpStatus.BAD_REQUEST_400);
+			send("Invalid WebSocket handshake");
+			return null;
+		}
+		String version = requestHeaders.get(HttpHeaders.SEC_WEBSOCKET_VERSION);
+		if (version == null || !"13".equals(version.trim()))
+		{
+			setStatus(HttpStatus.UPGRADE_REQUIRED_426);
+			httpHeaders.put(HttpHeaders.SEC_WEBSOCKET_VERSION, "13");
+			send("Unsupported WebSocket version");
+			return null;
+		}
+
+		keepAlive = false;
+		allowedGzip = false;
+		setStatus(HttpStatus.SWITCHING_PROTOCOLS_101);
+		httpHeaders.remove(HttpHeaders.CONTENT_TYPE);
+		httpHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+		httpHeaders.remove(HttpHeaders.CONTENT_ENCODING);
+		httpHeaders.put(HttpHeaders.UPGRADE, "websocket");
+		httpHeaders.put(HttpHeaders.CONNECTION, "Upgrade");
+		httpHeaders.put(HttpHeaders.SEC_WEBSOCKET_ACCEPT, HttpWebSocket.createAcceptKey(key));
+
+		HttpHeadEncoder.Buffer head = encodeHead();
+		try
+		{
+			head.writeTo(os);
+		}
+		finally
+		{
+			HttpHeadEncoder.release(head);
+		}
+		os.flush();
+
+		webSocket = new HttpWebSocket(request, os, handler);
+		try
+		{
+			handler.onOpen(webSocket);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			webSocket.close(HttpWebSocket.INTERNAL_ERROR, "");
+		}
+		return webSocket;
+	}
+
+	/**
+	 * Gets the web socket opened by
+	 * {@link #upgrade(HttpRequest, HttpWebSocketHandler)}.
+	 *
+	 * @return the web socket, or <code>null</code> if connection was not
+	 *         upgraded
+	 * @since 0.3.0
+	 */
+	public HttpWebSocket getWebSocket()
+	{
+		return webSocket;
+	}
 
-				is.close();
+	/**
+	 * Checks if comma separated header value contains the token, ignoring case.
+	 *
+	 * @param value
+	 *          the header value
+	 * @param token
+	 *          the token
+	 * @return true, if token is contained
+	 */
+	private static boolean containsToken(String value, String token)
+	{
+		if (value != null)
+		{
+			for (String part : value.split(","))
+			{
+				if (part.trim().equalsIgnoreCase(token))
+				{
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Sends parts of <code>body</code> as <code>206 Partial Content</code>
+	 * response. Parts are written directly from array without copying.
+	 *
+	 * @param body
+	 *          the body
+	 * @param ranges
+	 *          the satisfiable ranges parsed by
+	 *          {@link HttpRange#parse(String, long)}
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public void send(byte[] body, List<HttpRange> ranges) throws IOException
+	{
+		sendRanges(body.length, ranges, (position, count, last) -> {
+			if (os instanceof HttpGatheringOutput)
+			{
+				((HttpGatheringOutput) os).write(ByteBuffer.wrap(body, (int) position, (int) count));
 			}
-			catch (Exception e)
+			else
 			{
-				e.printStackTrace();
+				os.write(body, (int) position, (int) count);
 			}
 		});
 	}
 
+	/**
+	 * Sends parts of <code>file</code> as <code>206 Partial Content</code>
+	 * response. Only requested parts of file are read, they are transferred
+	 * directly to connection in the same way as by
+	 * {@link #send(FileChannel, long, long)}. All parts are transferred through
+	 * single channel, which is closed after the last one.
+	 *
+	 * @param file
+	 *          the file
+	 * @param length
+	 *          the length of file, that ranges were parsed against
+	 * @param ranges
+	 *          the satisfiable ranges parsed by
+	 *          {@link HttpRange#parse(String, long)}
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public void send(Path file, long length, List<HttpRange> ranges) throws IOException
+	{
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		boolean[] handedOver = { false };
+		try
+		{
+			sendRanges(length, ranges, (position, count, last) -> {
+				if (os instanceof HttpTransferOutput)
+				{
+					((HttpTransferOutput) os).transferFrom(channel, position, count, last);
+					handedOver[0] = last;
+				}
+				else
+				{
+					transfer(channel, position, count, os);
+				}
+			});
+		}
+		finally
+		{
+			if (!handedOver[0])
+			{
+				channel.close();
+			}
+		}
+	}
+
+	/**
+	 * Sends the ranges of content as <code>206 Partial Content</code> response.
+	 * Single range is sent with <code>Content-Range</code> header, more ranges
+	 * are sent as <code>multipart/byteranges</code>. Ranges are never compressed
+	 * and they are not written, if response is <code>headOnly</code>.
+	 *
+	 * @param length
+	 *          the length of whole content
+	 * @param ranges
+	 *          the ranges
+	 * @param writer
+	 *          the writer of ranges
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void sendRanges(long length, List<HttpRange> ranges, RangeWriter writer) throws IOException
+	{
+		setStatus(HttpStatus.PARTIAL_CONTENT_206);
+		allowedGzip = false;
+		httpHeaders.remove(HttpHeaders.CONTENT_ENCODING);
+		httpHeaders.put(HttpHeaders.CONNECTION, keepAlive ? "keep-alive" : "close");
+
+		byte[][] partHeads = null;
+		byte[] closing = null;
+		if (ranges.size() == 1)
+		{
+			httpHeaders.put(HttpHeaders.CONTENT_RANGE, ranges.get(0).toContentRange(length));
+			httpHeaders.put(HttpHeaders.CONTENT_LENGTH, Long.toString(ranges.get(0).getLength()));
+		}
+		else
+		{
+			String boundary = Long.toHexString(ThreadLocalRandom.current().nextLong());
+			String contentType = getContentType();
+			partHeads = new byte[ranges.size()][];
+			closing = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.US_ASCII);
+			long contentLength = closing.length;
+			for (int i = 0; i < ranges.size(); i++)
+			{
+				HttpRange range = ranges.get(i);
+				String partHead = "\r\n--" + boundary + "\r\n" + (contentType != null ? "Content-Type: " + contentType + "\r\n" : "") + "Content-Range: "
+						+ range.toContentRange(length) + "\r\n\r\n";
+				partHeads[i] = partHead.getBytes(StandardCharsets.US_ASCII);
+				contentLength += partHeads[i].length + range.getLength();
+			}
+			httpHeaders.remove(HttpHeaders.CONTENT_RANGE);
+			httpHeaders.put(HttpHeaders.CONTENT_TYPE, "multipart/byteranges; boundary=" + boundary);
+			httpHeaders.put(HttpHeaders.CONTENT_LENGTH, Long.toString(contentLength));
+		}
+
+		HttpHeadEncoder.Buffer head = encodeHead();
+		try
+		{
+			head.writeTo(os);
+		}
+		finally
+		{
+			HttpHeadEncoder.release(head);
+		}
+		for (int i = 0; i < ranges.size() && !headOnly; i++)
+		{
+			if (partHeads != null)
+			{
+				os.write(partHeads[i]);
+			}
+			writer.write(ranges.get(i).getStart(), ranges.get(i).getLength(), i == ranges.size() - 1);
+		}
+		if (closing != null && !headOnly)
+		{
+			os.write(closing);
+		}
+
+		finish();
+	}
+
+	/**
+	 * Transfers part of file to <code>target</code> through small transfer
+	 * buffer.
+	 *
+	 * @param channel
+	 *          the channel
+	 * @param position
+	 *          the position of the first byte
+	 * @param count
+	 *          the count of bytes
+	 * @param target
+	 *          the target stream
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void transfer(FileChannel channel, long position, long count, OutputStream target) throws IOException
+	{
+		WritableByteChannel targetChannel = Channels.newChannel(target);
+		long sent = 0;
+		while (sent < count)
+		{
+			long transferred = channel.transferTo(position + sent, count - sent, targetChannel);
+			if (transferred <= 0)
+			{
+				throw new EOFException("File is shorter than " + count + " bytes.");
+			}
+			sent += transferred;
+		}
+	}
+
+	/**
+	 * Sends <code>304 Not Modified</code> response, that consists only of head
+	 * without <code>Content-Length</code>, so client uses its cached
+	 * representation.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	public void notModified() throws IOException
+	{
+		setStatus(HttpStatus.NOT_MODIFIED_304);
+		httpHeaders.remove(HttpHeaders.CONTENT_LENGTH);
+		httpHeaders.remove(HttpHeaders.CONTENT_ENCODING);
+		httpHeaders.put(HttpHeaders.CONNECTION, keepAlive ? "keep-alive" : "close");
+
+		HttpHeadEncoder.Buffer head = encodeHead();
+		try
+		{
+			head.writeTo(os);
+		}
+		finally
+		{
+			HttpHeadEncoder.release(head);
+		}
+
+		finish();
+	}
+
 	/**
 	 * Redirects to defined <code>url</code>.
 	 *
@@ -209,19 +833,9 @@ public class HttpResponse
 	 */
 	public void redirect(String url, boolean permanent) throws IOException
 	{
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-		PrintWriter w = new PrintWriter(baos);
-		w.write("HTTP/1.1 ");
-		w.write(Integer.toString(permanent ? HttpStatus.MOVED_PERMANENTLY_301 : HttpStatus.FOUND_302));
-		w.write("\r\n");
-		w.write("Location: ");
-		w.write(url);
-		w.flush();
-
-		baos.writeTo(os);
-		os.close();
-		closed = true;
+		setStatus(permanent ? HttpStatus.MOVED_PERMANENTLY_301 : HttpStatus.FOUND_302);
+		httpHeaders.put(HttpHeaders.LOCATION, url);
+		send((String) null);
 	}
 
 	/**
@@ -258,6 +872,57 @@ public class HttpResponse
 		this.allowedGzip = allowedGzip;
 	}
 
+	/**
+	 * Checks if connection should be kept alive after response.
+	 *
+	 * @return true, if is keep alive
+	 * @since 0.3.0
+	 */
+	public boolean isKeepAlive()
+	{
+		return keepAlive;
+	}
+
+	/**
+	 * Sets, if connection should be kept alive after response. If it is not
+	 * kept alive, the <code>OutputStream</code> is closed after response is
+	 * sent.
+	 *
+	 * @param keepAlive
+	 *          the new keep alive
+	 * @since 0.3.0
+	 */
+	public void setKeepAlive(boolean keepAlive)
+	{
+		this.keepAlive = keepAlive;
+	}
+
+	/**
+	 * Checks if response answers <code>HEAD</code> request, so only its head is
+	 * written.
+	 *
+	 * @return true, if is head only
+	 * @since 0.3.0
+	 */
+	public boolean isHeadOnly()
+	{
+		return headOnly;
+	}
+
+	/**
+	 * Sets, if only head of response should be written. Headers describing
+	 * body, e.g. <code>Content-Length</code>, are sent as if body was written,
+	 * so connection could be kept alive.
+	 *
+	 * @param headOnly
+	 *          the new head only
+	 * @since 0.3.0
+	 */
+	public void setHeadOnly(boolean headOnly)
+	{
+		this.headOnly = headOnly;
+	}
+
 	/**
 	 * Checks if is closed.
 	 *
@@ -268,14 +933,198 @@ public class HttpResponse
 		return closed;
 	}
 
+	/**
+	 * Checks if head of response was already written, e.g. by
+	 * {@link #stream()}, so no other response could be sent.
+	 *
+	 * @return true, if is committed
+	 * @since 0.3.0
+	 */
+	public boolean isCommitted()
+	{
+		return committed;
+	}
+
 	/**
 	 * Gets the http headers.
 	 *
 	 * @return the http headers
 	 */
-	public Map<String, String> getHttpHeaders()
+	public HttpHeaders getHttpHeaders()
 	{
 		return httpHeaders;
 	}
 
+	/**
+	 * The <code>OutputStream</code>, that writes body of streaming response in
+	 * chunks. Closing of stream writes the last chunk and finishes the response.
+	 */
+	private class ChunkedOutputStream extends OutputStream
+	{
+		private final byte[] buffer = new byte[CHUNK_HEAD_SIZE + CHUNK_SIZE + CRLF.length + LAST_CHUNK.length];
+		private int count = 0;
+		private boolean finished = false;
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			ensureOpen();
+			if (count == CHUNK_SIZE)
+			{
+				flushChunk();
+			}
+			buffer[CHUNK_HEAD_SIZE + count++] = (byte) b;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException
+		{
+			ensureOpen();
+			while (len > 0)
+			{
+				if (count == CHUNK_SIZE)
+				{
+					flushChunk();
+				}
+				int copied = Math.min(len, CHUNK_SIZE - count);
+				System.arraycopy(b, off, buffer, CHUNK_HEAD_SIZE + count, copied);
+				count += copied;
+				off += copied;
+				len -= copied;
+			}
+		}
+
+		@Override
+		public void flush() throws IOException
+		{
+			flushChunk();
+		}
+
+		@Override
+		public void close() throws IOException
+		{
+			if (finished)
+			{
+				return;
+			}
+			finished = true;
+			if (headOnly)
+			{
+				count = 0;
+			}
+			else if (count > 0)
+			{
+				int start = frame();
+				int end = CHUNK_HEAD_SIZE + count + CRLF.length;
+				System.arraycopy(LAST_CHUNK, 0, buffer, end, LAST_CHUNK.length);
+				os.write(buffer, start, end + LAST_CHUNK.length - start);
+				count = 0;
+			}
+			else
+			{
+				os.write(LAST_CHUNK);
+			}
+			finish();
+		}
+
+		/**
+		 * Ensures, that stream is not closed.
+		 *
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private void ensureOpen() throws IOException
+		{
+			if (finished)
+			{
+				throw new IOException("Stream is closed.");
+			}
+		}
+
+		/**
+		 * Writes buffered bytes as chunk at once and passes it to connection.
+		 *
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private void flushChunk() throws IOException
+		{
+			if (count > 0 && !headOnly)
+			{
+				int start = frame();
+				os.write(buffer, start, CHUNK_HEAD_SIZE + count + CRLF.length - start);
+				os.flush();
+			}
+			count = 0;
+		}
+
+		/**
+		 * Frames the buffered data of chunk in place. Size line is written right
+		 * before data and line break right after it, so the whole chunk is one
+		 * continuous part of buffer.
+		 *
+		 * @return the offset of chunk in buffer
+		 */
+		private int frame()
+		{
+			String size = Integer.toHexString(count);
+			int start = CHUNK_HEAD_SIZE - CRLF.length - size.length();
+			for (int i = 0; i < size.length(); i++)
+			{
+				buffer[start + i] = (byte) size.charAt(i);
+			}
+			System.arraycopy(CRLF, 0, buffer, CHUNK_HEAD_SIZE - CRLF.length, CRLF.length);
+			System.arraycopy(CRLF, 0, buffer, CHUNK_HEAD_SIZE + count, CRLF.length);
+			return start;
+		}
+	}
+
+	/**
+	 * Writer of one range of content after previously written data.
+	 */
+	@FunctionalInterface
+	private interface RangeWriter
+	{
+		/**
+		 * Writes the range.
+		 *
+		 * @param position
+		 *          the position of the first byte
+		 * @param count
+		 *          the count of bytes
+		 * @param last
+		 *          true, if it is the last range
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		void write(long position, long count, boolean last) throws IOException;
+	}
+
+	/**
+	 * The buffer of body, that provides its content without copying.
+	 */
+	private static class BodyBuffer extends ByteArrayOutputStream
+	{
+		/**
+		 * Instantiates a new body buffer.
+		 *
+		 * @param size
+		 *          the initial size
+		 */
+		private BodyBuffer(int size)
+		{
+			super(size);
+		}
+
+		/**
+		 * Gets the internal buffer, that is valid up to {@link #size()}.
+		 *
+		 * @return the buffer
+		 */
+		private byte[] getBuffer()
+		{
+			return buf;
+		}
+	}
+
 }
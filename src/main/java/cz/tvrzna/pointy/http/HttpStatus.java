@@ -8,12 +8,86 @@ package cz.tvrzna.pointy.http;
  */
 public class HttpStatus
 {
+	public static final int SWITCHING_PROTOCOLS_101 = 101;
 	public static final int OK_200 = 200;
+	public static final int PARTIAL_CONTENT_206 = 206;
 	public static final int MOVED_PERMANENTLY_301 = 301;
 	public static final int FOUND_302 = 302;
+	public static final int NOT_MODIFIED_304 = 304;
 	public static final int BAD_REQUEST_400 = 400;
 	public static final int UNAUTHORIZED_401 = 401;
 	public static final int FORBIDDEN_403 = 403;
 	public static final int NOT_FOUND_404 = 404;
+	public static final int PAYLOAD_TOO_LARGE_413 = 413;
+	public static final int RANGE_NOT_SATISFIABLE_416 = 416;
+	public static final int UPGRADE_REQUIRED_426 = 426;
 	public static final int INTERNAL_SERVER_ERROR_500 = 500;
+	public static final int SERVICE_UNAVAILABLE_503 = 503;
+
+	private static final String[] REASON_PHRASES = new String[600];
+
+	static
+	{
+		REASON_PHRASES[100] = "Continue";
+		REASON_PHRASES[101] = "Switching Protocols";
+		REASON_PHRASES[200] = "OK";
+		REASON_PHRASES[201] = "Created";
+		REASON_PHRASES[202] = "Accepted";
+		REASON_PHRASES[203] = "Non-Authoritative Information";
+		REASON_PHRASES[204] = "No Content";
+		REASON_PHRASES[205] = "Reset Content";
+		REASON_PHRASES[206] = "Partial Content";
+		REASON_PHRASES[300] = "Multiple Choices";
+		REASON_PHRASES[301] = "Moved Permanently";
+		REASON_PHRASES[302] = "Found";
+		REASON_PHRASES[303] = "See Other";
+		REASON_PHRASES[304] = "Not Modified";
+		REASON_PHRASES[307] = "Temporary Redirect";
+		REASON_PHRASES[308] = "Permanent Redirect";
+		REASON_PHRASES[400] = "Bad Request";
+		REASON_PHRASES[401] = "Unauthorized";
+		REASON_PHRASES[402] = "Payment Required";
+		REASON_PHRASES[403] = "Forbidden";
+		REASON_PHRASES[404] = "Not Found";
+		REASON_PHRASES[405] = "Method Not Allowed";
+		REASON_PHRASES[406] = "Not Acceptable";
+		REASON_PHRASES[407] = "Proxy Authentication Required";
+		REASON_PHRASES[408] = "Request Timeout";
+		REASON_PHRASES[409] = "Conflict";
+		REASON_PHRASES[410] = "Gone";
+		REASON_PHRASES[411] = "Length Required";
+		REASON_PHRASES[412] = "Precondition Failed";
+		REASON_PHRASES[413] = "Payload Too Large";
+		REASON_PHRASES[414] = "URI Too Long";
+		REASON_PHRASES[415] = "Unsupported Media Type";
+		REASON_PHRASES[416] = "Range Not Satisfiable";
+		REASON_PHRASES[417] = "Expectation Failed";
+		REASON_PHRASES[426] = "Upgrade Required";
+		REASON_PHRASES[428] = "Precondition Required";
+		REASON_PHRASES[429] = "Too Many Requests";
+		REASON_PHRASES[431] = "Request Header Fields Too Large";
+		REASON_PHRASES[500] = "Internal Server Error";
+		REASON_PHRASES[501] = "Not Implemented";
+		REASON_PHRASES[502] = "Bad Gateway";
+		REASON_PHRASES[503] = "Service Unavailable";
+		REASON_PHRASES[504] = "Gateway Timeout";
+		REASON_PHRASES[505] = "HTTP Version Not Supported";
+	}
+
+	/**
+	 * Gets the reason phrase of status code.
+	 *
+	 * @param status
+	 *          the status
+	 * @return the reason phrase, or empty string if status is unknown
+	 * @since 0.3.0
+	 */
+	public static String getReasonPhrase(int status)
+	{
+		if (status >= 0 && status < REASON_PHRASES.length && REASON_PHRASES[status] != null)
+		{
+			return REASON_PHRASES[status];
+		}
+		return "";
+	}
 }
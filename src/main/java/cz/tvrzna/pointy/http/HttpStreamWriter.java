@@ -0,0 +1,27 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This interface defines writer of streaming response body, that is used by
+ * {@link HttpContext#stream(HttpStreamWriter)}.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+@FunctionalInterface
+public interface HttpStreamWriter
+{
+
+	/**
+	 * Writes the body of response. Written bytes are sent to client in chunks,
+	 * as they are produced.
+	 *
+	 * @param os
+	 *          the output stream of body
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	public void write(OutputStream os) throws IOException;
+}
@@ -0,0 +1,56 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * Output of response, that is able to transfer content of file directly to
+ * <code>SocketChannel</code> by {@link FileChannel#transferTo(long, long,
+ * java.nio.channels.WritableByteChannel)}, so content is copied by kernel and
+ * it is not loaded into heap.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public interface HttpTransferOutput extends HttpGatheringOutput
+{
+	/**
+	 * Transfers the part of file after all previously written buffers. Output
+	 * takes ownership of <code>channel</code> and closes it, when it is
+	 * transferred or when connection is closed.
+	 *
+	 * @param channel
+	 *          the channel
+	 * @param position
+	 *          the position of the first byte
+	 * @param count
+	 *          the count of bytes
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	default void transferFrom(FileChannel channel, long position, long count) throws IOException
+	{
+		transferFrom(channel, position, count, true);
+	}
+
+	/**
+	 * Transfers the part of file after all previously written buffers. If
+	 * <code>close</code> is true, output takes ownership of
+	 * <code>channel</code> and closes it, when it is transferred or when
+	 * connection is closed. Otherwise the channel stays open, so more parts of
+	 * file could be transferred through it, the last part should close it.
+	 *
+	 * @param channel
+	 *          the channel
+	 * @param position
+	 *          the position of the first byte
+	 * @param count
+	 *          the count of bytes
+	 * @param close
+	 *          true, if channel should be closed after this part
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 * @since 0.3.0
+	 */
+	void transferFrom(FileChannel channel, long position, long count, boolean close) throws IOException;
+}
@@ -0,0 +1,669 @@
+package cz.tvrzna.pointy.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+
+/**
+ * Connection upgraded to <code>WebSocket</code> protocol according to RFC
+ * 6455 by {@link HttpContext#upgrade(HttpWebSocketHandler)}. It decodes
+ * received frames, joins fragmented messages, answers pings and closing
+ * handshake, and passes messages to {@link HttpWebSocketHandler}.<br>
+ * Messages could be sent from any <code>Thread</code>. Sending waits, when too
+ * many bytes are waiting to be written to client, so fast producer is slowed
+ * down to speed of client.<br>
+ * Received bytes are passed by server via {@link #receive(ByteBuffer)} or
+ * {@link #read(InputStream)}, so connection is served by the same server, as
+ * HTTP requests.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public final class HttpWebSocket
+{
+	public static final int NORMAL_CLOSURE = 1000;
+	public static final int GOING_AWAY = 1001;
+	public static final int PROTOCOL_ERROR = 1002;
+	public static final int NO_STATUS = 1005;
+	public static final int ABNORMAL_CLOSURE = 1006;
+	public static final int INVALID_PAYLOAD = 1007;
+	public static final int MESSAGE_TOO_BIG = 1009;
+	public static final int INTERNAL_ERROR = 1011;
+
+	private static final String GUID = "258EAFA5-E914-47DA-95CA-C5AB0DC85B11";
+	private static final int OPCODE_CONTINUATION = 0x0;
+	private static final int OPCODE_TEXT = 0x1;
+	private static final int OPCODE_BINARY = 0x2;
+	private static final int OPCODE_CLOSE = 0x8;
+	private static final int OPCODE_PING = 0x9;
+	private static final int OPCODE_PONG = 0xA;
+	private static final int MAX_CONTROL_PAYLOAD = 125;
+	private static final int READ_BUFFER_SIZE = 8192;
+
+	private final HttpRequest request;
+	private final OutputStream os;
+	private final HttpWebSocketHandler handler;
+	private final Object writeLock = new Object();
+	private int maxMessageSize = 1048576;
+
+	private byte[] buffer = new byte[READ_BUFFER_SIZE];
+	private int start = 0;
+	private int end = 0;
+	private final ByteArrayOutputStream message = new ByteArrayOutputStream();
+	private int messageOpcode = 0;
+
+	private volatile boolean closeSent = false;
+	private volatile boolean closed = false;
+
+	/**
+	 * Instantiates a new http web socket.
+	 *
+	 * @param request
+	 *          the request of handshake
+	 * @param os
+	 *          the output stream of connection
+	 * @param handler
+	 *          the handler
+	 */
+	HttpWebSocket(HttpRequest request, OutputStream os, HttpWebSocketHandler handler)
+	{
+		this.request = request;
+		this.os = os;
+		this.handler = handler;
+	}
+
+	/**
+	 * Computes the value of <code>Sec-WebSocket-Accept</code> header from key
+	 * sent by client.
+	 *
+	 * @param key
+	 *          the value of Sec-WebSocket-Key header
+	 * @return the accept key
+	 */
+	static String createAcceptKey(String key)
+	{
+		try
+		{
+			MessageDigest sha1 = MessageDigest.getInstance("SHA-1");
+			return Base64.getEncoder().encodeToString(sha1.digest((key.trim() + GUID).getBytes(StandardCharsets.US_ASCII)));
+		}
+		catch (NoSuchAlgorithmException e)
+		{
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Sends the text message.
+	 *
+	 * @param message
+	 *          the message
+	 * @return true, if message was sent, false if connection is closed
+	 */
+	public boolean send(String message)
+	{
+		return sendFrame(OPCODE_TEXT, message.getBytes(StandardCharsets.UTF_8));
+	}
+
+	/**
+	 * Sends the binary message. Array is sent without copying, so it must not be
+	 * modified until this method returns.
+	 *
+	 * @param message
+	 *          the message
+	 * @return true, if message was sent, false if connection is closed
+	 */
+	public boolean send(byte[] message)
+	{
+		return sendFrame(OPCODE_BINARY, message);
+	}
+
+	/**
+	 * Sends the ping, client answers it by pong, so lost connection is
+	 * detected.
+	 *
+	 * @return true, if ping was sent, false if connection is closed
+	 */
+	public boolean ping()
+	{
+		return sendFrame(OPCODE_PING, new byte[0]);
+	}
+
+	/**
+	 * Starts closing handshake with {@link #NORMAL_CLOSURE} status code.
+	 */
+	public void close()
+	{
+		close(NORMAL_CLOSURE, "");
+	}
+
+	/**
+	 * Starts closing handshake. Connection is closed, when client answers.
+	 *
+	 * @param code
+	 *          the status code
+	 * @param reason
+	 *          the reason
+	 */
+	public void close(int code, String reason)
+	{
+		sendClose(code, reason);
+	}
+
+	/**
+	 * Sends the frame. Frame is never fragmented and it is not masked, as it is
+	 * sent by server.
+	 *
+	 * @param opcode
+	 *          the opcode
+	 * @param payload
+	 *          the payload
+	 * @return true, if frame was sent
+	 */
+	private boolean sendFrame(int opcode, byte[] payload)
+	{
+		synchronized (writeLock)
+		{
+			if (closed || closeSent)
+			{
+				return false;
+			}
+			return writeFrame(opcode, payload);
+		}
+	}
+
+	/**
+	 * Writes the frame. Head and payload are written together by
+	 * {@link HttpGatheringOutput}, if it is available.
+	 *
+	 * @param opcode
+	 *          the opcode
+	 * @param payload
+	 *          the payload
+	 * @return true, if frame was written
+	 */
+	private boolean writeFrame(int opcode, byte[] payload)
+	{
+		byte[] head;
+		if (payload.length < 126)
+		{
+			head = new byte[] { (byte) (0x80 | opcode), (byte) payload.length };
+		}
+		else if (payload.length < 65536)
+		{
+			head = new byte[] { (byte) (0x80 | opcode), 126, (byte) (payload.length >> 8), (byte) payload.length };
+		}
+		else
+		{
+			head = new byte[10];
+			head[0] = (byte) (0x80 | opcode);
+			head[1] = 127;
+			for (int i = 0; i < 8; i++)
+			{
+				head[9 - i] = (byte) ((long) payload.length >> (8 * i));
+			}
+		}
+
+		try
+		{
+			if (os instanceof HttpGatheringOutput)
+			{
+				((HttpGatheringOutput) os).write(ByteBuffer.wrap(head), ByteBuffer.wrap(payload));
+			}
+			else
+			{
+				os.write(head);
+				os.write(payload);
+				os.flush();
+			}
+			return true;
+		}
+		catch (IOException e)
+		{
+			abort();
+			return false;
+		}
+	}
+
+	/**
+	 * Sends the close frame, if it was not sent yet.
+	 *
+	 * @param code
+	 *          the status code, or {@link #NO_STATUS} if close frame should be
+	 *          empty
+	 * @param reason
+	 *          the reason
+	 */
+	private void sendClose(int code, String reason)
+	{
+		synchronized (writeLock)
+		{
+			if (closed || closeSent)
+			{
+				return;
+			}
+			closeSent = true;
+			byte[] payload = new byte[0];
+			if (code != NO_STATUS)
+			{
+				byte[] reasonBytes = reason != null ? reason.getBytes(StandardCharsets.UTF_8) : new byte[0];
+				payload = new byte[2 + Math.min(reasonBytes.length, MAX_CONTROL_PAYLOAD - 2)];
+				payload[0] = (byte) (code >> 8);
+				payload[1] = (byte) code;
+				System.arraycopy(reasonBytes, 0, payload, 2, payload.length - 2);
+			}
+			writeFrame(OPCODE_CLOSE, payload);
+		}
+	}
+
+	/**
+	 * Reads frames from <code>InputStream</code> of connection, until
+	 * connection is closed. It is used by servers, that serve each connection
+	 * by its own <code>Thread</code>.
+	 *
+	 * @param is
+	 *          the input stream of connection
+	 */
+	public void read(InputStream is)
+	{
+		byte[] bytes = new byte[READ_BUFFER_SIZE];
+		try
+		{
+			while (!closed)
+			{
+				int read = is.read(bytes);
+				if (read < 0)
+				{
+					break;
+				}
+				receive(ByteBuffer.wrap(bytes, 0, read));
+			}
+		}
+		catch (IOException e)
+		{
+			// Connection was closed.
+		}
+		abort();
+	}
+
+	/**
+	 * Decodes received bytes of connection. Complete frames are processed
+	 * immediately, incomplete frame is kept until next bytes are received.
+	 *
+	 * @param bytes
+	 *          the received bytes
+	 */
+	public void receive(ByteBuffer bytes)
+	{
+		if (closed)
+		{
+			return;
+		}
+		if (end + bytes.remaining() > buffer.length)
+		{
+			if (end - start + bytes.remaining() > buffer.length)
+			{
+				buffer = Arrays.copyOfRange(buffer, start, start + Math.max(buffer.length * 2, end - start + bytes.remaining()));
+			}
+			else
+			{
+				System.arraycopy(buffer, start, buffer, 0, end - start);
+			}
+			end -= start;
+			start = 0;
+		}
+		int length = bytes.remaining();
+		bytes.get(buffer, end, length);
+		end += length;
+
+		while (!closed && decodeFrame())
+		{
+			// Frames are processed while they are complete.
+		}
+		if (start == end)
+		{
+			start = 0;
+			end = 0;
+			if (buffer.length > READ_BUFFER_SIZE)
+			{
+				buffer = new byte[READ_BUFFER_SIZE];
+			}
+		}
+	}
+
+	/**
+	 * Decodes and processes one frame, if it is complete.
+	 *
+	 * @return true, if frame was processed
+	 */
+	private boolean decodeFrame()
+	{
+		int available = end - start;
+		if (available < 2)
+		{
+			return false;
+		}
+		int b0 = buffer[start] & 0xff;
+		int b1 = buffer[start + 1] & 0xff;
+		boolean fin = (b0 & 0x80) != 0;
+		int opcode = b0 & 0x0f;
+		boolean masked = (b1 & 0x80) != 0;
+		int length7 = b1 & 0x7f;
+
+		if ((b0 & 0x70) != 0 || !masked || !isKnownOpcode(opcode) || (opcode >= OPCODE_CLOSE && (!fin || length7 > MAX_CONTROL_PAYLOAD)))
+		{
+			fail(PROTOCOL_ERROR, "Invalid frame");
+			return false;
+		}
+
+		int headLength = 2 + (length7 == 126 ? 2 : length7 == 127 ? 8 : 0) + 4;
+		if (available < headLength)
+		{
+			return false;
+		}
+
+		long payloadLength = length7;
+		if (length7 == 126)
+		{
+			payloadLength = ((buffer[start + 2] & 0xff) << 8) | (buffer[start + 3] & 0xff);
+		}
+		else if (length7 == 127)
+		{
+			payloadLength = 0;
+			for (int i = 0; i < 8; i++)
+			{
+				payloadLength = (payloadLength << 8) | (buffer[start + 2 + i] & 0xff);
+			}
+		}
+		if (payloadLength < 0 || payloadLength + (opcode < OPCODE_CLOSE ? message.size() : 0) > maxMessageSize)
+		{
+			fail(MESSAGE_TOO_BIG, "Message is too big");
+			return false;
+		}
+		if (available < headLength + payloadLength)
+		{
+			return false;
+		}
+
+		int maskOffset = start + headLength - 4;
+		byte[] payload = new byte[(int) payloadLength];
+		for (int i = 0; i < payload.length; i++)
+		{
+			payload[i] = (byte) (buffer[start + headLength + i] ^ buffer[maskOffset + (i & 3)]);
+		}
+		start += headLength + payload.length;
+
+		processFrame(fin, opcode, payload);
+		return true;
+	}
+
+	/**
+	 * Checks if opcode is defined by RFC 6455.
+	 *
+	 * @param opcode
+	 *          the opcode
+	 * @return true, if is known opcode
+	 */
+	private static boolean isKnownOpcode(int opcode)
+	{
+		return opcode <= OPCODE_BINARY || (opcode >= OPCODE_CLOSE && opcode <= OPCODE_PONG);
+	}
+
+	/**
+	 * Processes the decoded frame.
+	 *
+	 * @param fin
+	 *          true, if it is the last frame of message
+	 * @param opcode
+	 *          the opcode
+	 * @param payload
+	 *          the unmasked payload
+	 */
+	private void processFrame(boolean fin, int opcode, byte[] payload)
+	{
+		switch (opcode)
+		{
+			case OPCODE_TEXT:
+			case OPCODE_BINARY:
+				if (messageOpcode != 0)
+				{
+					fail(PROTOCOL_ERROR, "Expected continuation frame");
+				}
+				else if (fin)
+				{
+					deliver(opcode, payload);
+				}
+				else
+				{
+					messageOpcode = opcode;
+					message.write(payload, 0, payload.length);
+				}
+				break;
+			case OPCODE_CONTINUATION:
+				if (messageOpcode == 0)
+				{
+					fail(PROTOCOL_ERROR, "Unexpected continuation frame");
+					break;
+				}
+				message.write(payload, 0, payload.length);
+				if (fin)
+				{
+					int completeOpcode = messageOpcode;
+					byte[] completeMessage = message.toByteArray();
+					message.reset();
+					messageOpcode = 0;
+					deliver(completeOpcode, completeMessage);
+				}
+				break;
+			case OPCODE_PING:
+				sendFrame(OPCODE_PONG, payload);
+				break;
+			case OPCODE_CLOSE:
+				processClose(payload);
+				break;
+			default:
+				// Pong needs no answer.
+				break;
+		}
+	}
+
+	/**
+	 * Processes received close frame. Close frame is answered, if it was not
+	 * sent yet, and connection is closed.
+	 *
+	 * @param payload
+	 *          the payload
+	 */
+	private void processClose(byte[] payload)
+	{
+		if (payload.length == 1)
+		{
+			fail(PROTOCOL_ERROR, "Invalid close frame");
+			return;
+		}
+		int code = payload.length >= 2 ? ((payload[0] & 0xff) << 8) | (payload[1] & 0xff) : NO_STATUS;
+		String reason;
+		try
+		{
+			reason = decodeText(Arrays.copyOfRange(payload, Math.min(2, payload.length), payload.length));
+		}
+		catch (CharacterCodingException e)
+		{
+			fail(INVALID_PAYLOAD, "Invalid close reason");
+			return;
+		}
+		sendClose(code, "");
+		finish(code, reason);
+	}
+
+	/**
+	 * Passes complete message to handler. Exception of handler closes the
+	 * connection.
+	 *
+	 * @param opcode
+	 *          the opcode
+	 * @param payload
+	 *          the payload
+	 */
+	private void deliver(int opcode, byte[] payload)
+	{
+		try
+		{
+			if (opcode == OPCODE_TEXT)
+			{
+				handler.onText(this, decodeText(payload));
+			}
+			else
+			{
+				handler.onBinary(this, payload);
+			}
+		}
+		catch (CharacterCodingException e)
+		{
+			fail(INVALID_PAYLOAD, "Invalid UTF-8");
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+			fail(INTERNAL_ERROR, "");
+		}
+	}
+
+	/**
+	 * Decodes the text. Invalid <code>UTF-8</code> is not replaced, but
+	 * reported.
+	 *
+	 * @param payload
+	 *          the payload
+	 * @return the text
+	 * @throws CharacterCodingException
+	 *           the character coding exception
+	 */
+	private static String decodeText(byte[] payload) throws CharacterCodingException
+	{
+		return StandardCharsets.UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPORT).onUnmappableCharacter(CodingErrorAction.REPORT)
+				.decode(ByteBuffer.wrap(payload)).toString();
+	}
+
+	/**
+	 * Fails the connection, close frame with status code is sent and
+	 * connection is closed immediately.
+	 *
+	 * @param code
+	 *          the status code
+	 * @param reason
+	 *          the reason
+	 */
+	private void fail(int code, String reason)
+	{
+		sendClose(code, reason);
+		finish(code, reason);
+	}
+
+	/**
+	 * Handles lost connection. It is used by servers, when connection is closed
+	 * without closing handshake.
+	 */
+	public void abort()
+	{
+		finish(ABNORMAL_CLOSURE, "");
+	}
+
+	/**
+	 * Finishes the connection and notifies handler, if it was not finished
+	 * yet.
+	 *
+	 * @param code
+	 *          the status code
+	 * @param reason
+	 *          the reason
+	 */
+	private void finish(int code, String reason)
+	{
+		synchronized (writeLock)
+		{
+			if (closed)
+			{
+				return;
+			}
+			closed = true;
+			try
+			{
+				os.close();
+			}
+			catch (IOException e)
+			{
+				// Connection is already closed.
+			}
+		}
+		try
+		{
+			handler.onClose(this, code, reason);
+		}
+		catch (Exception e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Checks if connection is open, so messages could be sent.
+	 *
+	 * @return true, if is open
+	 */
+	public boolean isOpen()
+	{
+		return !closed && !closeSent;
+	}
+
+	/**
+	 * Checks if connection is closed.
+	 *
+	 * @return true, if is closed
+	 */
+	public boolean isClosed()
+	{
+		return closed;
+	}
+
+	/**
+	 * Gets the request of handshake.
+	 *
+	 * @return the request
+	 */
+	public HttpRequest getRequest()
+	{
+		return request;
+	}
+
+	/**
+	 * Gets the max size of received message. Default value is 1 MB.
+	 *
+	 * @return the max message size
+	 */
+	public int getMaxMessageSize()
+	{
+		return maxMessageSize;
+	}
+
+	/**
+	 * Sets the max size of received message. Larger message closes the
+	 * connection with {@link #MESSAGE_TOO_BIG} status code.
+	 *
+	 * @param maxMessageSize
+	 *          the new max message size
+	 */
+	public void setMaxMessageSize(int maxMessageSize)
+	{
+		this.maxMessageSize = maxMessageSize;
+	}
+}
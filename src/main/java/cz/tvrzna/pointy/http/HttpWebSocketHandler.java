@@ -0,0 +1,63 @@
+package cz.tvrzna.pointy.http;
+
+/**
+ * This interface defines handler of {@link HttpWebSocket} messages. Only text
+ * messages have to be handled, other callbacks do nothing by default.<br>
+ * Callbacks of one connection are never invoked concurrently and they are
+ * invoked in order, in which messages were received.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+@FunctionalInterface
+public interface HttpWebSocketHandler
+{
+
+	/**
+	 * Handles opened connection. It is invoked after handshake is sent, before
+	 * any message is received.
+	 *
+	 * @param webSocket
+	 *          the web socket
+	 */
+	public default void onOpen(HttpWebSocket webSocket)
+	{
+	}
+
+	/**
+	 * Handles received text message.
+	 *
+	 * @param webSocket
+	 *          the web socket
+	 * @param message
+	 *          the message
+	 */
+	public void onText(HttpWebSocket webSocket, String message);
+
+	/**
+	 * Handles received binary message.
+	 *
+	 * @param webSocket
+	 *          the web socket
+	 * @param message
+	 *          the message
+	 */
+	public default void onBinary(HttpWebSocket webSocket, byte[] message)
+	{
+	}
+
+	/**
+	 * Handles closed connection. It is invoked only once, either after closing
+	 * handshake, or when connection is lost.
+	 *
+	 * @param webSocket
+	 *          the web socket
+	 * @param code
+	 *          the status code of closing
+	 * @param reason
+	 *          the reason
+	 */
+	public default void onClose(HttpWebSocket webSocket, int code, String reason)
+	{
+	}
+}
@@ -1,5 +1,7 @@
 package cz.tvrzna.pointy.router;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 import cz.tvrzna.pointy.http.HttpContext;
 import cz.tvrzna.pointy.http.HttpExceptionHandler;
 import cz.tvrzna.pointy.http.HttpRequest;
@@ -12,7 +14,11 @@ import cz.tvrzna.pointy.http.HttpRequest;
  * which route and its <code>PointyRouteDefinition</code> matches to requested
  * <code>URI</code> and <code>Method</code>.<br>
  * <code>URI</code> is checked with <code>Regex</code>, that means, that more
- * Routes can handle variable count of <code>URIs</code>, but when
+ * Routes can handle variable count of <code>URIs</code>. Routes are compiled
+ * into {@link PointyRouteTable} once, so no <code>Regex</code> is compiled
+ * during handling of request. Segment of <code>URI</code> could be also named
+ * path parameter, e.g. <code>/users/{id}</code>, which value is available via
+ * <code>HttpContext.getPathParam("id")</code>. When
  * <code>HttpResponse</code> sends its response, no other route will be
  * invoked.<br>
  * <code>PointyEndpoint</code> is extension of {@link PointyRouteGroup}, that
@@ -49,6 +55,7 @@ public abstract class PointyEndpoint extends PointyRouteGroup
 	}
 
 	private HttpExceptionHandler exceptionHandler = new HttpExceptionHandler();
+	private final AtomicReference<PointyRouteTable> routeTable = new AtomicReference<>();
 
 	/**
 	 * Method invoked during <code>PointyServer</code>.start().<br>
@@ -57,132 +64,106 @@ public abstract class PointyEndpoint extends PointyRouteGroup
 	public abstract void onInit();
 
 	/**
-	 * Handles {@link HttpContext} and according parameters defined in its
-	 * {@link HttpRequest} it decides, which {@link PointyRouteDefinition} inside
-	 * each <code>Route</code> should be invoked.<br>
-	 * If any {@link PointyRouteDefinition} sends response, no other Route will be
-	 * invoked. <br>
-	 * If no {@link PointyRouteDefinition} sends response, by default it returns 404
-	 * Error response. If any {@link PointyRouteDefinition} throws any
-	 * <code>Exception</code>, it is catched and handled in
-	 * <code>exceptionHandler</code>. The {@link HttpExceptionHandler} could be
-	 * overriden and replaced by using
-	 * {@link #setExceptionHandler(HttpExceptionHandler)}.
+	 * Compiles all registered routes into {@link PointyRouteTable}, that is used
+	 * for handling of requests. It is invoked by server after
+	 * {@link #onInit()}. Routes registered after compilation are not handled,
+	 * until routes are compiled again. Compiled table replaces previous one
+	 * atomically, requests being handled finish with previous table.
 	 *
-	 * @param context
-	 *          the context
+	 * @since 0.3.0
 	 */
-	public void handle(HttpContext context)
+	public void compileRoutes()
 	{
-		try
-		{
-			handleRouteGroup(null, this, context);
-			if (context.getResponse().isClosed())
-			{
-				return;
-			}
-		}
-		catch (Exception e)
-		{
-			exceptionHandler.handle(e, context);
-			return;
-		}
-		context.status(404).send("404 File Not Found");
+		routeTable.set(PointyRouteTable.compile(this));
 	}
 
 	/**
-	 * Handles single {@link PointyRouteGroup} and tries to find corresponding
-	 * {@link PointyRouteDefinition}. If response was send, no other
-	 * {@link PointyRouteDefinition} will be invoked.
+	 * Replaces the compiled route table by table compiled from
+	 * <code>routeGroup</code>. It allows to prepare completely new set of routes
+	 * while server is running and to switch to it at once, without blocking of
+	 * requests being handled.
 	 *
-	 * @param parentUri
-	 *          the parent uri
 	 * @param routeGroup
-	 *          the route group
-	 * @param context
-	 *          the context
+	 *          the route group with new routes
+	 * @return the previous route table, or <code>null</code> if routes were not
+	 *         compiled yet
+	 * @since 0.3.0
 	 */
-	private void handleRouteGroup(String parentUri, PointyRouteGroup routeGroup, HttpContext context)
+	public PointyRouteTable swapRoutes(PointyRouteGroup routeGroup)
 	{
-		String uri = (parentUri != null ? parentUri : "").concat(routeGroup.getUri());
-		handleRoute(parentUri, routeGroup, context);
-		if (context.getResponse().isClosed())
-		{
-			return;
-		}
-		for (PointyRouteGroup childRouteGroup : routeGroup.getRouteGroups())
-		{
-			handleRouteGroup(uri, childRouteGroup, context);
-			if (context.getResponse().isClosed())
-			{
-				return;
-			}
-		}
-		for (PointyRoute route : routeGroup.getRoutes())
-		{
-			handleRoute(uri, route, context);
-			if (context.getResponse().isClosed())
-			{
-				return;
-			}
-		}
-		for (PointyStaticRoute staticRoute : getStaticRoutes())
-		{
-			handleRouteDef(uri, staticRoute, context);
-			if (context.getResponse().isClosed())
-			{
-				return;
-			}
-		}
+		return swapRouteTable(PointyRouteTable.compile(routeGroup));
 	}
 
 	/**
-	 * Handles single {@link PointyRoute} and tries to find corresponding
-	 * {@link PointyRouteDefinition}. If response was send, no other
-	 * {@link PointyRouteDefinition} will be invoked.
+	 * Replaces the compiled route table by <code>newRouteTable</code>.
 	 *
-	 * @param parentUri
-	 *          the parent uri
-	 * @param route
-	 *          the route
-	 * @param context
-	 *          the context
+	 * @param newRouteTable
+	 *          the new route table
+	 * @return the previous route table, or <code>null</code> if routes were not
+	 *         compiled yet
+	 * @since 0.3.0
+	 */
+	public PointyRouteTable swapRouteTable(PointyRouteTable newRouteTable)
+	{
+		return routeTable.getAndSet(newRouteTable);
+	}
+
+	/**
+	 * Gets the compiled route table. If routes were not compiled yet, they are
+	 * compiled now.
+	 *
+	 * @return the route table
+	 * @since 0.3.0
 	 */
-	private void handleRoute(String parentUri, PointyRoute route, HttpContext context)
+	public PointyRouteTable getRouteTable()
 	{
-		String uri = (parentUri != null ? parentUri : "").concat(route.getUri());
-		for (PointyRouteDefinition def : route.getRouteDefs())
+		PointyRouteTable table = routeTable.get();
+		if (table == null)
 		{
-			handleRouteDef(uri, def, context);
-			if (context.getResponse().isClosed())
-			{
-				return;
-			}
+			routeTable.compareAndSet(null, PointyRouteTable.compile(this));
+			table = routeTable.get();
 		}
+		return table;
 	}
 
 	/**
-	 * Checks, if {@link PointyRouteDefinition} matches requested <code>URI</code>
-	 * and <code>Method</code>.
+	 * Handles {@link HttpContext} and according parameters defined in its
+	 * {@link HttpRequest} it decides, which {@link PointyRouteDefinition} inside
+	 * each <code>Route</code> should be invoked.<br>
+	 * If any {@link PointyRouteDefinition} sends response, no other Route will be
+	 * invoked. <br>
+	 * If no {@link PointyRouteDefinition} sends response, by default it returns 404
+	 * Error response. If any {@link PointyRouteDefinition} throws any
+	 * <code>Exception</code>, it is catched and handled in
+	 * <code>exceptionHandler</code>, unless response is already committed by
+	 * streaming. The {@link HttpExceptionHandler} could be
+	 * overriden and replaced by using
+	 * {@link #setExceptionHandler(HttpExceptionHandler)}.
 	 *
-	 * @param parentUri
-	 *          the parent uri
-	 * @param def
-	 *          the def
 	 * @param context
 	 *          the context
 	 */
-	private void handleRouteDef(String parentUri, PointyRouteDefinition def, HttpContext context)
+	public void handle(HttpContext context)
 	{
-		String uri = (parentUri != null ? parentUri : "").concat(def.getUri()).replace("//", "/");
-		if (context.getRequest().getUri().matches(uri) && ("ANY".equals(def.getMethod()) || def.getMethod().equals(context.getRequest().getMethod())))
+		try
 		{
-			def.getRouteHandler().handle(context);
-			if (context.getResponse().isClosed())
+			getRouteTable().handle(context);
+			if (context.getResponse().isCommitted())
 			{
 				return;
 			}
 		}
+		catch (Exception e)
+		{
+			if (context.getResponse().isCommitted())
+			{
+				e.printStackTrace();
+				return;
+			}
+			exceptionHandler.handle(e, context);
+			return;
+		}
+		context.status(404).send("404 File Not Found");
 	}
 
 	/**
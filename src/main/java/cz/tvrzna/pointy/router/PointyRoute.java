@@ -1,7 +1,9 @@
 package cz.tvrzna.pointy.router;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import cz.tvrzna.pointy.http.HttpWebSocketHandler;
 
 /**
  * This class defines <code>List&lt;PointyRouteDefinition&gt;</code>, that is
@@ -13,7 +15,7 @@ import java.util.List;
 public class PointyRoute
 {
 	private final String uri;
-	private final List<PointyRouteDefinition> routeDefs = new ArrayList<>();
+	private final List<PointyRouteDefinition> routeDefs = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Instantiates a new <code>PointyRoute</code> handling defined
@@ -89,6 +91,66 @@ public class PointyRoute
 		routeDefs.add(new PointyRouteDefinition(path, "PUT", handler));
 	}
 
+	/**
+	 * Creates new {@link PointyRouteDefinition} on defined <code>path</code> with
+	 * defined {@link PointyRouteHandler} for DELETE method.
+	 *
+	 * @param path
+	 *          the path
+	 * @param handler
+	 *          the handler
+	 * @since 0.3.0
+	 */
+	public void DELETE(String path, PointyRouteHandler handler)
+	{
+		routeDefs.add(new PointyRouteDefinition(path, "DELETE", handler));
+	}
+
+	/**
+	 * Creates new {@link PointyRouteDefinition} on defined <code>path</code> with
+	 * defined {@link PointyRouteHandler} for PATCH method.
+	 *
+	 * @param path
+	 *          the path
+	 * @param handler
+	 *          the handler
+	 * @since 0.3.0
+	 */
+	public void PATCH(String path, PointyRouteHandler handler)
+	{
+		routeDefs.add(new PointyRouteDefinition(path, "PATCH", handler));
+	}
+
+	/**
+	 * Creates new {@link PointyRouteDefinition} on defined <code>path</code> with
+	 * defined {@link PointyRouteHandler} for HEAD method.
+	 *
+	 * @param path
+	 *          the path
+	 * @param handler
+	 *          the handler
+	 * @since 0.3.0
+	 */
+	public void HEAD(String path, PointyRouteHandler handler)
+	{
+		routeDefs.add(new PointyRouteDefinition(path, "HEAD", handler));
+	}
+
+	/**
+	 * Creates new {@link PointyRouteDefinition} on defined <code>path</code> with
+	 * defined {@link PointyRouteHandler} for OPTIONS method.
+	 *
+	 * @param path
+	 *          the path
+	 * @param handler
+	 *          the handler
+	 * @since 0.3.0
+	 */
+	public void OPTIONS(String path, PointyRouteHandler handler)
+	{
+		routeDefs.add(new PointyRouteDefinition(path, "OPTIONS", handler));
+	}
+
 	/**
 	 * Creates new {@link PointyRouteDefinition} on defined <code>path</code> with
 	 * defined {@link PointyRouteHandler} for any method.
@@ -102,4 +164,20 @@ public class PointyRoute
 	{
 		routeDefs.add(new PointyRouteDefinition(path, "ANY", handler));
 	}
+
+	/**
+	 * Creates new {@link PointyRouteDefinition} on defined <code>path</code>,
+	 * that upgrades GET request to <code>WebSocket</code> connection, whose
+	 * messages are handled by defined {@link HttpWebSocketHandler}.
+	 *
+	 * @param path
+	 *          the path
+	 * @param handler
+	 *          the handler
+	 * @since 0.3.0
+	 */
+	public void WEBSOCKET(String path, HttpWebSocketHandler handler)
+	{
+		routeDefs.add(new PointyRouteDefinition(path, "GET", context -> context.upgrade(handler)));
+	}
 }
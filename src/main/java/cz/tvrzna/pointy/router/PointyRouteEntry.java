@@ -0,0 +1,262 @@
+package cz.tvrzna.pointy.router;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Compiled {@link PointyRouteDefinition} with its full <code>URI</code>. If
+ * each segment of <code>URI</code> is literal or named path parameter (e.g.
+ * <code>/users/{id}</code>), entry is matched by {@link PointyRouteTrie},
+ * otherwise it is matched by compiled {@link Pattern}, where path parameters
+ * are replaced by named groups. Such entry still has literal prefix of
+ * segments, so it is matched only by requests within this prefix.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+final class PointyRouteEntry
+{
+	private static final Pattern PATH_PARAM = Pattern.compile("\\{([a-zA-Z][a-zA-Z0-9]*)\\}");
+	private static final String REGEX_CHARS = "\\.[]{}()*+?^$|";
+	private static final String QUANTIFIER_CHARS = "*+?{";
+	private static final String METHOD_ANY = "ANY";
+	private static final String DEFAULT_CHARSET = "utf-8";
+
+	private final int index;
+	private final String[] segments;
+	private final String[] prefix;
+	private final Pattern pattern;
+	private final List<String> paramNames = new ArrayList<>();
+	private final PointyRouteDefinition def;
+
+	/**
+	 * Instantiates a new pointy route entry.
+	 *
+	 * @param index
+	 *          the index of entry in route table
+	 * @param uri
+	 *          the full uri
+	 * @param def
+	 *          the def
+	 */
+	PointyRouteEntry(int index, String uri, PointyRouteDefinition def)
+	{
+		this.index = index;
+		this.def = def;
+
+		String[] uriSegments = uri.split("/", -1);
+		int literalCount = -1;
+		for (int i = 0; i < uriSegments.length; i++)
+		{
+			String segment = uriSegments[i];
+			Matcher matcher = PATH_PARAM.matcher(segment);
+			if (matcher.matches())
+			{
+				paramNames.add(matcher.group(1));
+				if (literalCount < 0)
+				{
+					literalCount = i;
+				}
+			}
+			else if (isRegex(segment))
+			{
+				if (literalCount < 0)
+				{
+					literalCount = i;
+				}
+				// Quantifier of preceding slash could join segment with previous one.
+				if (literalCount == i && i > 0 && QUANTIFIER_CHARS.indexOf(segment.charAt(0)) >= 0)
+				{
+					literalCount--;
+				}
+				uriSegments = null;
+				break;
+			}
+		}
+
+		if (uriSegments != null)
+		{
+			segments = uriSegments;
+			prefix = null;
+			pattern = null;
+		}
+		else
+		{
+			// Alternation could match completely different prefix.
+			prefix = uri.indexOf('|') < 0 ? Arrays.copyOf(uri.split("/", -1), literalCount) : new String[0];
+			paramNames.clear();
+			Matcher matcher = PATH_PARAM.matcher(uri);
+			while (matcher.find())
+			{
+				paramNames.add(matcher.group(1));
+			}
+			segments = null;
+			pattern = Pattern.compile(matcher.replaceAll("(?<$1>[^/]+)"));
+		}
+	}
+
+	/**
+	 * Checks if segment contains any character with special meaning in
+	 * <code>Regex</code>.
+	 *
+	 * @param segment
+	 *          the segment
+	 * @return true, if is regex
+	 */
+	private static boolean isRegex(String segment)
+	{
+		for (int i = 0; i < segment.length(); i++)
+		{
+			if (REGEX_CHARS.indexOf(segment.charAt(i)) >= 0)
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if entry handles any method.
+	 *
+	 * @return true, if is any method
+	 */
+	boolean isAnyMethod()
+	{
+		return METHOD_ANY.equals(def.getMethod());
+	}
+
+	/**
+	 * Matches the uri by compiled <code>Pattern</code>.
+	 *
+	 * @param uri
+	 *          the uri
+	 * @return the path parameters, or <code>null</code> if uri does not match
+	 */
+	Map<String, String> match(String uri)
+	{
+		Matcher matcher = pattern.matcher(uri);
+		if (!matcher.matches())
+		{
+			return null;
+		}
+		if (paramNames.isEmpty())
+		{
+			return Collections.emptyMap();
+		}
+		Map<String, String> params = new HashMap<>();
+		for (String name : paramNames)
+		{
+			params.put(name, decode(matcher.group(name)));
+		}
+		return params;
+	}
+
+	/**
+	 * Creates path parameters from values captured by
+	 * {@link PointyRouteTrie}.
+	 *
+	 * @param values
+	 *          the values in order of path parameters
+	 * @return the path parameters
+	 */
+	Map<String, String> createParams(List<String> values)
+	{
+		if (paramNames.isEmpty())
+		{
+			return Collections.emptyMap();
+		}
+		Map<String, String> params = new HashMap<>();
+		for (int i = 0; i < paramNames.size(); i++)
+		{
+			params.put(paramNames.get(i), decode(values.get(i)));
+		}
+		return params;
+	}
+
+	/**
+	 * Decodes the path parameter value. Character <code>+</code> is kept.
+	 *
+	 * @param value
+	 *          the value
+	 * @return the decoded value
+	 */
+	private static String decode(String value)
+	{
+		if (value.indexOf('%') < 0)
+		{
+			return value;
+		}
+		try
+		{
+			return URLDecoder.decode(value.replace("+", "%2B"), DEFAULT_CHARSET);
+		}
+		catch (UnsupportedEncodingException | IllegalArgumentException e)
+		{
+			return value;
+		}
+	}
+
+	/**
+	 * Checks if segment of {@link #getSegments()} is path parameter.
+	 *
+	 * @param segment
+	 *          the segment
+	 * @return true, if is path parameter
+	 */
+	static boolean isParam(String segment)
+	{
+		return segment.length() > 2 && segment.charAt(0) == '{' && segment.charAt(segment.length() - 1) == '}';
+	}
+
+	/**
+	 * Gets the index of entry in route table.
+	 *
+	 * @return the index
+	 */
+	int getIndex()
+	{
+		return index;
+	}
+
+	/**
+	 * Gets the segments of uri, if entry could be matched by
+	 * {@link PointyRouteTrie}.
+	 *
+	 * @return the segments, or <code>null</code> if entry needs
+	 *         <code>Pattern</code>
+	 */
+	String[] getSegments()
+	{
+		return segments;
+	}
+
+	/**
+	 * Gets the literal segments, that precede the first non-literal segment of
+	 * uri, if entry needs <code>Pattern</code>.
+	 *
+	 * @return the prefix, or <code>null</code> if entry could be matched by
+	 *         {@link PointyRouteTrie}
+	 */
+	String[] getPrefix()
+	{
+		return prefix;
+	}
+
+	/**
+	 * Gets the route definition.
+	 *
+	 * @return the def
+	 */
+	PointyRouteDefinition getDef()
+	{
+		return def;
+	}
+}
@@ -1,7 +1,7 @@
 package cz.tvrzna.pointy.router;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * This class defines <code>List</code>s of {@link PointyRoute}s, @{link
@@ -13,9 +13,9 @@ import java.util.List;
  */
 public class PointyRouteGroup extends PointyRoute
 {
-	private final List<PointyRoute> routes = new ArrayList<>();
-	private final List<PointyRouteGroup> routeGroups = new ArrayList<>();
-	private final List<PointyStaticRoute> staticRoutes = new ArrayList<>();
+	private final List<PointyRoute> routes = new CopyOnWriteArrayList<>();
+	private final List<PointyRouteGroup> routeGroups = new CopyOnWriteArrayList<>();
+	private final List<PointyStaticRoute> staticRoutes = new CopyOnWriteArrayList<>();
 
 	/**
 	 * Instantiates a new pointy route group.
@@ -0,0 +1,247 @@
+package cz.tvrzna.pointy.router;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import cz.tvrzna.pointy.http.HttpContext;
+
+/**
+ * Immutable table of routes, that is compiled from tree of
+ * {@link PointyRouteGroup}s, {@link PointyRoute}s and
+ * {@link PointyStaticRoute}s. Full <code>URI</code> of each
+ * {@link PointyRouteDefinition} is concatenated and compiled only once, so
+ * handling of request does not need any string building or regex
+ * compilation.<br>
+ * Definitions, that consist of literal segments and named path parameters
+ * (e.g. <code>/users/{id}</code>), are stored in prefix tree, that finds them
+ * in time proportional to length of requested <code>URI</code>. Other
+ * definitions are matched by compiled {@link Pattern}, but only if requested
+ * <code>URI</code> starts with their literal segments, so whole route groups
+ * with different prefix are skipped. Path parameters are
+ * available via {@link HttpContext#getPathParam(String)}.<br>
+ * Table is not changed after compilation, so it could be shared by any count of
+ * threads without synchronization.<br>
+ * Definitions are partitioned by <code>Method</code>, definitions for any
+ * method are merged into each partition, so request never checks definitions
+ * of other methods.<br>
+ * Order of definitions in table is the same, as they are searched in tree:
+ * definitions of route group, child route groups, routes and static routes.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class PointyRouteTable
+{
+	private final int size;
+	private final Map<String, MethodTable> methodTables = new HashMap<>();
+	private final MethodTable anyMethodTable = new MethodTable();
+
+	/**
+	 * Instantiates a new pointy route table.
+	 *
+	 * @param entries
+	 *          the entries
+	 */
+	private PointyRouteTable(List<PointyRouteEntry> entries)
+	{
+		this.size = entries.size();
+		for (PointyRouteEntry entry : entries)
+		{
+			if (!entry.isAnyMethod())
+			{
+				methodTables.computeIfAbsent(entry.getDef().getMethod(), key -> new MethodTable());
+			}
+		}
+		for (PointyRouteEntry entry : entries)
+		{
+			if (entry.isAnyMethod())
+			{
+				anyMethodTable.add(entry);
+				for (MethodTable methodTable : methodTables.values())
+				{
+					methodTable.add(entry);
+				}
+			}
+			else
+			{
+				methodTables.get(entry.getDef().getMethod()).add(entry);
+			}
+		}
+	}
+
+	/**
+	 * Compiles the route table from <code>routeGroup</code> and all its
+	 * children.
+	 *
+	 * @param routeGroup
+	 *          the root route group
+	 * @return the pointy route table
+	 */
+	public static PointyRouteTable compile(PointyRouteGroup routeGroup)
+	{
+		List<PointyRouteEntry> entries = new ArrayList<>();
+		compileRouteGroup("", routeGroup, entries);
+		return new PointyRouteTable(entries);
+	}
+
+	/**
+	 * Compiles the route group.
+	 *
+	 * @param parentUri
+	 *          the parent uri
+	 * @param routeGroup
+	 *          the route group
+	 * @param entries
+	 *          the entries
+	 */
+	private static void compileRouteGroup(String parentUri, PointyRouteGroup routeGroup, List<PointyRouteEntry> entries)
+	{
+		String uri = parentUri.concat(routeGroup.getUri());
+		compileRoute(parentUri, routeGroup, entries);
+		for (PointyRouteGroup childRouteGroup : routeGroup.getRouteGroups())
+		{
+			compileRouteGroup(uri, childRouteGroup, entries);
+		}
+		for (PointyRoute route : routeGroup.getRoutes())
+		{
+			compileRoute(uri, route, entries);
+		}
+		for (PointyStaticRoute staticRoute : routeGroup.getStaticRoutes())
+		{
+			addEntry(uri, staticRoute, entries);
+		}
+	}
+
+	/**
+	 * Compiles the route.
+	 *
+	 * @param parentUri
+	 *          the parent uri
+	 * @param route
+	 *          the route
+	 * @param entries
+	 *          the entries
+	 */
+	private static void compileRoute(String parentUri, PointyRoute route, List<PointyRouteEntry> entries)
+	{
+		String uri = parentUri.concat(route.getUri());
+		for (PointyRouteDefinition def : route.getRouteDefs())
+		{
+			addEntry(uri, def, entries);
+		}
+	}
+
+	/**
+	 * Adds the entry of definition with its full uri.
+	 *
+	 * @param parentUri
+	 *          the parent uri
+	 * @param def
+	 *          the def
+	 * @param entries
+	 *          the entries
+	 */
+	private static void addEntry(String parentUri, PointyRouteDefinition def, List<PointyRouteEntry> entries)
+	{
+		entries.add(new PointyRouteEntry(entries.size(), parentUri.concat(def.getUri()).replace("//", "/"), def));
+	}
+
+	/**
+	 * Handles {@link HttpContext} by all matching {@link PointyRouteDefinition}s
+	 * in order of table, until any of them sends response or starts streaming
+	 * it.
+	 *
+	 * @param context
+	 *          the context
+	 */
+	public void handle(HttpContext context)
+	{
+		MethodTable methodTable = methodTables.getOrDefault(context.getRequest().getMethod(), anyMethodTable);
+		methodTable.handle(context);
+	}
+
+	/**
+	 * Gets the count of compiled definitions.
+	 *
+	 * @return the size
+	 */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * The part of table with definitions of one method.
+	 */
+	private static class MethodTable
+	{
+		private final PointyRouteTrie trie = new PointyRouteTrie();
+
+		/**
+		 * Adds the entry.
+		 *
+		 * @param entry
+		 *          the entry
+		 */
+		private void add(PointyRouteEntry entry)
+		{
+			trie.add(entry);
+		}
+
+		/**
+		 * Handles {@link HttpContext} by all matching definitions.
+		 *
+		 * @param context
+		 *          the context
+		 */
+		private void handle(HttpContext context)
+		{
+			String uri = context.getRequest().getUri();
+
+			List<PointyRouteTrie.Match> matches = new ArrayList<>();
+			List<PointyRouteEntry> patternEntries = new ArrayList<>();
+			trie.find(uri.split("/", -1), matches, patternEntries);
+			if (matches.size() > 1)
+			{
+				matches.sort(Comparator.comparingInt(match -> match.getEntry().getIndex()));
+			}
+			if (patternEntries.size() > 1)
+			{
+				patternEntries.sort(Comparator.comparingInt(PointyRouteEntry::getIndex));
+			}
+
+			int matchIndex = 0;
+			int patternIndex = 0;
+			while (matchIndex < matches.size() || patternIndex < patternEntries.size())
+			{
+				PointyRouteEntry entry;
+				Map<String, String> params;
+				if (patternIndex < patternEntries.size() && (matchIndex >= matches.size() || patternEntries.get(patternIndex).getIndex() < matches.get(matchIndex).getEntry().getIndex()))
+				{
+					entry = patternEntries.get(patternIndex++);
+					if ((params = entry.match(uri)) == null)
+					{
+						continue;
+					}
+				}
+				else
+				{
+					PointyRouteTrie.Match match = matches.get(matchIndex++);
+					entry = match.getEntry();
+					params = match.getParams();
+				}
+
+				context.setPathParams(params);
+				entry.getDef().getRouteHandler().handle(context);
+				if (context.getResponse().isCommitted())
+				{
+					return;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,181 @@
+package cz.tvrzna.pointy.router;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prefix tree of {@link PointyRouteEntry}s, where each level represents one
+ * segment of <code>URI</code>. Segment is either literal or named path
+ * parameter, that matches any non-empty segment. Lookup takes time
+ * proportional to length of requested <code>URI</code>, regardless of count of
+ * entries.<br>
+ * Entries, that need <code>Pattern</code>, are stored in node of their literal
+ * prefix, so they are returned as candidates only for requests within this
+ * prefix.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+final class PointyRouteTrie
+{
+	private final Node root = new Node();
+	private boolean empty = true;
+
+	/**
+	 * Adds the entry.
+	 *
+	 * @param entry
+	 *          the entry
+	 */
+	void add(PointyRouteEntry entry)
+	{
+		Node node = root;
+		if (entry.getSegments() == null)
+		{
+			for (String segment : entry.getPrefix())
+			{
+				node = node.literals.computeIfAbsent(segment, key -> new Node());
+			}
+			node.patternEntries.add(entry);
+			empty = false;
+			return;
+		}
+
+		for (String segment : entry.getSegments())
+		{
+			if (PointyRouteEntry.isParam(segment))
+			{
+				if (node.param == null)
+				{
+					node.param = new Node();
+				}
+				node = node.param;
+			}
+			else
+			{
+				node = node.literals.computeIfAbsent(segment, key -> new Node());
+			}
+		}
+		node.entries.add(entry);
+		empty = false;
+	}
+
+	/**
+	 * Finds all entries matching requested <code>segments</code> and all entries
+	 * with <code>Pattern</code>, whose prefix matches requested
+	 * <code>segments</code>.
+	 *
+	 * @param segments
+	 *          the segments of requested uri
+	 * @param matches
+	 *          the list of found matches
+	 * @param candidates
+	 *          the list of entries, that have to be matched by
+	 *          <code>Pattern</code>
+	 */
+	void find(String[] segments, List<Match> matches, List<PointyRouteEntry> candidates)
+	{
+		if (!empty)
+		{
+			find(root, segments, 0, new ArrayList<>(), matches, candidates);
+		}
+	}
+
+	/**
+	 * Finds matching entries in subtree of <code>node</code>.
+	 *
+	 * @param node
+	 *          the node
+	 * @param segments
+	 *          the segments
+	 * @param depth
+	 *          the depth
+	 * @param values
+	 *          the values of path parameters
+	 * @param matches
+	 *          the matches
+	 * @param candidates
+	 *          the candidates
+	 */
+	private void find(Node node, String[] segments, int depth, List<String> values, List<Match> matches, List<PointyRouteEntry> candidates)
+	{
+		candidates.addAll(node.patternEntries);
+		if (depth == segments.length)
+		{
+			for (PointyRouteEntry entry : node.entries)
+			{
+				matches.add(new Match(entry, entry.createParams(values)));
+			}
+			return;
+		}
+
+		String segment = segments[depth];
+		Node literal = node.literals.get(segment);
+		if (literal != null)
+		{
+			find(literal, segments, depth + 1, values, matches, candidates);
+		}
+		if (node.param != null && !segment.isEmpty())
+		{
+			values.add(segment);
+			find(node.param, segments, depth + 1, values, matches, candidates);
+			values.remove(values.size() - 1);
+		}
+	}
+
+	/**
+	 * The node of tree.
+	 */
+	private static class Node
+	{
+		private final Map<String, Node> literals = new HashMap<>();
+		private Node param;
+		private final List<PointyRouteEntry> entries = new ArrayList<>();
+		private final List<PointyRouteEntry> patternEntries = new ArrayList<>();
+	}
+
+	/**
+	 * The matched entry with its path parameters.
+	 */
+	static class Match
+	{
+		private final PointyRouteEntry entry;
+		private final Map<String, String> params;
+
+		/**
+		 * Instantiates a new match.
+		 *
+		 * @param entry
+		 *          the entry
+		 * @param params
+		 *          the params
+		 */
+		Match(PointyRouteEntry entry, Map<String, String> params)
+		{
+			this.entry = entry;
+			this.params = params;
+		}
+
+		/**
+		 * Gets the entry.
+		 *
+		 * @return the entry
+		 */
+		PointyRouteEntry getEntry()
+		{
+			return entry;
+		}
+
+		/**
+		 * Gets the path parameters.
+		 *
+		 * @return the params
+		 */
+		Map<String, String> getParams()
+		{
+			return params;
+		}
+	}
+}
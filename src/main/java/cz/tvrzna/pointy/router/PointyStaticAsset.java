@@ -0,0 +1,219 @@
+package cz.tvrzna.pointy.router;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.CRC32;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Static asset loaded into memory with precomputed content type, length,
+ * <code>ETag</code> and <code>Last-Modified</code>, so it could be served or
+ * revalidated without any other processing.
+ * Textual content is also compressed with <code>gzip</code> once, unless
+ * precompressed variant is provided.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public final class PointyStaticAsset
+{
+	private static final String[] COMPRESSIBLE_TYPES = { "text/", "javascript", "json", "xml" };
+
+	private final byte[] content;
+	private final byte[] gzipContent;
+	private final String contentType;
+	private final String eTag;
+	private final String gzipETag;
+	private final long lastModified;
+
+	/**
+	 * Instantiates a new pointy static asset.
+	 *
+	 * @param content
+	 *          the content, that must not be modified afterwards
+	 * @param contentType
+	 *          the content type
+	 */
+	public PointyStaticAsset(byte[] content, String contentType)
+	{
+		this(content, contentType, null);
+	}
+
+	/**
+	 * Instantiates a new pointy static asset with precompressed variant of
+	 * content. If it is not provided, textual content is compressed now.
+	 *
+	 * @param content
+	 *          the content, that must not be modified afterwards
+	 * @param contentType
+	 *          the content type
+	 * @param gzipContent
+	 *          the content compressed with gzip, or <code>null</code>
+	 */
+	public PointyStaticAsset(byte[] content, String contentType, byte[] gzipContent)
+	{
+		this(content, contentType, gzipContent, 0l);
+	}
+
+	/**
+	 * Instantiates a new pointy static asset with precompressed variant of
+	 * content and time of its last modification.
+	 *
+	 * @param content
+	 *          the content, that must not be modified afterwards
+	 * @param contentType
+	 *          the content type
+	 * @param gzipContent
+	 *          the content compressed with gzip, or <code>null</code>
+	 * @param lastModified
+	 *          the last modified time in milliseconds, or <code>0</code> if it
+	 *          is unknown
+	 */
+	public PointyStaticAsset(byte[] content, String contentType, byte[] gzipContent, long lastModified)
+	{
+		this.content = content;
+		this.contentType = contentType;
+		this.gzipContent = gzipContent != null ? gzipContent : compress(content, contentType);
+		this.lastModified = lastModified;
+
+		CRC32 crc = new CRC32();
+		crc.update(content, 0, content.length);
+		String tag = Long.toHexString(crc.getValue()) + "-" + Integer.toHexString(content.length);
+		this.eTag = "\"" + tag + "\"";
+		this.gzipETag = "\"" + tag + "-gz\"";
+	}
+
+	/**
+	 * Gets the content. Returned array is shared, so it must not be modified.
+	 *
+	 * @return the content
+	 */
+	public byte[] getContent()
+	{
+		return content;
+	}
+
+	/**
+	 * Gets the content compressed with gzip. Returned array is shared, so it
+	 * must not be modified.
+	 *
+	 * @return the gzip content, or <code>null</code> if content is not worth
+	 *         compressing
+	 */
+	public byte[] getGzipContent()
+	{
+		return gzipContent;
+	}
+
+	/**
+	 * Gets the content type.
+	 *
+	 * @return the content type
+	 */
+	public String getContentType()
+	{
+		return contentType;
+	}
+
+	/**
+	 * Gets the length of content in bytes.
+	 *
+	 * @return the length
+	 */
+	public int getLength()
+	{
+		return content.length;
+	}
+
+	/**
+	 * Gets the size of memory occupied by content and its compressed variant.
+	 *
+	 * @return the size
+	 */
+	public int getSize()
+	{
+		return content.length + (gzipContent != null ? gzipContent.length : 0);
+	}
+
+	/**
+	 * Gets the <code>ETag</code> computed from content.
+	 *
+	 * @return the e tag
+	 */
+	public String getETag()
+	{
+		return eTag;
+	}
+
+	/**
+	 * Gets the <code>ETag</code> of compressed variant, that differs from
+	 * <code>ETag</code> of content, because it is different representation.
+	 *
+	 * @return the gzip e tag
+	 */
+	public String getGzipETag()
+	{
+		return gzipETag;
+	}
+
+	/**
+	 * Gets the last modified time.
+	 *
+	 * @return the last modified time in milliseconds, or <code>0</code> if it
+	 *         is unknown
+	 */
+	public long getLastModified()
+	{
+		return lastModified;
+	}
+
+	/**
+	 * Compresses the textual content with gzip.
+	 *
+	 * @param content
+	 *          the content
+	 * @param contentType
+	 *          the content type
+	 * @return the compressed content, or <code>null</code> if content is not
+	 *         textual or it is not smaller after compression
+	 */
+	private static byte[] compress(byte[] content, String contentType)
+	{
+		if (contentType == null || !isCompressible(contentType))
+		{
+			return null;
+		}
+		try
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream(content.length / 2 + 32);
+			GZIPOutputStream gzip = new GZIPOutputStream(baos);
+			gzip.write(content);
+			gzip.close();
+			return baos.size() < content.length ? baos.toByteArray() : null;
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+			return null;
+		}
+	}
+
+	/**
+	 * Checks if content type is textual, so it is worth compressing.
+	 *
+	 * @param contentType
+	 *          the content type
+	 * @return true, if is compressible
+	 */
+	static boolean isCompressible(String contentType)
+	{
+		for (String type : COMPRESSIBLE_TYPES)
+		{
+			if (contentType.contains(type))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,172 @@
+package cz.tvrzna.pointy.router;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cache of {@link PointyStaticAsset}s limited by total size of their content
+ * including compressed variants.
+ * When the limit is exceeded, the least recently used assets are evicted.
+ * Asset larger than quarter of limit is never cached, so one large file could
+ * not evict all other assets.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class PointyStaticCache
+{
+	private final long maxSize;
+	private final Map<String, PointyStaticAsset> assets = new LinkedHashMap<>(16, 0.75f, true);
+	private long size = 0;
+	private long hitCount = 0;
+	private long missCount = 0;
+	private long evictionCount = 0;
+
+	/**
+	 * Instantiates a new pointy static cache.
+	 *
+	 * @param maxSize
+	 *          the max total size of cached content in bytes
+	 */
+	public PointyStaticCache(long maxSize)
+	{
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * Gets the cached asset and marks it as recently used.
+	 *
+	 * @param path
+	 *          the path
+	 * @return the asset, or <code>null</code> if it is not cached
+	 */
+	public synchronized PointyStaticAsset get(String path)
+	{
+		PointyStaticAsset asset = assets.get(path);
+		if (asset != null)
+		{
+			hitCount++;
+		}
+		else
+		{
+			missCount++;
+		}
+		return asset;
+	}
+
+	/**
+	 * Puts the asset into cache, the least recently used assets are evicted, if
+	 * there is not enough space.
+	 *
+	 * @param path
+	 *          the path
+	 * @param asset
+	 *          the asset
+	 * @return true, if asset was cached
+	 */
+	public synchronized boolean put(String path, PointyStaticAsset asset)
+	{
+		if (!isCacheable(asset.getSize()))
+		{
+			return false;
+		}
+		PointyStaticAsset previous = assets.put(path, asset);
+		if (previous != null)
+		{
+			size -= previous.getSize();
+		}
+		size += asset.getSize();
+
+		Iterator<PointyStaticAsset> it = assets.values().iterator();
+		while (size > maxSize && it.hasNext())
+		{
+			size -= it.next().getSize();
+			it.remove();
+			evictionCount++;
+		}
+		return true;
+	}
+
+	/**
+	 * Checks if asset of defined size could be cached. Asset larger than quarter
+	 * of max size is never cached.
+	 *
+	 * @param size
+	 *          the size of content including compressed variant
+	 * @return true, if is cacheable
+	 */
+	public boolean isCacheable(long size)
+	{
+		return size <= maxSize / 4;
+	}
+
+	/**
+	 * Removes all cached assets.
+	 */
+	public synchronized void clear()
+	{
+		assets.clear();
+		size = 0;
+	}
+
+	/**
+	 * Gets the max total size of cached content.
+	 *
+	 * @return the max size
+	 */
+	public long getMaxSize()
+	{
+		return maxSize;
+	}
+
+	/**
+	 * Gets the total size of cached content.
+	 *
+	 * @return the size
+	 */
+	public synchronized long getSize()
+	{
+		return size;
+	}
+
+	/**
+	 * Gets the count of cached assets.
+	 *
+	 * @return the count
+	 */
+	public synchronized int getCount()
+	{
+		return assets.size();
+	}
+
+	/**
+	 * Gets the count of requests, that were served from cache.
+	 *
+	 * @return the hit count
+	 */
+	public synchronized long getHitCount()
+	{
+		return hitCount;
+	}
+
+	/**
+	 * Gets the count of requests, that were not found in cache.
+	 *
+	 * @return the miss count
+	 */
+	public synchronized long getMissCount()
+	{
+		return missCount;
+	}
+
+	/**
+	 * Gets the count of evicted assets.
+	 *
+	 * @return the eviction count
+	 */
+	public synchronized long getEvictionCount()
+	{
+		return evictionCount;
+	}
+}
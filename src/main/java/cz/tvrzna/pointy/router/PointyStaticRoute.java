@@ -1,18 +1,51 @@
 package cz.tvrzna.pointy.router;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.List;
 
+import cz.tvrzna.pointy.http.HttpContext;
+import cz.tvrzna.pointy.http.HttpHeaders;
 import cz.tvrzna.pointy.http.HttpMimeTypes;
+import cz.tvrzna.pointy.http.HttpRange;
 import cz.tvrzna.pointy.http.HttpStatus;
 
 /**
- * This class serves static content of web server.
+ * This class serves static content of web server. Content could be served from
+ * classpath, or from directory of filesystem. Files from filesystem are
+ * transferred directly to connection, so they are not loaded into heap.<br>
+ * Resources from classpath, that are too large to be cached, are streamed as
+ * if there was no cache, they are never loaded into heap as whole.<br>
+ * If client accepts <code>gzip</code>, precompressed variant of file with
+ * suffix <code>.gz</code> is served, if it exists. Cached resources without
+ * such variant are compressed only once, when they are loaded into cache.
+ * Files from filesystem without such variant are compressed only, if they are
+ * small and textual, other files are always transferred as they are.<br>
+ * Responses contain <code>ETag</code> and <code>Last-Modified</code>, so
+ * requests with matching <code>If-None-Match</code> or
+ * <code>If-Modified-Since</code> are answered by
+ * <code>304 Not Modified</code> before any content is read.<br>
+ * Cached resources and files from filesystem support <code>Range</code>
+ * requests (including <code>If-Range</code>), only requested parts of files
+ * are read and sent.
  *
  * @since 0.1.0
  * @author michalt
  */
 public class PointyStaticRoute extends PointyRouteDefinition
 {
+	private static final String NOT_FOUND_HTML = "<html><head><title>404 Not Found</title></head><body><h1>404 Not Found</h1></body></html>";
+	private static final String GZIP_SUFFIX = ".gz";
+	private static final String CACHE_CONTROL = "public, max-age=3600";
+	private static final long MAX_COMPRESSED_FILE_SIZE = 262144l;
+
+	private PointyStaticCache cache;
 
 	/**
 	 * Instantiates a new pointy static route.
@@ -23,6 +56,24 @@ public class PointyStaticRoute extends PointyRouteDefinition
 	 *          the classpath directory
 	 */
 	public PointyStaticRoute(String uri, String classpathDirectory)
+	{
+		this(uri, classpathDirectory, null);
+	}
+
+	/**
+	 * Instantiates a new pointy static route, that keeps recently served
+	 * resources in <code>cache</code>, so they are not read from classpath
+	 * again.
+	 *
+	 * @param uri
+	 *          the uri
+	 * @param classpathDirectory
+	 *          the classpath directory
+	 * @param cache
+	 *          the cache, or <code>null</code> if resources should not be cached
+	 * @since 0.3.0
+	 */
+	public PointyStaticRoute(String uri, String classpathDirectory, PointyStaticCache cache)
 	{
 		super(uri, "ANY", context -> {
 			String filePath = context.getRequestUri();
@@ -33,16 +84,163 @@ public class PointyStaticRoute extends PointyRouteDefinition
 			filePath = classpathDirectory.concat(filePath).replace("//", "/");
 			try
 			{
-				InputStream is = PointyStaticRoute.class.getClassLoader().getResourceAsStream(filePath);
-				if (is != null)
+				boolean gzip = acceptsGzip(context);
+				if (cache != null)
+				{
+					PointyStaticAsset asset = cache.get(filePath);
+					if (asset == null)
+					{
+						asset = loadAsset(filePath, cache);
+						if (asset != null)
+						{
+							cache.put(filePath, asset);
+						}
+					}
+
+					if (asset != null)
+					{
+						gzip = gzip && asset.getGzipContent() != null && context.getHeader("Range") == null;
+						String eTag = gzip ? asset.getGzipETag() : asset.getETag();
+						context.setHeader("Accept-Ranges", "bytes");
+						if (setValidators(context, eTag, asset.getLastModified()))
+						{
+							return;
+						}
+						context.status(HttpStatus.OK_200).contentType(asset.getContentType());
+						context.getResponse().setAllowedGzip(false);
+						List<HttpRange> ranges = gzip ? null : getRanges(context, eTag, asset.getLastModified(), asset.getLength());
+						if (ranges != null)
+						{
+							if (ranges.isEmpty())
+							{
+								rangeNotSatisfiable(context, asset.getLength());
+							}
+							else
+							{
+								context.getResponse().send(asset.getContent(), ranges);
+							}
+						}
+						else if (gzip)
+						{
+							setGzipEncoding(context);
+							context.send(asset.getGzipContent());
+						}
+						else
+						{
+							context.send(asset.getContent());
+						}
+						return;
+					}
+				}
+
+				URLConnection resource = gzip ? openResource(filePath + GZIP_SUFFIX) : null;
+				boolean precompressed = resource != null;
+				if (!precompressed)
+				{
+					resource = openResource(filePath);
+				}
+				if (resource != null)
 				{
-					context.setHeader("Cache-Control", "public;max-age=3600");
-					context.status(HttpStatus.OK_200).contentType(HttpMimeTypes.getMimeType(filePath)).send(is);
-					is.close();
+					if (setValidators(context, null, resource.getLastModified()))
+					{
+						return;
+					}
+					if (precompressed)
+					{
+						setGzipEncoding(context);
+					}
+					else
+					{
+						context.getResponse().setAllowedGzip(false);
+					}
+					try (InputStream is = resource.getInputStream())
+					{
+						context.status(HttpStatus.OK_200).contentType(HttpMimeTypes.getMimeType(filePath)).send(is);
+					}
+					return;
+				}
+
+				context.status(HttpStatus.NOT_FOUND_404).html().send(NOT_FOUND_HTML);
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+		});
+		this.cache = cache;
+	}
+
+	/**
+	 * Instantiates a new pointy static route, that serves files from
+	 * <code>directory</code> of filesystem. Files outside of directory are never
+	 * served.
+	 *
+	 * @param uri
+	 *          the uri
+	 * @param directory
+	 *          the directory
+	 * @since 0.3.0
+	 */
+	public PointyStaticRoute(String uri, Path directory)
+	{
+		super(uri, "ANY", context -> {
+			String filePath = context.getRequestUri();
+			if (filePath.equals("/"))
+			{
+				filePath = "/index.html";
+			}
+			try
+			{
+				Path root = directory.toAbsolutePath().normalize();
+				Path file = root.resolve(filePath.replaceFirst("^/+", "")).normalize();
+				if (file.startsWith(root) && Files.isRegularFile(file))
+				{
+					String contentType = HttpMimeTypes.getMimeType(file.getFileName().toString());
+					Path gzipFile = file.resolveSibling(file.getFileName() + GZIP_SUFFIX);
+					boolean acceptsGzip = acceptsGzip(context) && context.getHeader("Range") == null;
+					boolean gzip = acceptsGzip && Files.isRegularFile(gzipFile);
+					Path servedFile = gzip ? gzipFile : file;
+
+					BasicFileAttributes attributes = Files.readAttributes(servedFile, BasicFileAttributes.class);
+					boolean compress = acceptsGzip && !gzip && attributes.size() <= MAX_COMPRESSED_FILE_SIZE && contentType != null
+							&& PointyStaticAsset.isCompressible(contentType);
+					long lastModified = attributes.lastModifiedTime().toMillis();
+					String eTag = "\"" + Long.toHexString(lastModified) + "-" + Long.toHexString(attributes.size()) + (gzip || compress ? "-gz\"" : "\"");
+					context.setHeader("Accept-Ranges", "bytes");
+					if (setValidators(context, eTag, lastModified))
+					{
+						return;
+					}
+
+					context.status(HttpStatus.OK_200).contentType(contentType);
+					List<HttpRange> ranges = gzip || compress ? null : getRanges(context, eTag, lastModified, attributes.size());
+					if (ranges != null)
+					{
+						if (ranges.isEmpty())
+						{
+							rangeNotSatisfiable(context, attributes.size());
+						}
+						else
+						{
+							context.getResponse().send(servedFile, attributes.size(), ranges);
+						}
+					}
+					else
+					{
+						if (gzip)
+						{
+							setGzipEncoding(context);
+						}
+						else
+						{
+							context.getResponse().setAllowedGzip(compress);
+						}
+						context.send(servedFile);
+					}
 				}
 				else
 				{
-					context.status(HttpStatus.NOT_FOUND_404).html().send("<html><head><title>404 Not Found</title></head><body><h1>404 Not Found</h1></body></html>");
+					context.status(HttpStatus.NOT_FOUND_404).html().send(NOT_FOUND_HTML);
 				}
 			}
 			catch (Exception e)
@@ -51,4 +249,280 @@ public class PointyStaticRoute extends PointyRouteDefinition
 			}
 		});
 	}
+
+	/**
+	 * Checks if client accepts <code>gzip</code> encoding.
+	 *
+	 * @param context
+	 *          the context
+	 * @return true, if client accepts gzip
+	 */
+	private static boolean acceptsGzip(HttpContext context)
+	{
+		String acceptEncoding = context.getHeader("Accept-Encoding");
+		return acceptEncoding != null && acceptEncoding.contains("gzip");
+	}
+
+	/**
+	 * Sets the caching and validation headers of response. If request is
+	 * conditional and cached representation of client is still valid,
+	 * <code>304 Not Modified</code> is sent.
+	 *
+	 * @param context
+	 *          the context
+	 * @param eTag
+	 *          the e tag, or <code>null</code> if it is unknown
+	 * @param lastModified
+	 *          the last modified time in milliseconds, or <code>0</code> if it
+	 *          is unknown
+	 * @return true, if response was sent
+	 */
+	private static boolean setValidators(HttpContext context, String eTag, long lastModified)
+	{
+		context.setHeader("Cache-Control", CACHE_CONTROL);
+		context.setHeader("Vary", "Accept-Encoding");
+		if (eTag != null)
+		{
+			context.setHeader("ETag", eTag);
+		}
+		if (lastModified > 0)
+		{
+			context.setHeader("Last-Modified", HttpHeaders.formatDate(lastModified));
+		}
+
+		if (isNotModified(context, eTag, lastModified))
+		{
+			context.notModified();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Checks if representation cached by client is not modified. According to
+	 * RFC 7232, <code>If-Modified-Since</code> is ignored, when
+	 * <code>If-None-Match</code> is present, and both are evaluated only for
+	 * <code>GET</code> and <code>HEAD</code> requests.
+	 *
+	 * @param context
+	 *          the context
+	 * @param eTag
+	 *          the e tag, or <code>null</code> if it is unknown
+	 * @param lastModified
+	 *          the last modified time in milliseconds, or <code>0</code> if it
+	 *          is unknown
+	 * @return true, if is not modified
+	 */
+	private static boolean isNotModified(HttpContext context, String eTag, long lastModified)
+	{
+		String ifNoneMatch = context.getHeader("If-None-Match");
+		String ifModifiedSince = ifNoneMatch == null ? context.getHeader("If-Modified-Since") : null;
+		if (ifNoneMatch == null && ifModifiedSince == null)
+		{
+			return false;
+		}
+
+		String method = context.getRequest().getMethod();
+		if (!"GET".equals(method) && !"HEAD".equals(method))
+		{
+			return false;
+		}
+
+		if (ifNoneMatch != null)
+		{
+			return eTag != null && matchesETag(ifNoneMatch, eTag);
+		}
+		long since = HttpHeaders.parseDate(ifModifiedSince);
+		return lastModified > 0 && since >= 0 && lastModified / 1000 <= since / 1000;
+	}
+
+	/**
+	 * Checks if any entity tag of <code>If-None-Match</code> header matches
+	 * <code>eTag</code>. Tags are compared weakly, so prefix <code>W/</code> is
+	 * ignored.
+	 *
+	 * @param ifNoneMatch
+	 *          the value of if none match header
+	 * @param eTag
+	 *          the e tag
+	 * @return true, if any tag matches
+	 */
+	private static boolean matchesETag(String ifNoneMatch, String eTag)
+	{
+		for (String tag : ifNoneMatch.split(","))
+		{
+			tag = tag.trim();
+			if (tag.startsWith("W/"))
+			{
+				tag = tag.substring(2);
+			}
+			if (tag.equals("*") || tag.equals(eTag))
+			{
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Gets the ranges requested by <code>Range</code> header of
+	 * <code>GET</code> request. If <code>If-Range</code> header does not match
+	 * current <code>ETag</code> or <code>Last-Modified</code>, whole content
+	 * should be sent.
+	 *
+	 * @param context
+	 *          the context
+	 * @param eTag
+	 *          the e tag
+	 * @param lastModified
+	 *          the last modified time in milliseconds, or <code>0</code> if it
+	 *          is unknown
+	 * @param length
+	 *          the length of content
+	 * @return the ranges, empty list if none of them is satisfiable, or
+	 *         <code>null</code> if whole content should be sent
+	 */
+	private static List<HttpRange> getRanges(HttpContext context, String eTag, long lastModified, long length)
+	{
+		String range = context.getHeader("Range");
+		if (range == null || !"GET".equals(context.getRequest().getMethod()))
+		{
+			return null;
+		}
+
+		String ifRange = context.getHeader("If-Range");
+		if (ifRange != null)
+		{
+			ifRange = ifRange.trim();
+			if (ifRange.startsWith("\""))
+			{
+				if (!ifRange.equals(eTag))
+				{
+					return null;
+				}
+			}
+			else if (ifRange.startsWith("W/") || lastModified <= 0 || lastModified / 1000 != HttpHeaders.parseDate(ifRange) / 1000)
+			{
+				return null;
+			}
+		}
+		return HttpRange.parse(range, length);
+	}
+
+	/**
+	 * Sends <code>416 Range Not Satisfiable</code> response.
+	 *
+	 * @param context
+	 *          the context
+	 * @param length
+	 *          the length of content
+	 */
+	private static void rangeNotSatisfiable(HttpContext context, long length)
+	{
+		context.getResponse().setAllowedGzip(false);
+		context.setHeader("Content-Range", "bytes */" + length);
+		context.status(HttpStatus.RANGE_NOT_SATISFIABLE_416).send("");
+	}
+
+	/**
+	 * Marks response as already compressed, so it is not compressed again.
+	 *
+	 * @param context
+	 *          the context
+	 */
+	private static void setGzipEncoding(HttpContext context)
+	{
+		context.getResponse().setAllowedGzip(false);
+		context.setHeader("Content-Encoding", "gzip");
+	}
+
+	/**
+	 * Opens the connection to resource from classpath, so its content and time
+	 * of last modification could be read.
+	 *
+	 * @param filePath
+	 *          the file path
+	 * @return the connection, or <code>null</code> if resource does not exist
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static URLConnection openResource(String filePath) throws IOException
+	{
+		URL url = PointyStaticRoute.class.getClassLoader().getResource(filePath);
+		return url != null ? url.openConnection() : null;
+	}
+
+	/**
+	 * Loads the resource from classpath as {@link PointyStaticAsset}. If
+	 * precompressed variant exists, it is loaded too. Resource is not loaded,
+	 * if its size is known and it could not be cached, so it is streamed
+	 * instead.
+	 *
+	 * @param filePath
+	 *          the file path
+	 * @param cache
+	 *          the cache
+	 * @return the asset, or <code>null</code> if resource does not exist or it
+	 *         is too large
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static PointyStaticAsset loadAsset(String filePath, PointyStaticCache cache) throws IOException
+	{
+		URLConnection resource = openResource(filePath);
+		if (resource == null)
+		{
+			return null;
+		}
+		URLConnection gzipResource = openResource(filePath + GZIP_SUFFIX);
+		String contentType = HttpMimeTypes.getMimeType(filePath);
+		long length = resource.getContentLengthLong();
+		long gzipLength = gzipResource != null ? gzipResource.getContentLengthLong() : 0;
+		if (gzipResource == null && contentType != null && PointyStaticAsset.isCompressible(contentType))
+		{
+			gzipLength = length;
+		}
+		if (length >= 0 && gzipLength >= 0 && !cache.isCacheable(length + gzipLength))
+		{
+			return null;
+		}
+		byte[] content = readResource(resource);
+		byte[] gzipContent = gzipResource != null ? readResource(gzipResource) : null;
+		return new PointyStaticAsset(content, contentType, gzipContent, resource.getLastModified());
+	}
+
+	/**
+	 * Reads the resource from classpath.
+	 *
+	 * @param resource
+	 *          the resource
+	 * @return the content
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private static byte[] readResource(URLConnection resource) throws IOException
+	{
+		try (InputStream is = resource.getInputStream())
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = is.read(buffer)) > 0)
+			{
+				baos.write(buffer, 0, read);
+			}
+			return baos.toByteArray();
+		}
+	}
+
+	/**
+	 * Gets the cache of resources.
+	 *
+	 * @return the cache, or <code>null</code> if resources are not cached
+	 * @since 0.3.0
+	 */
+	public PointyStaticCache getCache()
+	{
+		return cache;
+	}
 }
@@ -0,0 +1,168 @@
+package cz.tvrzna.pointy.server;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * This class provides {@link ExecutorService}s, that could be used by
+ * {@link PointyServer} for handling of accepted connections.<br>
+ * Any <code>ExecutorService</code> could be used by <code>PointyServer</code>,
+ * but it is expected, that full executor throws
+ * {@link java.util.concurrent.RejectedExecutionException}, so the connection
+ * could be rejected with <code>503 Service Unavailable</code>.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class PointyExecutors
+{
+	private static final String WORKER_THREAD_NAME = "pointyWorker";
+
+	private static final Method THREAD_OF_VIRTUAL;
+	private static final Method BUILDER_NAME;
+	private static final Method BUILDER_FACTORY;
+	private static final Method NEW_THREAD_PER_TASK_EXECUTOR;
+
+	static
+	{
+		Method ofVirtual = null;
+		Method name = null;
+		Method factory = null;
+		Method newThreadPerTaskExecutor = null;
+		try
+		{
+			Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+			ofVirtual = Thread.class.getMethod("ofVirtual");
+			name = builderClass.getMethod("name", String.class, long.class);
+			factory = builderClass.getMethod("factory");
+			newThreadPerTaskExecutor = Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class);
+		}
+		catch (ClassNotFoundException | NoSuchMethodException e)
+		{
+			ofVirtual = null;
+		}
+		THREAD_OF_VIRTUAL = ofVirtual;
+		BUILDER_NAME = name;
+		BUILDER_FACTORY = factory;
+		NEW_THREAD_PER_TASK_EXECUTOR = newThreadPerTaskExecutor;
+	}
+
+	/**
+	 * Instantiates a new pointy executors.
+	 */
+	private PointyExecutors()
+	{
+	}
+
+	/**
+	 * Checks if virtual threads are supported by running JVM. Virtual threads
+	 * are available since Java 21.
+	 *
+	 * @return true, if virtual threads are supported
+	 */
+	public static boolean isVirtualThreadSupported()
+	{
+		return THREAD_OF_VIRTUAL != null;
+	}
+
+	/**
+	 * Creates new <code>ExecutorService</code>, that starts new virtual
+	 * <code>Thread</code> for each task. Number of tasks is not limited, so
+	 * blocking handlers do not occupy any platform <code>Thread</code> while
+	 * they are waiting. Virtual threads are detected in runtime, if they are not
+	 * supported, {@link UnsupportedOperationException} is thrown.
+	 *
+	 * @return the executor service
+	 * @see #isVirtualThreadSupported()
+	 */
+	public static ExecutorService newVirtualThreadPerTaskExecutor()
+	{
+		if (!isVirtualThreadSupported())
+		{
+			throw new UnsupportedOperationException("Virtual threads are not supported by this JVM.");
+		}
+		try
+		{
+			Object builder = BUILDER_NAME.invoke(THREAD_OF_VIRTUAL.invoke(null), WORKER_THREAD_NAME + "-", 1l);
+			ThreadFactory threadFactory = (ThreadFactory) BUILDER_FACTORY.invoke(builder);
+			return (ExecutorService) NEW_THREAD_PER_TASK_EXECUTOR.invoke(null, threadFactory);
+		}
+		catch (ReflectiveOperationException e)
+		{
+			throw new UnsupportedOperationException("Virtual threads could not be created.", e);
+		}
+	}
+
+	/**
+	 * Creates new bounded pool of worker <code>Thread</code>s. Pool starts all
+	 * <code>coreThreads</code> immediately, so no <code>Thread</code> needs to be
+	 * created during handling of request. When all core threads are busy, tasks
+	 * are stored in queue with capacity <code>queueCapacity</code>. Only if queue
+	 * is full, pool creates additional threads up to <code>maxThreads</code>, that
+	 * are stopped after <code>keepAliveMs</code> of inactivity. If pool and queue
+	 * are full, any new task is rejected with
+	 * {@link java.util.concurrent.RejectedExecutionException}.
+	 *
+	 * @param coreThreads
+	 *          the core threads
+	 * @param maxThreads
+	 *          the max threads
+	 * @param queueCapacity
+	 *          the queue capacity, <code>0</code> means no queue
+	 * @param keepAliveMs
+	 *          the keep alive ms
+	 * @return the executor service
+	 */
+	public static ExecutorService newBoundedPool(int coreThreads, int maxThreads, int queueCapacity, long keepAliveMs)
+	{
+		int max = maxThreads > 0 ? maxThreads : 1;
+		int core = Math.min(coreThreads > 0 ? coreThreads : 1, max);
+		BlockingQueue<Runnable> queue = queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>();
+
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(core, max, keepAliveMs, TimeUnit.MILLISECONDS, queue, new PointyThreadFactory(WORKER_THREAD_NAME),
+				new ThreadPoolExecutor.AbortPolicy());
+		pool.prestartAllCoreThreads();
+		return pool;
+	}
+
+	/**
+	 * The factory of named <code>Thread</code>s.
+	 */
+	private static class PointyThreadFactory implements ThreadFactory
+	{
+		private final String name;
+		private final AtomicInteger counter = new AtomicInteger();
+
+		/**
+		 * Instantiates a new pointy thread factory.
+		 *
+		 * @param name
+		 *          the name
+		 */
+		private PointyThreadFactory(String name)
+		{
+			this.name = name;
+		}
+
+		/**
+		 * Creates new <code>Thread</code>.
+		 *
+		 * @param runnable
+		 *          the runnable
+		 * @return the thread
+		 */
+		@Override
+		public Thread newThread(Runnable runnable)
+		{
+			return new Thread(runnable, name + "-" + counter.incrementAndGet());
+		}
+	}
+}
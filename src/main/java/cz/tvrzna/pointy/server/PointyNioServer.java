@@ -0,0 +1,1277 @@
+package cz.tvrzna.pointy.server;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import cz.tvrzna.pointy.exceptions.BadRequestException;
+import cz.tvrzna.pointy.exceptions.PayloadTooLargeException;
+import cz.tvrzna.pointy.http.HttpContext;
+import cz.tvrzna.pointy.http.HttpEventOutput;
+import cz.tvrzna.pointy.http.HttpTransferOutput;
+import cz.tvrzna.pointy.http.HttpRequest;
+import cz.tvrzna.pointy.http.HttpRequestParser;
+import cz.tvrzna.pointy.http.HttpResponse;
+import cz.tvrzna.pointy.http.HttpStatus;
+import cz.tvrzna.pointy.http.HttpWebSocket;
+import cz.tvrzna.pointy.router.PointyEndpoint;
+
+/**
+ * Non-blocking HTTP Server, that serves on predefined <code>ipAddress</code>
+ * and <code>port</code> web application, that is defined by
+ * {@link PointyEndpoint} using {@link ServerSocketChannel} and
+ * {@link Selector}s. It is an alternative to {@link PointyServer}, that does
+ * not need any <code>Thread</code> for connection, that is waiting for its
+ * request.<br>
+ * Connections are served by one or more event loop <code>Thread</code>s,
+ * that read incoming bytes into buffers. When the request is complete, it is
+ * handed to worker <code>Thread</code> from {@link ExecutorService}, that
+ * invokes {@link PointyEndpoint#handle(HttpContext)}. The response is queued
+ * back to event loop, that writes it to client, when the connection is
+ * writable.<br>
+ * Connections are kept alive according to HTTP/1.1, idle connection does not
+ * occupy any worker and it is closed after 30 seconds or after 100
+ * requests.<br>
+ * Open {@link cz.tvrzna.pointy.http.HttpEventStream}s do not occupy any worker
+ * after handler returns, their events are queued without waiting for client.
+ * Client, that does not read them, is disconnected. Messages of connection
+ * upgraded to {@link cz.tvrzna.pointy.http.HttpWebSocket} are read by event
+ * loop and handled by worker one after another.<br>
+ * If the executor rejects the request, it is answered with <code>503 Service
+ * Unavailable</code>. Malformed request is answered with <code>400 Bad
+ * Request</code> and request with body larger than 10 MB with <code>413
+ * Payload Too Large</code>.<br>
+ * After new instance is created, server needs to be started via
+ * {@link PointyNioServer#start()} method.<br>
+ * For stopping server it needs to be invoked {@link PointyNioServer#stop()}
+ * method.
+ *
+ * @since 0.3.0
+ * @author michalt
+ */
+public class PointyNioServer
+{
+	private static final int DEFAULT_MAX_THREADS = 16;
+	private static final int DEFAULT_QUEUE_CAPACITY = 256;
+	private static final long DEFAULT_KEEP_ALIVE_MS = 60000l;
+	private static final int READ_BUFFER_SIZE = 8192;
+	private static final int WRITE_HIGH_WATER_MARK = 262144;
+	private static final long IDLE_CHECK_MS = 1000l;
+	private static final String SERVICE_UNAVAILABLE_MESSAGE = "503 Service Unavailable";
+	private static final String PAYLOAD_TOO_LARGE_MESSAGE = "413 Payload Too Large";
+	private static final String BAD_REQUEST_MESSAGE = "400 Bad Request";
+	private static final ByteBuffer END_OF_STREAM = ByteBuffer.allocate(0);
+
+	private ServerSocketChannel server;
+	private final String ipAddress;
+	private final int port;
+	private final PointyEndpoint endpoint;
+	private final int selectorThreads;
+
+	private final int maxThreads;
+	private final boolean externalExecutor;
+	private ExecutorService executor;
+
+	private EventLoop[] eventLoops;
+	private final AtomicInteger nextEventLoop = new AtomicInteger();
+
+	private long keepAliveTimeoutMs = 30000l;
+	private int maxKeepAliveRequests = 100;
+	private long maxBodySize = 10485760l;
+
+	/**
+	 * Instantiates a new <code>PointyNioServer</code> on defined
+	 * <code>ipAddress</code>, <code>port</code>. Server will provide defined
+	 * {@link PointyEndpoint}. In this case it uses one event loop
+	 * <code>Thread</code> and up to 16 worker <code>Thread</code>s.
+	 *
+	 * @param ipAddress
+	 *          the ip address
+	 * @param port
+	 *          the port
+	 * @param endpoint
+	 *          the endpoint
+	 */
+	public PointyNioServer(String ipAddress, int port, PointyEndpoint endpoint)
+	{
+		this(ipAddress, port, endpoint, 1, DEFAULT_MAX_THREADS);
+	}
+
+	/**
+	 * Instantiates a new <code>PointyNioServer</code> on defined
+	 * <code>ipAddress</code>, <code>port</code>. Server will provide defined
+	 * {@link PointyEndpoint}. <code>selectorThreads</code> defines, how many
+	 * event loops serve connections and <code>maxThreads</code> defines, how
+	 * many requests could be handled in parallel.
+	 *
+	 * @param ipAddress
+	 *          the ip address
+	 * @param port
+	 *          the port
+	 * @param endpoint
+	 *          the endpoint
+	 * @param selectorThreads
+	 *          the selector threads
+	 * @param maxThreads
+	 *          the max threads
+	 */
+	public PointyNioServer(String ipAddress, int port, PointyEndpoint endpoint, int selectorThreads, int maxThreads)
+	{
+		this.ipAddress = ipAddress;
+		this.port = port;
+		this.endpoint = endpoint;
+		this.selectorThreads = selectorThreads > 0 ? selectorThreads : 1;
+		this.maxThreads = maxThreads;
+		this.externalExecutor = false;
+	}
+
+	/**
+	 * Instantiates a new <code>PointyNioServer</code> on defined
+	 * <code>ipAddress</code>, <code>port</code>. Server will provide defined
+	 * {@link PointyEndpoint} and requests will be handled by defined
+	 * <code>executor</code>. The <code>executor</code> is not shut down, when
+	 * server is stopped.
+	 *
+	 * @param ipAddress
+	 *          the ip address
+	 * @param port
+	 *          the port
+	 * @param endpoint
+	 *          the endpoint
+	 * @param selectorThreads
+	 *          the selector threads
+	 * @param executor
+	 *          the executor
+	 */
+	public PointyNioServer(String ipAddress, int port, PointyEndpoint endpoint, int selectorThreads, ExecutorService executor)
+	{
+		this.ipAddress = ipAddress;
+		this.port = port;
+		this.endpoint = endpoint;
+		this.selectorThreads = selectorThreads > 0 ? selectorThreads : 1;
+		this.maxThreads = 0;
+		this.externalExecutor = true;
+		this.executor = executor;
+	}
+
+	/**
+	 * Starts the <code>PointyNioServer</code> with its event loop
+	 * <code>Thread</code>s, unless is already running.<br>
+	 * As first step is invoking {@link PointyEndpoint#onInit()} method. It is
+	 * expected, that this method contains code, that prepares any route, that
+	 * should be handled by this <code>PointyNioServer</code>.
+	 * Then routes are compiled via {@link PointyEndpoint#compileRoutes()}.
+	 */
+	public void start()
+	{
+		if (isRunning())
+		{
+			return;
+		}
+		try
+		{
+			endpoint.onInit();
+			endpoint.compileRoutes();
+
+			server = ServerSocketChannel.open();
+			server.bind(new InetSocketAddress(InetAddress.getByName(ipAddress), port > 0 ? port : 0));
+			server.configureBlocking(false);
+
+			if (!externalExecutor)
+			{
+				executor = PointyExecutors.newBoundedPool(maxThreads, maxThreads, DEFAULT_QUEUE_CAPACITY, DEFAULT_KEEP_ALIVE_MS);
+			}
+
+			eventLoops = new EventLoop[selectorThreads];
+			for (int i = 0; i < eventLoops.length; i++)
+			{
+				eventLoops[i] = new EventLoop("pointyNioServer-" + i);
+			}
+			server.register(eventLoops[0].selector, SelectionKey.OP_ACCEPT);
+			for (EventLoop eventLoop : eventLoops)
+			{
+				eventLoop.thread.start();
+			}
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stops the <code>PointyNioServer</code>, if is running. All open
+	 * connections are closed. If <code>executor</code> was created by server,
+	 * it is shut down.
+	 */
+	public void stop()
+	{
+		if (server != null)
+		{
+			try
+			{
+				server.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		if (eventLoops != null)
+		{
+			for (EventLoop eventLoop : eventLoops)
+			{
+				eventLoop.selector.wakeup();
+			}
+		}
+		if (!externalExecutor && executor != null)
+		{
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * Accepts all pending connections and registers them to event loops in
+	 * round-robin order.
+	 *
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private void accept() throws IOException
+	{
+		SocketChannel channel;
+		while ((channel = server.accept()) != null)
+		{
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+			EventLoop eventLoop = eventLoops[Math.abs(nextEventLoop.getAndIncrement() % eventLoops.length)];
+			final SocketChannel client = channel;
+			eventLoop.execute(() -> eventLoop.register(client));
+		}
+	}
+
+	/**
+	 * Gets the port, on which is <code>PointyNioServer</code> started. If server
+	 * is not running, it returns <code>-1</code>.
+	 *
+	 * @return the port
+	 */
+	public int getPort()
+	{
+		if (isRunning())
+		{
+			return server.socket().getLocalPort();
+		}
+		return -1;
+	}
+
+	/**
+	 * Gets the IP address, on which is server started. If server is not running,
+	 * it return empty <code>String</code>.
+	 *
+	 * @return the ip address
+	 */
+	public String getIpAddress()
+	{
+		if (isRunning())
+		{
+			return server.socket().getInetAddress().getHostAddress();
+		}
+		return "";
+	}
+
+	/**
+	 * Checks if is running.
+	 *
+	 * @return true, if is running
+	 */
+	public boolean isRunning()
+	{
+		return server != null && server.isOpen();
+	}
+
+	/**
+	 * Gets the keep alive timeout in milliseconds.
+	 *
+	 * @return the keep alive timeout ms
+	 */
+	public long getKeepAliveTimeoutMs()
+	{
+		return keepAliveTimeoutMs;
+	}
+
+	/**
+	 * Sets how long could be connection idle, while waiting for next request,
+	 * before it is closed. Default value is 30 seconds.
+	 *
+	 * @param keepAliveTimeoutMs
+	 *          the new keep alive timeout ms
+	 */
+	public void setKeepAliveTimeoutMs(long keepAliveTimeoutMs)
+	{
+		this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+	}
+
+	/**
+	 * Gets the max keep alive requests.
+	 *
+	 * @return the max keep alive requests
+	 */
+	public int getMaxKeepAliveRequests()
+	{
+		return maxKeepAliveRequests;
+	}
+
+	/**
+	 * Sets maximum of requests served by one connection, then the connection is
+	 * closed. Value <code>1</code> disables keep alive. Default value is 100.
+	 *
+	 * @param maxKeepAliveRequests
+	 *          the new max keep alive requests
+	 */
+	public void setMaxKeepAliveRequests(int maxKeepAliveRequests)
+	{
+		this.maxKeepAliveRequests = maxKeepAliveRequests;
+	}
+
+	/**
+	 * Gets the max body size in bytes.
+	 *
+	 * @return the max body size
+	 */
+	public long getMaxBodySize()
+	{
+		return maxBodySize;
+	}
+
+	/**
+	 * Sets maximum size of request body in bytes. Request with larger body is
+	 * answered with <code>413 Payload Too Large</code>. Value <code>-1</code>
+	 * disables the limit. Default value is 10 MB.
+	 *
+	 * @param maxBodySize
+	 *          the new max body size
+	 */
+	public void setMaxBodySize(long maxBodySize)
+	{
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Gets the executor, that handles requests. If server was not started yet
+	 * and executor is created by server, it returns <code>null</code>.
+	 *
+	 * @return the executor
+	 */
+	public ExecutorService getExecutor()
+	{
+		return executor;
+	}
+
+	/**
+	 * The event loop, that serves its own {@link Selector}. All operations with
+	 * its selection keys are performed in its <code>Thread</code>, other
+	 * threads pass them via {@link #execute(Runnable)}.
+	 */
+	private class EventLoop implements Runnable
+	{
+		private final Selector selector;
+		private final Thread thread;
+		private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+		private long lastIdleCheck = System.nanoTime();
+
+		/**
+		 * Instantiates a new event loop.
+		 *
+		 * @param name
+		 *          the name of thread
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private EventLoop(String name) throws IOException
+		{
+			selector = Selector.open();
+			thread = new Thread(this, name);
+		}
+
+		/**
+		 * Executes the task in event loop <code>Thread</code>.
+		 *
+		 * @param task
+		 *          the task
+		 */
+		private void execute(Runnable task)
+		{
+			tasks.add(task);
+			selector.wakeup();
+		}
+
+		/**
+		 * Registers new client connection.
+		 *
+		 * @param channel
+		 *          the channel
+		 */
+		private void register(SocketChannel channel)
+		{
+			try
+			{
+				Connection connection = new Connection(this, channel);
+				connection.key = channel.register(selector, SelectionKey.OP_READ, connection);
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+				try
+				{
+					channel.close();
+				}
+				catch (IOException ex)
+				{
+					ex.printStackTrace();
+				}
+			}
+		}
+
+		/**
+		 * Runs the event loop, until server is closed.
+		 */
+		@Override
+		public void run()
+		{
+			while (server.isOpen())
+			{
+				try
+				{
+					selector.select(IDLE_CHECK_MS);
+
+					Runnable task;
+					while ((task = tasks.poll()) != null)
+					{
+						task.run();
+					}
+
+					Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+					while (it.hasNext())
+					{
+						SelectionKey key = it.next();
+						it.remove();
+						handleKey(key);
+					}
+					closeIdleConnections();
+				}
+				catch (Exception e)
+				{
+					e.printStackTrace();
+				}
+			}
+
+			for (SelectionKey key : selector.keys())
+			{
+				if (key.attachment() instanceof Connection)
+				{
+					((Connection) key.attachment()).close();
+				}
+			}
+			try
+			{
+				selector.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+
+		/**
+		 * Closes connections, that are waiting for request longer than
+		 * <code>keepAliveTimeoutMs</code>. Check is performed once per
+		 * second.
+		 */
+		private void closeIdleConnections()
+		{
+			long now = System.nanoTime();
+			if (TimeUnit.NANOSECONDS.toMillis(now - lastIdleCheck) < IDLE_CHECK_MS)
+			{
+				return;
+			}
+			lastIdleCheck = now;
+			for (SelectionKey key : selector.keys())
+			{
+				if (key.attachment() instanceof Connection)
+				{
+					Connection connection = (Connection) key.attachment();
+					if (connection.parser != null && TimeUnit.NANOSECONDS.toMillis(now - connection.lastActivity) > keepAliveTimeoutMs)
+					{
+						connection.close();
+					}
+				}
+			}
+		}
+
+		/**
+		 * Handles ready selection key.
+		 *
+		 * @param key
+		 *          the key
+		 */
+		private void handleKey(SelectionKey key)
+		{
+			try
+			{
+				if (!key.isValid())
+				{
+					return;
+				}
+				if (key.isAcceptable())
+				{
+					accept();
+					return;
+				}
+				Connection connection = (Connection) key.attachment();
+				if (key.isReadable())
+				{
+					connection.read();
+				}
+				if (key.isValid() && key.isWritable())
+				{
+					connection.write();
+				}
+			}
+			catch (CancelledKeyException e)
+			{
+				// Connection was closed in the meantime.
+			}
+			catch (IOException e)
+			{
+				if (key.attachment() instanceof Connection)
+				{
+					((Connection) key.attachment()).close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The client connection. Its request is read by event loop, then handled by
+	 * worker <code>Thread</code>, that writes response into
+	 * {@link ConnectionOutputStream}. Written response is queued and written by
+	 * event loop.<br>
+	 * Connection upgraded to {@link HttpWebSocket} keeps reading, read bytes are
+	 * queued and passed to web socket by one worker at once. If worker does not
+	 * keep up with client, reading is paused.
+	 */
+	private class Connection
+	{
+		private final EventLoop eventLoop;
+		private final SocketChannel channel;
+		private final String clientIp;
+		private SelectionKey key;
+
+		private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private HttpRequestParser parser = new HttpRequestParser(maxBodySize);
+		private final Deque<Object> writeQueue = new ArrayDeque<>();
+		private long pendingBytes = 0;
+		private boolean responseComplete = false;
+		private boolean keepAlive = false;
+		private long lastActivity = System.nanoTime();
+		private int requests = 0;
+
+		private volatile HttpWebSocket webSocket;
+		private final Queue<ByteBuffer> inbound = new ConcurrentLinkedQueue<>();
+		private final AtomicLong inboundBytes = new AtomicLong();
+		private final AtomicBoolean draining = new AtomicBoolean();
+		private volatile boolean readPaused = false;
+
+		/**
+		 * Instantiates a new connection.
+		 *
+		 * @param eventLoop
+		 *          the event loop
+		 * @param channel
+		 *          the channel
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private Connection(EventLoop eventLoop, SocketChannel channel) throws IOException
+		{
+			this.eventLoop = eventLoop;
+			this.channel = channel;
+			this.clientIp = ((InetSocketAddress) channel.getRemoteAddress()).getAddress().getHostAddress();
+		}
+
+		/**
+		 * Reads available bytes. If the request is complete, it stops reading and
+		 * dispatches request to worker.
+		 *
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private void read() throws IOException
+		{
+			if (channel.read(readBuffer) < 0)
+			{
+				close();
+				return;
+			}
+			lastActivity = System.nanoTime();
+			if (webSocket != null)
+			{
+				receive();
+			}
+			else
+			{
+				dispatch();
+			}
+		}
+
+		/**
+		 * Passes read bytes to {@link HttpRequestParser}, and dispatches the
+		 * request to worker, if it is complete. Bytes following the request, e.g.
+		 * pipelined requests, are kept in read buffer for later.
+		 */
+		private void dispatch()
+		{
+			readBuffer.flip();
+			try
+			{
+				parser.parse(readBuffer);
+			}
+			catch (BadRequestException e)
+			{
+				readBuffer.clear();
+				reject(HttpStatus.BAD_REQUEST_400, BAD_REQUEST_MESSAGE);
+				return;
+			}
+			catch (PayloadTooLargeException e)
+			{
+				readBuffer.clear();
+				reject(HttpStatus.PAYLOAD_TOO_LARGE_413, PAYLOAD_TOO_LARGE_MESSAGE);
+				return;
+			}
+			readBuffer.compact();
+
+			if (parser.isComplete())
+			{
+				key.interestOps(0);
+				HttpRequestParser request = parser;
+				parser = null;
+				try
+				{
+					executor.execute(() -> handle(request));
+				}
+				catch (RejectedExecutionException e)
+				{
+					respond(HttpStatus.SERVICE_UNAVAILABLE_503, SERVICE_UNAVAILABLE_MESSAGE);
+				}
+			}
+		}
+
+		/**
+		 * Stops reading and responds with defined status, connection is closed
+		 * afterwards.
+		 *
+		 * @param status
+		 *          the status
+		 * @param message
+		 *          the message
+		 */
+		private void reject(int status, String message)
+		{
+			key.interestOps(0);
+			parser = null;
+			respond(status, message);
+		}
+
+		/**
+		 * Handles complete request in worker <code>Thread</code>. After response
+		 * is written, connection waits for next request, if it should be kept
+		 * alive.
+		 *
+		 * @param request
+		 *          the parsed request
+		 */
+		private void handle(HttpRequestParser request)
+		{
+			ConnectionOutputStream os = new ConnectionOutputStream();
+			boolean keepAliveResponse = false;
+			HttpContext context = null;
+			try
+			{
+				HttpRequest httpRequest = new HttpRequest(request, clientIp);
+				context = new HttpContext(httpRequest, new HttpResponse(os));
+				if (++requests >= maxKeepAliveRequests || !isRunning())
+				{
+					context.getResponse().setKeepAlive(false);
+				}
+				endpoint.handle(context);
+				keepAliveResponse = context.getResponse().isClosed() && context.getResponse().isKeepAlive();
+			}
+			catch (Exception e)
+			{
+				e.printStackTrace();
+			}
+			finally
+			{
+				if (context != null && context.getResponse().getWebSocket() != null)
+				{
+					webSocket = context.getResponse().getWebSocket();
+					eventLoop.execute(this::upgrade);
+				}
+				else if (context == null || context.getResponse().getEventStream() == null)
+				{
+					os.finish(keepAliveResponse);
+				}
+			}
+		}
+
+		/**
+		 * Starts reading of upgraded connection in event loop. Bytes, that were
+		 * read after handshake request, are passed to web socket.
+		 */
+		private void upgrade()
+		{
+			if (!key.isValid())
+			{
+				return;
+			}
+			key.interestOps(key.interestOps() | readInterest());
+			if (readBuffer.position() > 0)
+			{
+				receive();
+			}
+		}
+
+		/**
+		 * Queues read bytes of upgraded connection and schedules their
+		 * processing. If too many bytes are waiting, reading is paused, until
+		 * worker processes them.
+		 */
+		private void receive()
+		{
+			readBuffer.flip();
+			ByteBuffer bytes = ByteBuffer.allocate(readBuffer.remaining());
+			bytes.put(readBuffer);
+			bytes.flip();
+			readBuffer.clear();
+
+			inbound.add(bytes);
+			if (inboundBytes.addAndGet(bytes.remaining()) > WRITE_HIGH_WATER_MARK)
+			{
+				readPaused = true;
+				key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+			}
+			scheduleDrain();
+		}
+
+		/**
+		 * Schedules processing of queued bytes in worker, if it is not running
+		 * yet.
+		 */
+		private void scheduleDrain()
+		{
+			if (draining.compareAndSet(false, true))
+			{
+				try
+				{
+					executor.execute(this::drain);
+				}
+				catch (RejectedExecutionException e)
+				{
+					inbound.clear();
+					draining.set(false);
+					webSocket.abort();
+					close();
+				}
+			}
+		}
+
+		/**
+		 * Passes queued bytes to web socket in worker <code>Thread</code>, so
+		 * messages are handled one after another in order of receiving. Paused
+		 * reading is resumed afterwards.
+		 */
+		private void drain()
+		{
+			do
+			{
+				ByteBuffer bytes;
+				while ((bytes = inbound.poll()) != null)
+				{
+					if (bytes == END_OF_STREAM)
+					{
+						webSocket.abort();
+						continue;
+					}
+					inboundBytes.addAndGet(-bytes.remaining());
+					webSocket.receive(bytes);
+				}
+				draining.set(false);
+			}
+			while (!inbound.isEmpty() && draining.compareAndSet(false, true));
+
+			if (readPaused)
+			{
+				eventLoop.execute(this::resumeRead);
+			}
+		}
+
+		/**
+		 * Resumes paused reading of upgraded connection.
+		 */
+		private void resumeRead()
+		{
+			if (readPaused && inboundBytes.get() <= WRITE_HIGH_WATER_MARK && key.isValid())
+			{
+				readPaused = false;
+				key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+			}
+		}
+
+		/**
+		 * Gets the interest in reading, that is kept while response is written.
+		 * Only upgraded connection reads during writing.
+		 *
+		 * @return the read interest
+		 */
+		private int readInterest()
+		{
+			return webSocket != null && !readPaused ? SelectionKey.OP_READ : 0;
+		}
+
+		/**
+		 * Responds with defined status and message without handling request by
+		 * {@link PointyEndpoint}.
+		 *
+		 * @param status
+		 *          the status
+		 * @param message
+		 *          the message
+		 */
+		private void respond(int status, String message)
+		{
+			try
+			{
+				HttpResponse response = new HttpResponse(new ConnectionOutputStream());
+				response.setStatus(status);
+				response.send(message);
+			}
+			catch (IOException e)
+			{
+				close();
+			}
+		}
+
+		/**
+		 * Queues the buffer to be written by event loop. If it is invoked by
+		 * worker <code>Thread</code> and too many bytes are waiting to be written,
+		 * it waits, until event loop writes them.
+		 *
+		 * @param buffer
+		 *          the buffer
+		 * @param last
+		 *          true, if it is the last buffer of response
+		 * @param keepAliveAfter
+		 *          true, if connection should wait for next request after
+		 *          response
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private void enqueue(ByteBuffer buffer, boolean last, boolean keepAliveAfter) throws IOException
+		{
+			synchronized (this)
+			{
+				if (!channel.isOpen())
+				{
+					throw new IOException("Connection is closed.");
+				}
+				if (buffer.hasRemaining())
+				{
+					writeQueue.add(buffer);
+					pendingBytes += buffer.remaining();
+				}
+				if (last)
+				{
+					responseComplete = true;
+					keepAlive = keepAliveAfter;
+				}
+			}
+			eventLoop.execute(this::enableWrite);
+
+			if (Thread.currentThread() != eventLoop.thread)
+			{
+				synchronized (this)
+				{
+					while (pendingBytes > WRITE_HIGH_WATER_MARK && channel.isOpen())
+					{
+						try
+						{
+							wait();
+						}
+						catch (InterruptedException e)
+						{
+							Thread.currentThread().interrupt();
+							throw new IOException("Interrupted while waiting for write.", e);
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * Queues the buffer of event stream to be written by event loop without
+		 * waiting. If too many bytes are waiting to be written, client does not
+		 * read events, so connection is closed.
+		 *
+		 * @param buffer
+		 *          the buffer
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private void offer(ByteBuffer buffer) throws IOException
+		{
+			synchronized (this)
+			{
+				if (!channel.isOpen())
+				{
+					throw new IOException("Connection is closed.");
+				}
+				if (pendingBytes > WRITE_HIGH_WATER_MARK)
+				{
+					eventLoop.execute(this::close);
+					throw new IOException("Client does not read events.");
+				}
+				writeQueue.add(buffer);
+				pendingBytes += buffer.remaining();
+			}
+			eventLoop.execute(this::enableWrite);
+		}
+
+		/**
+		 * Queues the part of file to be transferred by event loop. File is not
+		 * counted as pending bytes, because it does not occupy heap.
+		 *
+		 * @param region
+		 *          the region
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private void enqueue(FileRegion region) throws IOException
+		{
+			synchronized (this)
+			{
+				if (!channel.isOpen())
+				{
+					region.close();
+					throw new IOException("Connection is closed.");
+				}
+				writeQueue.add(region);
+			}
+			eventLoop.execute(this::enableWrite);
+		}
+
+		/**
+		 * Enables writing in event loop.
+		 */
+		private void enableWrite()
+		{
+			if (key.isValid())
+			{
+				key.interestOps(SelectionKey.OP_WRITE | readInterest());
+			}
+		}
+
+		/**
+		 * Writes queued buffers by gathering write and transfers queued files,
+		 * until channel is able to accept them. If whole response is written,
+		 * connection is closed or it continues with next request, that could be
+		 * already read.
+		 *
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private synchronized void write() throws IOException
+		{
+			while (!writeQueue.isEmpty())
+			{
+				if (writeQueue.peek() instanceof FileRegion)
+				{
+					FileRegion region = (FileRegion) writeQueue.peek();
+					if (!region.transferTo(channel))
+					{
+						break;
+					}
+					region.close();
+					writeQueue.poll();
+					continue;
+				}
+
+				List<ByteBuffer> buffers = new ArrayList<>();
+				for (Object item : writeQueue)
+				{
+					if (!(item instanceof ByteBuffer))
+					{
+						break;
+					}
+					buffers.add((ByteBuffer) item);
+				}
+				pendingBytes -= channel.write(buffers.toArray(new ByteBuffer[buffers.size()]));
+				while (writeQueue.peek() instanceof ByteBuffer && !((ByteBuffer) writeQueue.peek()).hasRemaining())
+				{
+					writeQueue.poll();
+				}
+				if (writeQueue.peek() instanceof ByteBuffer)
+				{
+					break;
+				}
+			}
+			notifyAll();
+
+			if (writeQueue.isEmpty())
+			{
+				if (!responseComplete)
+				{
+					key.interestOps(readInterest());
+				}
+				else if (keepAlive)
+				{
+					responseComplete = false;
+					parser = new HttpRequestParser(maxBodySize);
+					lastActivity = System.nanoTime();
+					key.interestOps(SelectionKey.OP_READ);
+					dispatch();
+				}
+				else
+				{
+					close();
+				}
+			}
+		}
+
+		/**
+		 * Closes the connection.
+		 */
+		private synchronized void close()
+		{
+			boolean open = channel.isOpen();
+			if (key != null)
+			{
+				key.cancel();
+			}
+			try
+			{
+				channel.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+			for (Object item : writeQueue)
+			{
+				if (item instanceof FileRegion)
+				{
+					((FileRegion) item).close();
+				}
+			}
+			writeQueue.clear();
+			notifyAll();
+
+			if (open && webSocket != null)
+			{
+				inbound.add(END_OF_STREAM);
+				scheduleDrain();
+			}
+		}
+
+		/**
+		 * The <code>OutputStream</code>, that collects written bytes and passes
+		 * them to event loop on {@link #flush()}. Buffers written via
+		 * {@link #write(ByteBuffer...)} and files are passed to event loop without
+		 * copying. Closing of stream means end of response and closing of
+		 * connection.
+		 */
+		private class ConnectionOutputStream extends OutputStream implements HttpTransferOutput, HttpEventOutput
+		{
+			private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+			private boolean closed = false;
+
+			@Override
+			public void write(int b) throws IOException
+			{
+				buffer.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException
+			{
+				buffer.write(b, off, len);
+			}
+
+			@Override
+			public void write(ByteBuffer... buffers) throws IOException
+			{
+				flush();
+				for (ByteBuffer buffer : buffers)
+				{
+					enqueue(buffer, false, false);
+				}
+			}
+
+			@Override
+			public void offer(ByteBuffer buffer) throws IOException
+			{
+				flush();
+				Connection.this.offer(buffer);
+			}
+
+			@Override
+			public void transferFrom(FileChannel fileChannel, long position, long count, boolean close) throws IOException
+			{
+				flush();
+				enqueue(new FileRegion(fileChannel, position, count, close));
+			}
+
+			@Override
+			public void flush() throws IOException
+			{
+				if (buffer.size() > 0)
+				{
+					enqueue(ByteBuffer.wrap(buffer.toByteArray()), false, false);
+					buffer.reset();
+				}
+			}
+
+			@Override
+			public void close()
+			{
+				finish(false);
+			}
+
+			/**
+			 * Finishes the response, remaining bytes are passed to event loop.
+			 *
+			 * @param keepAliveAfter
+			 *          true, if connection should wait for next request
+			 */
+			private void finish(boolean keepAliveAfter)
+			{
+				if (closed)
+				{
+					return;
+				}
+				closed = true;
+				try
+				{
+					enqueue(ByteBuffer.wrap(buffer.toByteArray()), true, keepAliveAfter);
+				}
+				catch (IOException e)
+				{
+					Connection.this.close();
+				}
+			}
+		}
+	}
+
+	/**
+	 * The part of file, that is transferred to connection by event loop.
+	 */
+	private static class FileRegion
+	{
+		private final FileChannel fileChannel;
+		private final boolean closeChannel;
+		private long position;
+		private long remaining;
+
+		/**
+		 * Instantiates a new file region.
+		 *
+		 * @param fileChannel
+		 *          the file channel
+		 * @param position
+		 *          the position
+		 * @param count
+		 *          the count
+		 * @param closeChannel
+		 *          true, if file channel is closed with region
+		 */
+		private FileRegion(FileChannel fileChannel, long position, long count, boolean closeChannel)
+		{
+			this.fileChannel = fileChannel;
+			this.closeChannel = closeChannel;
+			this.position = position;
+			this.remaining = count;
+		}
+
+		/**
+		 * Transfers as many bytes, as channel accepts.
+		 *
+		 * @param channel
+		 *          the channel
+		 * @return true, if whole region is transferred
+		 * @throws IOException
+		 *           Signals that an I/O exception has occurred.
+		 */
+		private boolean transferTo(SocketChannel channel) throws IOException
+		{
+			while (remaining > 0)
+			{
+				long transferred = fileChannel.transferTo(position, remaining, channel);
+				if (transferred <= 0)
+				{
+					if (position >= fileChannel.size())
+					{
+						throw new EOFException("File is shorter than expected.");
+					}
+					return false;
+				}
+				position += transferred;
+				remaining -= transferred;
+			}
+			return true;
+		}
+
+		/**
+		 * Closes the file channel, if region owns it.
+		 */
+		private void close()
+		{
+			if (!closeChannel)
+			{
+				return;
+			}
+			try
+			{
+				fileChannel.close();
+			}
+			catch (IOException e)
+			{
+				e.printStackTrace();
+			}
+		}
+	}
+}
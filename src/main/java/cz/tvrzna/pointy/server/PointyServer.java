@@ -1,13 +1,26 @@
 package cz.tvrzna.pointy.server;
 
+import java.io.BufferedInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.util.concurrent.Semaphore;
+import java.net.SocketTimeoutException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 
+import cz.tvrzna.pointy.exceptions.BadRequestException;
+import cz.tvrzna.pointy.exceptions.PayloadTooLargeException;
 import cz.tvrzna.pointy.http.HttpContext;
+import cz.tvrzna.pointy.http.HttpRequest;
+import cz.tvrzna.pointy.http.HttpResponse;
+import cz.tvrzna.pointy.http.HttpStatus;
 import cz.tvrzna.pointy.router.PointyEndpoint;
 
 /**
@@ -21,10 +34,27 @@ import cz.tvrzna.pointy.router.PointyEndpoint;
  * (e.g. 192.168.1.1 to run on local intranet). <br>
  * If <code>port</code> is set as <code>-1</code>, JVM finds unused port to
  * attach server to it. <br>
- * Each request is handled via independent <code>Thread</code>, default maximum
- * of parallel requests is 16, but it set to own value.<br>
+ * Each request is handled by worker <code>Thread</code> from
+ * {@link ExecutorService}, by default it is bounded pool created by
+ * {@link PointyExecutors#newBoundedPool(int, int, int, long)} with maximum of
+ * 16 parallel requests, but it could be set to own value or replaced by own
+ * <code>ExecutorService</code>. Optionally, each request could be handled in
+ * its own virtual <code>Thread</code>, see
+ * {@link PointyServer#setVirtualThreads(boolean)}.<br>
+ * Connections are kept alive according to HTTP/1.1, idle connection is
+ * closed after 5 seconds or after 100 requests. Idle connection is also closed,
+ * when other connections are waiting for free worker. Connection with open
+ * {@link cz.tvrzna.pointy.http.HttpEventStream} occupies its worker, that
+ * writes events queued by other <code>Threads</code>, until the stream is
+ * closed or client, that does not read them, is disconnected. Connection
+ * upgraded to {@link cz.tvrzna.pointy.http.HttpWebSocket} occupies it, until
+ * web socket is closed.<br>
  * Request, that is added into queue, has 30 seconds to be handled, otherwise
- * connection is closed. The queue is defined as FIFO (First in, first out).<br>
+ * it is answered with <code>503 Service Unavailable</code>. The queue is
+ * defined as FIFO (First in, first out). If the queue is full, request is
+ * rejected immediately with <code>503 Service Unavailable</code>. Malformed
+ * request is answered with <code>400 Bad Request</code> and request with body
+ * larger than 10 MB with <code>413 Payload Too Large</code>.<br>
  * After new instance is created, server needs to be started via
  * {@link PointyServer#start()} method.<br>
  * For stopping server it needs to be invoked {@link PointyServer#stop()} method.
@@ -34,13 +64,28 @@ import cz.tvrzna.pointy.router.PointyEndpoint;
  */
 public class PointyServer
 {
+	private static final int DEFAULT_QUEUE_CAPACITY = 256;
+	private static final long DEFAULT_KEEP_ALIVE_MS = 60000l;
+	private static final String SERVICE_UNAVAILABLE_MESSAGE = "503 Service Unavailable";
+	private static final String BAD_REQUEST_MESSAGE = "400 Bad Request";
+	private static final String PAYLOAD_TOO_LARGE_MESSAGE = "413 Payload Too Large";
+
 	private ServerSocket server;
 	private final String ipAddress;
 	private final int port;
 	private final long waitTimeoutMs;
 	private final PointyEndpoint endpoint;
 
-	private final Semaphore semaphore;
+	private final int coreThreads;
+	private final int maxThreads;
+	private final int queueCapacity;
+	private final boolean externalExecutor;
+	private ExecutorService executor;
+	private boolean virtualThreads = false;
+	private long keepAliveTimeoutMs = 5000l;
+	private int maxKeepAliveRequests = 100;
+	private long maxBodySize = 10485760l;
+	private final Queue<Socket> idleClients = new ConcurrentLinkedQueue<>();
 
 	/**
 	 * Instantiates a new <code>PointyServer</code> on defined
@@ -74,14 +119,80 @@ public class PointyServer
 	 *          the endpoint
 	 * @param maxThreads
 	 *          the max threads
+	 * @param waitTimeoutMs
+	 *          the wait timeout ms
 	 */
 	public PointyServer(String ipAddress, int port, PointyEndpoint endpoint, int maxThreads, long waitTimeoutMs)
+	{
+		this(ipAddress, port, endpoint, maxThreads, maxThreads, DEFAULT_QUEUE_CAPACITY, waitTimeoutMs);
+	}
+
+	/**
+	 * Instantiates a new <code>PointyServer</code> on defined
+	 * <code>ipAddress</code>, <code>port</code>. Server will provide defined
+	 * {@link PointyEndpoint}. Requests are handled by pool of
+	 * <code>coreThreads</code> threads, waiting requests are stored in queue
+	 * with <code>queueCapacity</code>. When the queue is full, pool grows up to
+	 * <code>maxThreads</code>.
+	 *
+	 * @param ipAddress
+	 *          the ip address
+	 * @param port
+	 *          the port
+	 * @param endpoint
+	 *          the endpoint
+	 * @param coreThreads
+	 *          the core threads
+	 * @param maxThreads
+	 *          the max threads
+	 * @param queueCapacity
+	 *          the queue capacity
+	 * @param waitTimeoutMs
+	 *          the wait timeout ms
+	 * @since 0.3.0
+	 */
+	public PointyServer(String ipAddress, int port, PointyEndpoint endpoint, int coreThreads, int maxThreads, int queueCapacity, long waitTimeoutMs)
+	{
+		this.ipAddress = ipAddress;
+		this.port = port;
+		this.endpoint = endpoint;
+		this.waitTimeoutMs = waitTimeoutMs;
+		this.coreThreads = coreThreads;
+		this.maxThreads = maxThreads;
+		this.queueCapacity = queueCapacity;
+		this.externalExecutor = false;
+	}
+
+	/**
+	 * Instantiates a new <code>PointyServer</code> on defined
+	 * <code>ipAddress</code>, <code>port</code>. Server will provide defined
+	 * {@link PointyEndpoint} and requests will be handled by defined
+	 * <code>executor</code>. The <code>executor</code> is not shut down, when
+	 * server is stopped.
+	 *
+	 * @param ipAddress
+	 *          the ip address
+	 * @param port
+	 *          the port
+	 * @param endpoint
+	 *          the endpoint
+	 * @param executor
+	 *          the executor
+	 * @param waitTimeoutMs
+	 *          the wait timeout ms
+	 * @since 0.3.0
+	 */
+	public PointyServer(String ipAddress, int port, PointyEndpoint endpoint, ExecutorService executor, long waitTimeoutMs)
 	{
 		this.ipAddress = ipAddress;
 		this.port = port;
 		this.endpoint = endpoint;
 		this.waitTimeoutMs = waitTimeoutMs;
-		semaphore = new Semaphore(maxThreads > 0 ? maxThreads : 1, true);
+		this.coreThreads = 0;
+		this.maxThreads = 0;
+		this.queueCapacity = 0;
+		this.externalExecutor = true;
+		this.executor = executor;
 	}
 
 	/**
@@ -89,11 +200,14 @@ public class PointyServer
 	 * unless is already running.<br>
 	 * As first step is invoking {@link PointyEndpoint#onInit()} method. It is
 	 * expected, that this method contains code, that prepares any route, that
-	 * should be handled by this <code>PointyServer</code>.<br>
-	 * Any incoming request asks for permit to be handled. If permit is acquired,
-	 * the request is handled as independent <code>Thread</code> in
-	 * {@link PointyEndpoint#handle(HttpContext)}. Request could wait up to <code>waitTimeoutMs</code>
-	 * milliseconds to be handled, otherwise connection is closed.<br>
+	 * should be handled by this <code>PointyServer</code>.
+	 * Then routes are compiled via {@link PointyEndpoint#compileRoutes()}.<br>
+	 * Any incoming request is passed to <code>executor</code>, that handles it
+	 * in {@link PointyEndpoint#handle(HttpContext)}. Request could wait up to
+	 * <code>waitTimeoutMs</code> milliseconds to be handled, otherwise it is
+	 * answered with <code>503 Service Unavailable</code>. If
+	 * <code>executor</code> rejects the request, it is answered the same way
+	 * without blocking of accepting <code>Thread</code>.<br>
 	 */
 	public void start()
 	{
@@ -105,6 +219,10 @@ public class PointyServer
 		{
 			InetAddress address = InetAddress.getByName(ipAddress);
 			server = new ServerSocket(port, 0, address);
+			if (!externalExecutor)
+			{
+				executor = createExecutor();
+			}
 			new Thread("pointyServer")
 			{
 				@Override
@@ -113,6 +231,7 @@ public class PointyServer
 					try
 					{
 						endpoint.onInit();
+						endpoint.compileRoutes();
 
 						while (!server.isClosed())
 						{
@@ -120,37 +239,23 @@ public class PointyServer
 							{
 								@SuppressWarnings("resource")
 								Socket client = server.accept();
-								if (semaphore.tryAcquire(waitTimeoutMs, TimeUnit.MILLISECONDS))
+								long acceptedAt = System.nanoTime();
+								boolean queued = !acquireWorker();
+								try
 								{
-									new Thread("pointyServerSocket")
-									{
-										@Override
-										public void run()
-										{
-											try
-											{
-												endpoint.handle(new HttpContext(client));
-												client.close();
-											}
-											catch (Exception e)
-											{
-												e.printStackTrace();
-											}
-											finally
-											{
-												semaphore.release();
-											}
-										};
-									}.start();
+									executor.execute(() -> handleClient(client, acceptedAt, queued));
 								}
-								else
+								catch (RejectedExecutionException e)
 								{
-									client.close();
+									rejectClient(client, HttpStatus.SERVICE_UNAVAILABLE_503, SERVICE_UNAVAILABLE_MESSAGE);
 								}
 							}
 							catch (Exception e)
 							{
-								e.printStackTrace();
+								if (!server.isClosed())
+								{
+									e.printStackTrace();
+								}
 							}
 						}
 					}
@@ -168,7 +273,268 @@ public class PointyServer
 	}
 
 	/**
-	 * Stops the <code>PointyServer</code>, if is running.
+	 * Creates the executor owned by server. If virtual threads are enabled and
+	 * supported by JVM, each request is handled in its own virtual
+	 * <code>Thread</code>, otherwise it falls back to bounded pool of platform
+	 * threads.
+	 *
+	 * @return the executor service
+	 */
+	private ExecutorService createExecutor()
+	{
+		if (virtualThreads && PointyExecutors.isVirtualThreadSupported())
+		{
+			try
+			{
+				return PointyExecutors.newVirtualThreadPerTaskExecutor();
+			}
+			catch (UnsupportedOperationException e)
+			{
+				e.printStackTrace();
+			}
+		}
+		return PointyExecutors.newBoundedPool(coreThreads, maxThreads, queueCapacity, DEFAULT_KEEP_ALIVE_MS);
+	}
+
+	/**
+	 * Handles accepted <code>client</code> in worker <code>Thread</code>. If
+	 * client was queued and waited for handling longer than
+	 * <code>waitTimeoutMs</code>, it is answered with
+	 * <code>503 Service Unavailable</code>.<br>
+	 * The connection is kept alive for another requests, until client or
+	 * response asks to close it, it is idle for <code>keepAliveTimeoutMs</code>
+	 * or it served <code>maxKeepAliveRequests</code> requests. Body, that was
+	 * not read by handler, is skipped before next request.
+	 *
+	 * @param client
+	 *          the client
+	 * @param acceptedAt
+	 *          the nano time, when client was accepted
+	 * @param queued
+	 *          true, if there was no free worker, when client was accepted
+	 */
+	private void handleClient(Socket client, long acceptedAt, boolean queued)
+	{
+		try
+		{
+			boolean expired = queued && TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - acceptedAt) > waitTimeoutMs;
+			InputStream is = new BufferedInputStream(client.getInputStream());
+			OutputStream os = client.getOutputStream();
+			String clientIp = client.getInetAddress().getHostAddress();
+
+			int requests = 0;
+			while (awaitRequest(client, is, requests > 0))
+			{
+				requests++;
+				HttpRequest request;
+				try
+				{
+					request = new HttpRequest(is, clientIp, maxBodySize);
+				}
+				catch (BadRequestException e)
+				{
+					rejectClient(client, HttpStatus.BAD_REQUEST_400, BAD_REQUEST_MESSAGE);
+					break;
+				}
+				catch (PayloadTooLargeException e)
+				{
+					rejectClient(client, HttpStatus.PAYLOAD_TOO_LARGE_413, PAYLOAD_TOO_LARGE_MESSAGE);
+					break;
+				}
+
+				HttpContext context = new HttpContext(request, new HttpResponse(os));
+				if (expired || requests >= maxKeepAliveRequests || !isRunning())
+				{
+					context.getResponse().setKeepAlive(false);
+				}
+
+				if (expired)
+				{
+					context.status(HttpStatus.SERVICE_UNAVAILABLE_503).send(SERVICE_UNAVAILABLE_MESSAGE);
+				}
+				else
+				{
+					endpoint.handle(context);
+				}
+
+				if (context.getResponse().getEventStream() != null)
+				{
+					context.getResponse().getEventStream().awaitClose();
+				}
+
+				if (context.getResponse().getWebSocket() != null)
+				{
+					client.setSoTimeout(0);
+					context.getResponse().getWebSocket().read(is);
+					break;
+				}
+
+				if (!context.getResponse().isClosed() || !context.getResponse().isKeepAlive())
+				{
+					break;
+				}
+				request.getBodyInputStream().close();
+			}
+		}
+		catch (Exception e)
+		{
+			if (!client.isClosed())
+			{
+				e.printStackTrace();
+			}
+		}
+		finally
+		{
+			closeClient(client);
+		}
+	}
+
+	/**
+	 * Waits for next request on client's connection without consuming any byte.
+	 * Waiting is stopped, when connection is idle longer than
+	 * <code>keepAliveTimeoutMs</code> or server is stopped. An <code>idle</code>
+	 * connection is not waited for at all, when other connections are waiting
+	 * in queue of executor, and while it waits, it could be closed by
+	 * {@link PointyServer#acquireWorker()}.
+	 *
+	 * @param client
+	 *          the client
+	 * @param is
+	 *          the input stream supporting mark
+	 * @param idle
+	 *          true, if connection already served any request
+	 * @return true, if next request is available
+	 * @throws IOException
+	 *           Signals that an I/O exception has occurred.
+	 */
+	private boolean awaitRequest(Socket client, InputStream is, boolean idle) throws IOException
+	{
+		if (idle)
+		{
+			if (isSaturated())
+			{
+				return false;
+			}
+			idleClients.add(client);
+		}
+		try
+		{
+			if (!isRunning())
+			{
+				return false;
+			}
+			client.setSoTimeout((int) keepAliveTimeoutMs);
+			is.mark(1);
+			if (is.read() < 0)
+			{
+				return false;
+			}
+			is.reset();
+			return true;
+		}
+		catch (SocketTimeoutException e)
+		{
+			return false;
+		}
+		finally
+		{
+			if (idle)
+			{
+				idleClients.remove(client);
+			}
+		}
+	}
+
+	/**
+	 * Checks if executor has free worker, so accepted client is handled
+	 * without waiting in queue. If all workers are busy, the longest waiting
+	 * idle connection is closed, so its worker is released. It is recognized
+	 * only for {@link ThreadPoolExecutor}, any other executor is expected to
+	 * queue clients.
+	 *
+	 * @return true, if executor has free worker
+	 */
+	private boolean acquireWorker()
+	{
+		if (!(executor instanceof ThreadPoolExecutor))
+		{
+			return false;
+		}
+		ThreadPoolExecutor pool = (ThreadPoolExecutor) executor;
+		boolean emptyQueue = pool.getQueue().isEmpty();
+		if (emptyQueue && pool.getActiveCount() < Math.max(pool.getPoolSize(), pool.getCorePoolSize()))
+		{
+			return true;
+		}
+		Socket client = idleClients.poll();
+		if (client != null)
+		{
+			closeClient(client);
+		}
+		return emptyQueue && client != null;
+	}
+
+	/**
+	 * Checks if executor has no free worker and another connections are waiting
+	 * in its queue. It is recognized only for {@link ThreadPoolExecutor}.
+	 *
+	 * @return true, if is saturated
+	 */
+	private boolean isSaturated()
+	{
+		return executor instanceof ThreadPoolExecutor && !((ThreadPoolExecutor) executor).getQueue().isEmpty();
+	}
+
+	/**
+	 * Rejects <code>client</code> with defined status without handling of its
+	 * request, and closes the connection.
+	 *
+	 * @param client
+	 *          the client
+	 * @param status
+	 *          the status
+	 * @param message
+	 *          the message
+	 */
+	private void rejectClient(Socket client, int status, String message)
+	{
+		try
+		{
+			HttpResponse response = new HttpResponse(client.getOutputStream());
+			response.setStatus(status);
+			response.send(message);
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+		finally
+		{
+			closeClient(client);
+		}
+	}
+
+	/**
+	 * Closes the <code>client</code>.
+	 *
+	 * @param client
+	 *          the client
+	 */
+	private void closeClient(Socket client)
+	{
+		try
+		{
+			client.close();
+		}
+		catch (IOException e)
+		{
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * Stops the <code>PointyServer</code>, if is running. Idle connections are
+	 * closed. If <code>executor</code> was created by server, it is shut down.
 	 */
 	public void stop()
 	{
@@ -183,6 +549,15 @@ public class PointyServer
 				e.printStackTrace();
 			}
 		}
+		Socket client;
+		while ((client = idleClients.poll()) != null)
+		{
+			closeClient(client);
+		}
+		if (!externalExecutor && executor != null)
+		{
+			executor.shutdown();
+		}
 	}
 
 	/**
@@ -224,4 +599,118 @@ public class PointyServer
 	{
 		return server != null && !server.isClosed();
 	}
+
+	/**
+	 * Checks if virtual threads are enabled.
+	 *
+	 * @return true, if virtual threads are enabled
+	 * @since 0.3.0
+	 */
+	public boolean isVirtualThreads()
+	{
+		return virtualThreads;
+	}
+
+	/**
+	 * Enables handling of each request in its own virtual <code>Thread</code>,
+	 * so the number of parallel blocking requests is not limited by
+	 * <code>maxThreads</code>. Virtual threads are detected in runtime, if JVM
+	 * does not support them (before Java 21), server falls back to pool of
+	 * platform threads. It has no effect, if server uses own
+	 * <code>ExecutorService</code>. It needs to be set before
+	 * {@link #start()}.
+	 *
+	 * @param virtualThreads
+	 *          the new virtual threads
+	 * @since 0.3.0
+	 */
+	public void setVirtualThreads(boolean virtualThreads)
+	{
+		this.virtualThreads = virtualThreads;
+	}
+
+	/**
+	 * Gets the keep alive timeout in milliseconds.
+	 *
+	 * @return the keep alive timeout ms
+	 * @since 0.3.0
+	 */
+	public long getKeepAliveTimeoutMs()
+	{
+		return keepAliveTimeoutMs;
+	}
+
+	/**
+	 * Sets how long could be connection idle, while waiting for next request,
+	 * before it is closed. Default value is 5 seconds.
+	 *
+	 * @param keepAliveTimeoutMs
+	 *          the new keep alive timeout ms
+	 * @since 0.3.0
+	 */
+	public void setKeepAliveTimeoutMs(long keepAliveTimeoutMs)
+	{
+		this.keepAliveTimeoutMs = keepAliveTimeoutMs;
+	}
+
+	/**
+	 * Gets the max keep alive requests.
+	 *
+	 * @return the max keep alive requests
+	 * @since 0.3.0
+	 */
+	public int getMaxKeepAliveRequests()
+	{
+		return maxKeepAliveRequests;
+	}
+
+	/**
+	 * Sets maximum of requests served by one connection, then the connection is
+	 * closed. Value <code>1</code> disables keep alive. Default value is 100.
+	 *
+	 * @param maxKeepAliveRequests
+	 *          the new max keep alive requests
+	 * @since 0.3.0
+	 */
+	public void setMaxKeepAliveRequests(int maxKeepAliveRequests)
+	{
+		this.maxKeepAliveRequests = maxKeepAliveRequests;
+	}
+
+	/**
+	 * Gets the max body size in bytes.
+	 *
+	 * @return the max body size
+	 * @since 0.3.0
+	 */
+	public long getMaxBodySize()
+	{
+		return maxBodySize;
+	}
+
+	/**
+	 * Sets maximum size of request body in bytes. Request with larger body is
+	 * answered with <code>413 Payload Too Large</code>. Value <code>-1</code>
+	 * disables the limit. Default value is 10 MB.
+	 *
+	 * @param maxBodySize
+	 *          the new max body size
+	 * @since 0.3.0
+	 */
+	public void setMaxBodySize(long maxBodySize)
+	{
+		this.maxBodySize = maxBodySize;
+	}
+
+	/**
+	 * Gets the executor, that handles requests. If server was not started yet
+	 * and executor is created by server, it returns <code>null</code>.
+	 *
+	 * @return the executor
+	 * @since 0.3.0
+	 */
+	public ExecutorService getExecutor()
+	{
+		return executor;
+	}
 }
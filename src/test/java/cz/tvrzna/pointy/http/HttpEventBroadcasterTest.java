@@ -0,0 +1,164 @@
+package cz.tvrzna.pointy.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class HttpEventBroadcasterTest
+{
+	@Test
+	public void testEventStream() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpResponse response = new HttpResponse(baos);
+		response.setKeepAlive(true);
+		HttpEventStream stream = response.eventStream();
+		assertTrue(response.isCommitted());
+		assertFalse(response.isClosed());
+		assertFalse(response.isKeepAlive());
+
+		String head = baos.toString();
+		assertTrue(head.contains("content-type: text/event-stream; charset=utf-8\r\n"));
+		assertTrue(head.contains("cache-control: no-cache\r\n"));
+		assertTrue(head.contains("transfer-encoding: chunked\r\n"));
+		assertFalse(head.contains("content-length"));
+
+		assertTrue(stream.send(new HttpEvent("7", "update", "first\nsecond")));
+		assertTrue(stream.retry(5000));
+		assertTrue(stream.heartbeat());
+		stream.close();
+		assertTrue(response.isClosed());
+		assertFalse(stream.send("late"));
+
+		String body = new String(baos.toByteArray(), StandardCharsets.UTF_8).substring(head.length());
+		String event = "id: 7\nevent: update\ndata: first\ndata: second\n\n";
+		assertEquals(Integer.toHexString(event.length()) + "\r\n" + event + "\r\n" + "d\r\nretry: 5000\n\n\r\n" + "3\r\n:\n\n\r\n" + "0\r\n\r\n", body);
+	}
+
+	@Test
+	public void testBroadcast() throws IOException
+	{
+		ByteArrayOutputStream first = new ByteArrayOutputStream();
+		ByteArrayOutputStream second = new ByteArrayOutputStream();
+		BrokenOutputStream broken = new BrokenOutputStream();
+
+		HttpEventBroadcaster broadcaster = new HttpEventBroadcaster();
+		broadcaster.subscribe(new HttpResponse(first).eventStream());
+		broadcaster.subscribe(new HttpResponse(second).eventStream());
+		broadcaster.subscribe(new HttpResponse(broken).eventStream());
+		assertEquals(3, broadcaster.getSubscriberCount());
+
+		broken.broken = true;
+		assertEquals(2, broadcaster.broadcast("tick"));
+		assertEquals(2, broadcaster.getSubscriberCount());
+		assertTrue(first.toString().endsWith("c\r\ndata: tick\n\n\r\n"));
+		assertTrue(second.toString().endsWith("c\r\ndata: tick\n\n\r\n"));
+
+		assertEquals(2, broadcaster.heartbeat());
+		broadcaster.close();
+		assertEquals(0, broadcaster.getSubscriberCount());
+		assertTrue(first.toString().endsWith("0\r\n\r\n"));
+	}
+
+	@Test
+	public void testSlowSubscriber() throws IOException, InterruptedException
+	{
+		ByteArrayOutputStream fast = new ByteArrayOutputStream();
+		StalledOutputStream stalled = new StalledOutputStream();
+		HttpEventBroadcaster broadcaster = new HttpEventBroadcaster();
+		broadcaster.subscribe(new HttpResponse(fast).eventStream());
+
+		CountDownLatch subscribed = new CountDownLatch(1);
+		Thread worker = new Thread(() -> {
+			try
+			{
+				HttpEventStream stream = new HttpResponse(stalled).eventStream();
+				broadcaster.subscribe(stream);
+				stalled.stalled = true;
+				subscribed.countDown();
+				stream.awaitClose();
+			}
+			catch (IOException | InterruptedException e)
+			{
+				e.printStackTrace();
+			}
+		});
+		worker.start();
+		assertTrue(subscribed.await(5, TimeUnit.SECONDS));
+
+		String data = new String(new char[1024]).replace('\0', 'x');
+		int sent = 0;
+		while (broadcaster.getSubscriberCount() > 1 && sent < 1000)
+		{
+			assertTrue(broadcaster.broadcast(data) > 0);
+			sent++;
+		}
+		assertEquals(1, broadcaster.getSubscriberCount());
+		assertTrue(sent < 1000);
+		worker.join(5000);
+		assertFalse(worker.isAlive());
+		assertTrue(stalled.closed);
+
+		broadcaster.close();
+		assertTrue(fast.toString().endsWith("0\r\n\r\n"));
+	}
+
+	private static class StalledOutputStream extends OutputStream
+	{
+		private volatile boolean stalled = false;
+		private volatile boolean closed = false;
+
+		@Override
+		public synchronized void write(int b) throws IOException
+		{
+			while (stalled && !closed)
+			{
+				try
+				{
+					wait();
+				}
+				catch (InterruptedException e)
+				{
+					throw new IOException(e);
+				}
+			}
+			if (closed)
+			{
+				throw new IOException("Socket closed");
+			}
+		}
+
+		@Override
+		public void close()
+		{
+			closed = true;
+			synchronized (this)
+			{
+				notifyAll();
+			}
+		}
+	}
+
+	private static class BrokenOutputStream extends OutputStream
+	{
+		private boolean broken = false;
+
+		@Override
+		public void write(int b) throws IOException
+		{
+			if (broken)
+			{
+				throw new IOException("Broken pipe");
+			}
+		}
+	}
+}
@@ -0,0 +1,108 @@
+package cz.tvrzna.pointy.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+public class HttpHeadersTest
+{
+	@Test
+	public void testCaseInsensitive()
+	{
+		HttpHeaders headers = new HttpHeaders();
+		headers.put("Content-Type", "text/plain");
+		headers.put("X-Custom", "value");
+
+		assertEquals("text/plain", headers.get("content-type"));
+		assertEquals("text/plain", headers.get("CONTENT-TYPE"));
+		assertEquals("value", headers.get("x-CUSTOM"));
+		assertTrue(headers.containsKey("X-CUSTOM"));
+		assertNull(headers.get("Accept"));
+		assertNull(headers.get(null));
+
+		assertEquals("text/plain", headers.put("CONTENT-TYPE", "text/html"));
+		assertEquals(2, headers.size());
+		assertEquals("text/html", headers.get(HttpHeaders.CONTENT_TYPE));
+
+		for (Map.Entry<String, String> entry : headers.entrySet())
+		{
+			assertEquals(entry.getKey().toLowerCase(), entry.getKey());
+		}
+		assertSame(HttpHeaders.CONTENT_TYPE, headers.keySet().iterator().next());
+	}
+
+	@Test
+	public void testMultipleValues()
+	{
+		HttpHeaders headers = new HttpHeaders();
+		headers.add("Set-Cookie", "a=1");
+		headers.put("Connection", "close");
+		headers.add("set-cookie", "b=2");
+
+		assertEquals("a=1", headers.get("Set-Cookie"));
+		assertEquals(Arrays.asList("a=1", "b=2"), headers.getAll("SET-COOKIE"));
+		assertEquals(2, headers.size());
+
+		List<String> lines = new ArrayList<>();
+		headers.forEachValue((name, value) -> lines.add(name + ": " + value));
+		assertEquals(Arrays.asList("set-cookie: a=1", "connection: close", "set-cookie: b=2"), lines);
+
+		headers.put("Set-Cookie", "c=3");
+		assertEquals(Arrays.asList("c=3"), headers.getAll("Set-Cookie"));
+
+		assertEquals("c=3", headers.remove("SET-COOKIE"));
+		assertFalse(headers.containsKey("Set-Cookie"));
+		assertTrue(headers.getAll("Set-Cookie").isEmpty());
+		assertEquals("close", headers.get("Connection"));
+	}
+
+	@Test
+	public void testGrowth()
+	{
+		HttpHeaders headers = new HttpHeaders();
+		for (int i = 0; i < 100; i++)
+		{
+			headers.put("Header-" + i, Integer.toString(i));
+		}
+		assertEquals(100, headers.size());
+		for (int i = 0; i < 100; i++)
+		{
+			assertEquals(Integer.toString(i), headers.get("HEADER-" + i));
+		}
+
+		headers.keySet().removeIf(name -> name.endsWith("0"));
+		assertEquals(90, headers.size());
+		assertNull(headers.get("Header-10"));
+		assertEquals("11", headers.get("Header-11"));
+
+		headers.clear();
+		assertTrue(headers.isEmpty());
+	}
+
+	@Test
+	public void testToName()
+	{
+		byte[] bytes = "xContent-Lengthx".getBytes(StandardCharsets.ISO_8859_1);
+		assertSame(HttpHeaders.CONTENT_LENGTH, HttpHeaders.toName(bytes, 1, 14));
+		assertEquals("x-custom", HttpHeaders.toName("X-Custom".getBytes(StandardCharsets.ISO_8859_1), 0, 8));
+	}
+
+	@Test
+	public void testDate()
+	{
+		assertEquals("Sun, 06 Nov 1994 08:49:37 GMT", HttpHeaders.formatDate(784111777000l));
+		assertEquals(784111777000l, HttpHeaders.parseDate("Sun, 06 Nov 1994 08:49:37 GMT"));
+		assertEquals(784111777000l, HttpHeaders.parseDate(" Sun, 6 Nov 1994 08:49:37 GMT"));
+		assertEquals(-1l, HttpHeaders.parseDate("yesterday"));
+	}
+}
@@ -0,0 +1,135 @@
+package cz.tvrzna.pointy.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import cz.tvrzna.pointy.exceptions.BadRequestException;
+import cz.tvrzna.pointy.exceptions.PayloadTooLargeException;
+
+public class HttpMultipartTest
+{
+	private static final String BOUNDARY = "----pointyBoundary";
+
+	@Test
+	public void testMultipart() throws IOException
+	{
+		byte[] file = new byte[100000];
+		new Random(1).nextBytes(file);
+
+		ByteArrayOutputStream body = new ByteArrayOutputStream();
+		body.write(("preamble\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"field\"\r\n\r\nvalue\r\n--\r\n" + BOUNDARY + "\r\n").getBytes(StandardCharsets.UTF_8));
+		body.write(("--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\nContent-Type: application/octet-stream\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+		body.write(file);
+		body.write(("\r\n--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"skipped\"\r\n\r\nskipped content").getBytes(StandardCharsets.UTF_8));
+		body.write(("\r\n--" + BOUNDARY + "--\r\nepilogue").getBytes(StandardCharsets.UTF_8));
+
+		String request = "POST /upload HTTP/1.1\r\nContent-Type: multipart/form-data; boundary=\"" + BOUNDARY + "\"\r\nContent-Length: " + body.size() + "\r\n\r\n";
+		ByteArrayOutputStream data = new ByteArrayOutputStream();
+		data.write(request.getBytes(StandardCharsets.UTF_8));
+		data.write(body.toByteArray());
+
+		HttpRequest httpRequest = new HttpRequest(new SlowInputStream(new ByteArrayInputStream(data.toByteArray())), "127.0.0.1");
+		HttpMultipart multipart = httpRequest.getMultipart();
+
+		HttpPart field = multipart.next();
+		assertEquals("field", field.getName());
+		assertNull(field.getFileName());
+		assertEquals("value\r\n--\r\n" + BOUNDARY, new String(readAll(field.getInputStream()), StandardCharsets.UTF_8));
+
+		HttpPart filePart = multipart.next();
+		assertEquals("file", filePart.getName());
+		assertEquals("data.bin", filePart.getFileName());
+		assertEquals("application/octet-stream", filePart.getContentType());
+		assertArrayEquals(file, readAll(filePart.getInputStream()));
+
+		assertEquals("skipped", multipart.next().getName());
+		assertNull(multipart.next());
+		assertNull(multipart.next());
+	}
+
+	@Test
+	public void testLimits() throws IOException
+	{
+		String body = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\n0123456789\r\n--" + BOUNDARY + "--\r\n";
+
+		HttpMultipart partLimit = new HttpMultipart(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), BOUNDARY, 5, -1);
+		HttpPart part = partLimit.next();
+		assertThrows(PayloadTooLargeException.class, () -> readAll(part.getInputStream()));
+
+		HttpMultipart totalLimit = new HttpMultipart(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), BOUNDARY, -1, 20);
+		assertThrows(PayloadTooLargeException.class, () -> totalLimit.next());
+
+		HttpMultipart unfinished = new HttpMultipart(new ByteArrayInputStream(body.substring(0, 70).getBytes(StandardCharsets.UTF_8)), BOUNDARY);
+		HttpPart unfinishedPart = unfinished.next();
+		assertThrows(BadRequestException.class, () -> readAll(unfinishedPart.getInputStream()));
+	}
+
+	@Test
+	public void testLongHeader()
+	{
+		assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+			StringBuilder value = new StringBuilder();
+			for (int i = 0; i < 9000; i++)
+			{
+				value.append('a');
+			}
+			for (int length : new int[] { 8180, 8190, 9000 })
+			{
+				String body = "--" + BOUNDARY + "\r\nX-Long: " + value.substring(0, length - 8) + "\r\n\r\ncontent\r\n--" + BOUNDARY + "--\r\n";
+				HttpMultipart multipart = new HttpMultipart(new ByteArrayInputStream(body.getBytes(StandardCharsets.UTF_8)), BOUNDARY);
+				if (length < 8192)
+				{
+					assertEquals(length - 8, multipart.next().getHttpHeaders().get("X-Long").length());
+				}
+				else
+				{
+					assertThrows(BadRequestException.class, () -> multipart.next());
+				}
+			}
+
+			String unterminated = "--" + BOUNDARY + "\r\nX-Long: " + value;
+			HttpMultipart multipart = new HttpMultipart(new ByteArrayInputStream(unterminated.getBytes(StandardCharsets.UTF_8)), BOUNDARY);
+			assertThrows(BadRequestException.class, () -> multipart.next());
+		});
+	}
+
+	private byte[] readAll(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1000];
+		int read;
+		while ((read = is.read(buffer)) >= 0)
+		{
+			baos.write(buffer, 0, read);
+		}
+		return baos.toByteArray();
+	}
+
+	private static class SlowInputStream extends FilterInputStream
+	{
+		private SlowInputStream(InputStream in)
+		{
+			super(in);
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException
+		{
+			return super.read(b, off, Math.min(len, 7));
+		}
+	}
+}
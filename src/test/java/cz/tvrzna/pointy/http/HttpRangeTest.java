@@ -0,0 +1,45 @@
+package cz.tvrzna.pointy.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class HttpRangeTest
+{
+	@Test
+	public void testParse()
+	{
+		List<HttpRange> ranges = HttpRange.parse("bytes=0-99", 1000);
+		assertEquals(1, ranges.size());
+		assertEquals(0, ranges.get(0).getStart());
+		assertEquals(99, ranges.get(0).getEnd());
+		assertEquals(100, ranges.get(0).getLength());
+		assertEquals("bytes 0-99/1000", ranges.get(0).toContentRange(1000));
+
+		assertEquals("bytes 900-999/1000", HttpRange.parse("bytes=900-", 1000).get(0).toContentRange(1000));
+		assertEquals("bytes 500-999/1000", HttpRange.parse("bytes=-500", 1000).get(0).toContentRange(1000));
+		assertEquals("bytes 0-999/1000", HttpRange.parse("bytes=-5000", 1000).get(0).toContentRange(1000));
+		assertEquals("bytes 990-999/1000", HttpRange.parse("bytes=990-2000", 1000).get(0).toContentRange(1000));
+
+		ranges = HttpRange.parse("bytes=500-599, 0-9, 10-19, 550-650", 1000);
+		assertEquals(2, ranges.size());
+		assertEquals("bytes 0-19/1000", ranges.get(0).toContentRange(1000));
+		assertEquals("bytes 500-650/1000", ranges.get(1).toContentRange(1000));
+	}
+
+	@Test
+	public void testInvalid()
+	{
+		assertTrue(HttpRange.parse("bytes=1000-", 1000).isEmpty());
+		assertTrue(HttpRange.parse("bytes=-0", 1000).isEmpty());
+		assertNull(HttpRange.parse(null, 1000));
+		assertNull(HttpRange.parse("items=0-1", 1000));
+		assertNull(HttpRange.parse("bytes=abc", 1000));
+		assertNull(HttpRange.parse("bytes=5-1", 1000));
+		assertNull(HttpRange.parse("bytes=0-1,2-3,4-5,6-7,8-9,10-11,12-13,14-15,16-17,18-19,20-21,22-23,24-25,26-27,28-29,30-31,32-33", 1000));
+	}
+}
@@ -0,0 +1,193 @@
+package cz.tvrzna.pointy.http;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+import cz.tvrzna.pointy.exceptions.BadRequestException;
+import cz.tvrzna.pointy.exceptions.PayloadTooLargeException;
+
+public class HttpRequestParserTest
+{
+	private static final String HTTP_REQUEST = "POST /test?a=1 HTTP/1.1\r\nHost: localhost\r\nContent-Length: 5\r\nX-Test:  value \r\n\r\nhello";
+
+	@Test
+	public void testParse()
+	{
+		byte[] data = (HTTP_REQUEST + "GET /next HTTP/1.1\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+		HttpRequestParser parser = new HttpRequestParser();
+		int consumed = parser.parse(data, 0, data.length);
+
+		assertTrue(parser.isComplete());
+		assertEquals(HTTP_REQUEST.length(), consumed);
+		assertSame("POST", parser.getMethod());
+		assertSame("HTTP/1.1", parser.getProtocol());
+		assertEquals("/test", parser.getUri());
+		assertEquals("a=1", parser.getQuery());
+		assertEquals("localhost", parser.getHeaders().get("host"));
+		assertEquals("value", parser.getHeaders().get("X-Test"));
+		assertEquals(5, parser.getContentLength());
+		assertEquals("hello", new String(parser.getBody(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testParseByteByByte()
+	{
+		byte[] data = HTTP_REQUEST.getBytes(StandardCharsets.UTF_8);
+		HttpRequestParser parser = new HttpRequestParser();
+		for (int i = 0; i < data.length; i++)
+		{
+			assertFalse(parser.isComplete());
+			assertEquals(1, parser.parse(ByteBuffer.wrap(data, i, 1)));
+		}
+
+		assertTrue(parser.isComplete());
+		assertEquals("/test", parser.getUri());
+		assertEquals("hello", new String(parser.getBody(), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testParseHeadOnly()
+	{
+		byte[] data = "\r\nGET / HTTP/1.0\nConnection: keep-alive\n\nrest".getBytes(StandardCharsets.UTF_8);
+		HttpRequestParser parser = new HttpRequestParser();
+		int consumed = parser.parse(data, 0, data.length);
+
+		assertTrue(parser.isComplete());
+		assertEquals(data.length - 4, consumed);
+		assertEquals("GET", parser.getMethod());
+		assertEquals("/", parser.getUri());
+		assertNull(parser.getQuery());
+		assertEquals("keep-alive", parser.getHeaders().get("connection"));
+		assertEquals(-1, parser.getContentLength());
+		assertEquals(0, parser.getBody().length);
+	}
+
+	@Test
+	public void testParseInputStream() throws IOException
+	{
+		InputStream is = new ByteArrayInputStream((HTTP_REQUEST + "GET /next HTTP/1.1\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+		HttpRequestParser parser = new HttpRequestParser();
+		parser.parse(is);
+		assertEquals("hello", new String(parser.getBody(), StandardCharsets.UTF_8));
+
+		HttpRequestParser next = new HttpRequestParser();
+		next.parse(is);
+		assertEquals("/next", next.getUri());
+	}
+
+	@Test
+	public void testParseUnframedBody() throws IOException
+	{
+		InputStream is = new ByteArrayInputStream("POST /unframed HTTP/1.1\r\n\r\nGET /next HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.UTF_8));
+		HttpRequestParser parser = new HttpRequestParser();
+		parser.parse(is);
+		assertTrue(parser.isComplete());
+		assertEquals(0, parser.getBody().length);
+
+		HttpRequestParser next = new HttpRequestParser();
+		next.parse(is);
+		assertEquals("/next", next.getUri());
+	}
+
+	@Test
+	public void testParseUnfinishedHead() throws IOException
+	{
+		HttpRequestParser parser = new HttpRequestParser();
+		parser.parse(new ByteArrayInputStream("GET /unfinished HTTP/1.1".getBytes(StandardCharsets.UTF_8)));
+
+		assertTrue(parser.isComplete());
+		assertEquals("/unfinished", parser.getUri());
+	}
+
+	@Test
+	public void testParseChunked() throws IOException
+	{
+		String request = "POST /upload HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" + "5\r\nhello\r\nA;name=value\r\n, chunked!\r\n0\r\nTrailer: ignored\r\n\r\n";
+		byte[] data = (request + "GET /next HTTP/1.1\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+
+		HttpRequestParser parser = new HttpRequestParser();
+		for (int i = 0; i < request.length(); i += 3)
+		{
+			parser.parse(data, i, Math.min(3, request.length() - i));
+		}
+		assertTrue(parser.isComplete());
+		assertTrue(parser.isChunked());
+		assertEquals(-1, parser.getContentLength());
+		assertEquals("hello, chunked!", new String(parser.getBody(), StandardCharsets.UTF_8));
+
+		InputStream is = new ByteArrayInputStream(data);
+		HttpRequestParser streamParser = new HttpRequestParser();
+		streamParser.parse(is);
+		assertEquals("hello, chunked!", new String(streamParser.getBody(), StandardCharsets.UTF_8));
+		HttpRequestParser next = new HttpRequestParser();
+		next.parse(is);
+		assertEquals("/next", next.getUri());
+	}
+
+	@Test
+	public void testMaxBodySize()
+	{
+		byte[] fixed = "POST / HTTP/1.1\r\nContent-Length: 11\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		assertThrows(PayloadTooLargeException.class, () -> new HttpRequestParser(10).parse(fixed, 0, fixed.length));
+
+		byte[] chunked = "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n6\r\nabcdef\r\n5\r\n".getBytes(StandardCharsets.UTF_8);
+		assertThrows(PayloadTooLargeException.class, () -> new HttpRequestParser(10).parse(chunked, 0, chunked.length));
+
+		byte[] exact = "POST / HTTP/1.1\r\nContent-Length: 10\r\n\r\n0123456789".getBytes(StandardCharsets.UTF_8);
+		HttpRequestParser parser = new HttpRequestParser(10);
+		parser.parse(exact, 0, exact.length);
+		assertTrue(parser.isComplete());
+	}
+
+	@Test
+	public void testInvalidRequest()
+	{
+		byte[] invalidLine = "GET\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		assertThrows(BadRequestException.class, () -> new HttpRequestParser().parse(invalidLine, 0, invalidLine.length));
+
+		byte[] invalidLength = "POST / HTTP/1.1\r\nContent-Length: -1\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		assertThrows(BadRequestException.class, () -> new HttpRequestParser().parse(invalidLength, 0, invalidLength.length));
+
+		byte[] conflictingLength = "POST / HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 6\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		assertThrows(BadRequestException.class, () -> new HttpRequestParser().parse(conflictingLength, 0, conflictingLength.length));
+
+		byte[] repeatedLength = "POST / HTTP/1.1\r\nContent-Length: 5\r\nContent-Length: 5\r\n\r\nhello".getBytes(StandardCharsets.UTF_8);
+		HttpRequestParser parser = new HttpRequestParser();
+		parser.parse(repeatedLength, 0, repeatedLength.length);
+		assertTrue(parser.isComplete());
+
+		byte[] invalidChunk = "POST / HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\nxyz\r\n".getBytes(StandardCharsets.UTF_8);
+		assertThrows(BadRequestException.class, () -> new HttpRequestParser().parse(invalidChunk, 0, invalidChunk.length));
+	}
+
+	@Test
+	public void testInvalidTransferEncoding()
+	{
+		String[] headers = { "Transfer-Encoding: chunked\r\nContent-Length: 5\r\n", "Transfer-Encoding: chunked\r\nTransfer-Encoding: identity\r\n",
+				"Transfer-Encoding: xchunked\r\n", "Transfer-Encoding: chunked, gzip\r\n", "Transfer-Encoding: gzip, chunked\r\n", "Transfer-Encoding: gzip\r\n",
+				"Transfer-Encoding: chunked, chunked\r\n", "Transfer-Encoding: \r\n" };
+		for (String header : headers)
+		{
+			byte[] request = ("POST / HTTP/1.1\r\n" + header + "\r\n0\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+			assertThrows(BadRequestException.class, () -> new HttpRequestParser().parse(request, 0, request.length), header);
+		}
+
+		byte[] request = "POST / HTTP/1.1\r\nTransfer-Encoding: Chunked\r\n\r\n0\r\n\r\n".getBytes(StandardCharsets.UTF_8);
+		HttpRequestParser parser = new HttpRequestParser();
+		parser.parse(request, 0, request.length);
+		assertTrue(parser.isComplete());
+		assertTrue(parser.isChunked());
+	}
+}
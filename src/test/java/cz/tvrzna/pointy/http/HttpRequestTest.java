@@ -5,6 +5,7 @@ import static org.junit.jupiter.api.Assertions.assertNull;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.Socket;
 import java.net.SocketAddress;
 
@@ -27,7 +28,7 @@ public class HttpRequestTest
 
 	private static final String HTTP_REQUEST = HTTP_METHOD + " " + HTTP_URI + "?test=abc&test=def HTTP/1.1\n" + "Host: localhost:1400\n" + "Content-Type: application/json\n" +
 			"Accept: application/json\n" + "client: q4Z9AoVuPXm8oUtGrJ\n" + "user: __#int_dx_user#__\n" + HTTP_HEADER_NAME + ": " + HTTP_HEADER_VALUE + "\n" +
-			"Cache-Control: no-cache\n" + "\n" + HTTP_BODY;
+			"Cache-Control: no-cache\n" + "Content-Length: " + HTTP_BODY.length() + "\n" + "\n" + HTTP_BODY;
 
 	@Mock
 	private Socket socket;
@@ -109,8 +110,8 @@ public class HttpRequestTest
 	@Test
 	public void testPostFormData() throws IOException
 	{
-		final String httpRequest = "POST / HTTP/1.1\n" + "Host: localhost:1400\n" + "Origin: http://localhost:8080\n" + "Content-Type: application/x-www-form-urlencoded\n" + "\n" +
-				"area=something+useful&data=something+less+useful";
+		final String httpRequest = "POST / HTTP/1.1\n" + "Host: localhost:1400\n" + "Origin: http://localhost:8080\n" + "Content-Type: application/x-www-form-urlencoded\n" +
+				"Content-Length: 48\n" + "\n" + "area=something+useful&data=something+less+useful";
 
 		ByteArrayInputStream bais = new ByteArrayInputStream(httpRequest.getBytes());
 		Mockito.when(socket.getInputStream()).thenReturn(bais);
@@ -123,4 +124,52 @@ public class HttpRequestTest
 		assertNull(request.getParameter("area"));
 		assertNull(request.getParameter("data"));
 	}
+
+	@Test
+	public void testPipelinedRequests() throws IOException
+	{
+		final String httpRequest = "POST /first HTTP/1.1\r\n" + "Content-Length: 5\r\n" + "\r\n" + "first" + "GET /second?a=b HTTP/1.1\r\n" + "Host: localhost\r\n" + "\r\n"
+				+ "POST /third HTTP/1.1\r\n" + "Content-Length: 5\r\n" + "\r\n" + "third";
+
+		ByteArrayInputStream bais = new ByteArrayInputStream(httpRequest.getBytes());
+
+		HttpRequest first = new HttpRequest(bais, HTTP_CLIENT_IP);
+		assertEquals("/first", first.getUri());
+		assertEquals("first", first.getBody());
+
+		HttpRequest second = new HttpRequest(bais, HTTP_CLIENT_IP);
+		assertEquals("/second", second.getUri());
+		assertEquals("b", second.getParameter("a").getValue().get(0));
+		assertEquals("", second.getBody());
+
+		HttpRequest third = new HttpRequest(bais, HTTP_CLIENT_IP);
+		assertEquals("/third", third.getUri());
+		assertEquals("third", third.getBody());
+		assertEquals(0, bais.available());
+	}
+
+	@Test
+	public void testBodyInputStream() throws IOException
+	{
+		final String httpRequest = "POST /upload HTTP/1.1\r\n" + "Transfer-Encoding: chunked\r\n" + "\r\n" + "5\r\nfirst\r\n6\r\nsecond\r\n0\r\n\r\n" + "POST /ignored HTTP/1.1\r\n"
+				+ "Content-Length: 7\r\n" + "\r\n" + "ignored" + "GET /last HTTP/1.1\r\n" + "\r\n";
+
+		ByteArrayInputStream bais = new ByteArrayInputStream(httpRequest.getBytes());
+
+		HttpRequest upload = new HttpRequest(bais, HTTP_CLIENT_IP);
+		InputStream is = upload.getBodyInputStream();
+		byte[] buffer = new byte[3];
+		assertEquals(3, is.read(buffer));
+		assertEquals("fir", new String(buffer));
+		assertEquals("stsecond", upload.getBody());
+		assertEquals(-1, is.read());
+
+		HttpRequest ignored = new HttpRequest(bais, HTTP_CLIENT_IP);
+		assertEquals("/ignored", ignored.getUri());
+		ignored.getBodyInputStream().close();
+
+		HttpRequest last = new HttpRequest(bais, HTTP_CLIENT_IP);
+		assertEquals("/last", last.getUri());
+		assertEquals(0, bais.available());
+	}
 }
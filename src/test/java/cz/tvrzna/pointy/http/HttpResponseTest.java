@@ -1,7 +1,10 @@
 package cz.tvrzna.pointy.http;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 import java.io.ByteArrayInputStream;
@@ -9,6 +12,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
 
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -47,6 +59,261 @@ public class HttpResponseTest
 		assertEquals(true, response.isClosed());
 	}
 
+	@Test
+	public void testStream() throws IOException
+	{
+		byte[] content = new byte[20000];
+		for (int i = 0; i < content.length; i++)
+		{
+			content[i] = (byte) ('a' + i % 26);
+		}
+
+		List<Integer> writes = new ArrayList<>();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream()
+		{
+			@Override
+			public synchronized void write(byte[] b, int off, int len)
+			{
+				writes.add(len);
+				super.write(b, off, len);
+			}
+		};
+		HttpResponse response = new HttpResponse(baos);
+		response.setKeepAlive(true);
+		OutputStream os = response.stream();
+		writes.clear();
+		assertTrue(response.isCommitted());
+		assertFalse(response.isClosed());
+		String head = new String(baos.toByteArray(), StandardCharsets.US_ASCII);
+		assertTrue(head.contains("transfer-encoding: chunked\r\n"));
+		assertFalse(head.contains("content-length"));
+
+		os.write(content, 0, 100);
+		os.write(content, 100, 10000);
+		os.write(content[10100]);
+		os.write(content, 10101, content.length - 10101);
+		os.close();
+		assertTrue(response.isClosed());
+		assertEquals(Arrays.asList(8192 + 8, 8192 + 8, 3616 + 12), writes);
+
+		byte[] bytes = baos.toByteArray();
+		String body = new String(bytes, StandardCharsets.US_ASCII).substring(head.length());
+		assertTrue(body.endsWith("\r\n0\r\n\r\n"));
+		assertEquals(new String(content, StandardCharsets.US_ASCII), decodeChunks(body));
+
+		baos = new ByteArrayOutputStream();
+		response = new HttpResponse(baos);
+		response.setAllowedGzip(true);
+		os = response.stream();
+		os.write(content);
+		os.close();
+		String gzip = new String(baos.toByteArray(), StandardCharsets.ISO_8859_1);
+		assertTrue(gzip.contains("content-encoding: gzip\r\n"));
+		byte[] compressed = decodeChunks(gzip.substring(gzip.indexOf("\r\n\r\n") + 4)).getBytes(StandardCharsets.ISO_8859_1);
+		ByteArrayOutputStream decompressed = new ByteArrayOutputStream();
+		try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed)))
+		{
+			byte[] buffer = new byte[1024];
+			int read;
+			while ((read = is.read(buffer)) > 0)
+			{
+				decompressed.write(buffer, 0, read);
+			}
+		}
+		assertTrue(Arrays.equals(content, decompressed.toByteArray()));
+	}
+
+	private String decodeChunks(String body)
+	{
+		StringBuilder sb = new StringBuilder();
+		int index = 0;
+		while (true)
+		{
+			int lineEnd = body.indexOf("\r\n", index);
+			int size = Integer.parseInt(body.substring(index, lineEnd), 16);
+			if (size == 0)
+			{
+				return sb.toString();
+			}
+			sb.append(body, lineEnd + 2, lineEnd + 2 + size);
+			index = lineEnd + 2 + size + 2;
+		}
+	}
+
+	@Test
+	public void testHead() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpResponse response = new HttpResponse(baos);
+		response.setStatus(HttpStatus.NOT_FOUND_404);
+		response.getHttpHeaders().add("Set-Cookie", "a=1");
+		response.getHttpHeaders().add("Set-Cookie", "b=2");
+		response.send("missing");
+
+		String[] lines = baos.toString().split("\r\n");
+		assertEquals("HTTP/1.1 404 Not Found", lines[0]);
+		assertTrue(lines[1].matches("date: [A-Z][a-z]{2}, [0-9]{2} [A-Z][a-z]{2} [0-9]{4} [0-9]{2}:[0-9]{2}:[0-9]{2} GMT"));
+		assertTrue(baos.toString().contains("set-cookie: a=1\r\nset-cookie: b=2\r\n"));
+
+		baos = new ByteArrayOutputStream();
+		response = new HttpResponse(baos);
+		response.setStatus(299);
+		response.getHttpHeaders().put("Date", "custom");
+		response.send("");
+		assertTrue(baos.toString().startsWith("HTTP/1.1 299 \r\n"));
+		assertTrue(baos.toString().contains("date: custom\r\n"));
+	}
+
+	@Test
+	public void testContentLength() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpResponse response = new HttpResponse(baos);
+		response.send("Příliš");
+		assertTrue(baos.toString("UTF-8").contains("content-length: 9\r\n"));
+		assertTrue(baos.toString("UTF-8").endsWith("Příliš"));
+
+		baos = new ByteArrayOutputStream();
+		response = new HttpResponse(baos);
+		response.setContentType("text/plain; charset=ISO-8859-1");
+		response.send("áé");
+		assertTrue(baos.toString("ISO-8859-1").contains("content-length: 2\r\n"));
+		assertTrue(baos.toString("ISO-8859-1").endsWith("áé"));
+	}
+
+	@Test
+	public void testGatheringOutput() throws IOException
+	{
+		List<ByteBuffer> written = new ArrayList<>();
+		class GatheringOutputStream extends ByteArrayOutputStream implements HttpGatheringOutput
+		{
+			@Override
+			public void write(ByteBuffer... buffers)
+			{
+				written.addAll(Arrays.asList(buffers));
+			}
+		}
+
+		HttpResponse response = new HttpResponse(new GatheringOutputStream());
+		response.send("body");
+		assertEquals(2, written.size());
+		assertTrue(StandardCharsets.US_ASCII.decode(written.get(0)).toString().startsWith("HTTP/1.1 200 OK\r\n"));
+		assertEquals("body", StandardCharsets.US_ASCII.decode(written.get(1)).toString());
+	}
+
+	@Test
+	public void testSendFile() throws IOException
+	{
+		Path file = Files.createTempFile("pointy", ".txt");
+		try
+		{
+			Files.write(file, "file content".getBytes(StandardCharsets.US_ASCII));
+
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			HttpResponse response = new HttpResponse(baos);
+			response.send(file);
+			assertTrue(response.isClosed());
+			assertTrue(baos.toString().contains("content-length: 12\r\n"));
+			assertTrue(baos.toString().endsWith("\r\n\r\nfile content"));
+
+			baos = new ByteArrayOutputStream();
+			response = new HttpResponse(baos);
+			response.send(FileChannel.open(file), 5, 7);
+			assertTrue(baos.toString().endsWith("\r\n\r\ncontent"));
+
+			baos = new ByteArrayOutputStream();
+			response = new HttpResponse(baos);
+			response.setAllowedGzip(true);
+			response.send(FileChannel.open(file), 5, 7);
+			assertTrue(response.isClosed());
+			String gzip = new String(baos.toByteArray(), StandardCharsets.ISO_8859_1);
+			assertTrue(gzip.contains("transfer-encoding: chunked\r\n"));
+			assertFalse(gzip.contains("content-length"));
+			byte[] compressed = decodeChunks(gzip.substring(gzip.indexOf("\r\n\r\n") + 4)).getBytes(StandardCharsets.ISO_8859_1);
+			try (InputStream is = new GZIPInputStream(new ByteArrayInputStream(compressed)))
+			{
+				byte[] buffer = new byte[64];
+				assertEquals(7, is.read(buffer));
+				assertEquals("content", new String(buffer, 0, 7, StandardCharsets.US_ASCII));
+			}
+
+			List<FileChannel> channels = new ArrayList<>();
+			List<Boolean> closes = new ArrayList<>();
+			class TransferOutputStream extends ByteArrayOutputStream implements HttpTransferOutput
+			{
+				@Override
+				public void write(ByteBuffer... buffers)
+				{
+					for (ByteBuffer buffer : buffers)
+					{
+						write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+					}
+				}
+
+				@Override
+				public void transferFrom(FileChannel channel, long position, long count, boolean close) throws IOException
+				{
+					ByteBuffer buffer = ByteBuffer.allocate((int) count);
+					channel.read(buffer, position);
+					write(buffer.array(), 0, buffer.position());
+					channels.add(channel);
+					closes.add(close);
+					if (close)
+					{
+						channel.close();
+					}
+				}
+			}
+
+			TransferOutputStream tos = new TransferOutputStream();
+			response = new HttpResponse(tos);
+			response.send(file, 12, HttpRange.parse("bytes=0-3,5-11", 12));
+			assertTrue(response.isClosed());
+			assertEquals(2, channels.size());
+			assertSame(channels.get(0), channels.get(1));
+			assertEquals(Arrays.asList(false, true), closes);
+			assertFalse(channels.get(0).isOpen());
+			assertTrue(tos.toString().contains("Content-Range: bytes 0-3/12\r\n\r\nfile"));
+			assertTrue(tos.toString().contains("Content-Range: bytes 5-11/12\r\n\r\ncontent"));
+		}
+		finally
+		{
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testHeadOnly() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpResponse response = new HttpResponse(baos);
+		response.setHeadOnly(true);
+		response.setAllowedGzip(true);
+		response.send("body");
+		assertTrue(response.isClosed());
+		assertTrue(baos.toString().contains("content-encoding: gzip\r\n"));
+		assertTrue(baos.toString().matches("(?s).*content-length: [1-9][0-9]*\r\n.*"));
+		assertTrue(baos.toString().endsWith("\r\n\r\n"));
+
+		baos = new ByteArrayOutputStream();
+		response = new HttpResponse(baos);
+		response.setHeadOnly(true);
+		response.send("0123456789".getBytes(StandardCharsets.US_ASCII), HttpRange.parse("bytes=0-1,5-6", 10));
+		assertTrue(baos.toString().contains("content-type: multipart/byteranges; boundary="));
+		assertTrue(baos.toString().endsWith("\r\n\r\n"));
+
+		baos = new ByteArrayOutputStream();
+		response = new HttpResponse(baos);
+		response.setHeadOnly(true);
+		response.setAllowedGzip(true);
+		OutputStream os = response.stream();
+		os.write(new byte[20000]);
+		os.close();
+		assertTrue(response.isClosed());
+		assertTrue(baos.toString().contains("transfer-encoding: chunked\r\n"));
+		assertTrue(baos.toString().endsWith("\r\n\r\n"));
+	}
+
 	@Test
 	public void testSendString() throws IOException
 	{
@@ -152,6 +419,43 @@ public class HttpResponseTest
 		assertEquals(message, body.toString());
 	}
 
+	@Test
+	public void testSendLargeInputStream() throws IOException
+	{
+		byte[] content = new byte[100000];
+		for (int i = 0; i < content.length; i++)
+		{
+			content[i] = (byte) ('a' + i % 26);
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpResponse response = new HttpResponse(baos);
+		response.send(new ByteArrayInputStream(content)
+		{
+			@Override
+			public synchronized int available()
+			{
+				return 0;
+			}
+		});
+		assertTrue(response.isClosed());
+		String strResponse = baos.toString();
+		assertTrue(strResponse.contains("transfer-encoding: chunked\r\n"));
+		assertFalse(strResponse.contains("content-length"));
+		assertEquals(new String(content, StandardCharsets.US_ASCII), decodeChunks(strResponse.substring(strResponse.indexOf("\r\n\r\n") + 4)));
+
+		HttpResponse failing = new HttpResponse(new ByteArrayOutputStream());
+		assertThrows(IOException.class, () -> failing.send(new InputStream()
+		{
+			@Override
+			public int read() throws IOException
+			{
+				throw new IOException("Broken stream");
+			}
+		}));
+		assertFalse(failing.isClosed());
+	}
+
 	@Test
 	public void testSendNullInputStream() throws IOException
 	{
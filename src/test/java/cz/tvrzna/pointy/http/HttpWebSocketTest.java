@@ -0,0 +1,201 @@
+package cz.tvrzna.pointy.http;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class HttpWebSocketTest
+{
+	private static final String HANDSHAKE = "GET /ws HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: keep-alive, Upgrade\r\n"
+			+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\n";
+
+	@Test
+	public void testAcceptKey()
+	{
+		assertEquals("s3pPLMBiTxaQ9kYGzzhZRbK+xOo=", HttpWebSocket.createAcceptKey("dGhlIHNhbXBsZSBub25jZQ=="));
+	}
+
+	@Test
+	public void testUpgrade() throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpResponse response = new HttpResponse(baos);
+		HttpWebSocket webSocket = response.upgrade(createRequest(HANDSHAKE + "Sec-WebSocket-Version: 13\r\n\r\n"), (ws, message) -> {
+		});
+		assertNotNull(webSocket);
+		assertTrue(webSocket.isOpen());
+		assertTrue(response.isCommitted());
+		assertFalse(response.isKeepAlive());
+
+		String head = baos.toString();
+		assertTrue(head.startsWith("HTTP/1.1 101 Switching Protocols\r\n"));
+		assertTrue(head.contains("upgrade: websocket\r\n"));
+		assertTrue(head.contains("connection: Upgrade\r\n"));
+		assertTrue(head.contains("sec-websocket-accept: s3pPLMBiTxaQ9kYGzzhZRbK+xOo=\r\n"));
+		assertFalse(head.contains("content-length"));
+
+		baos = new ByteArrayOutputStream();
+		response = new HttpResponse(baos);
+		assertNull(response.upgrade(createRequest(HANDSHAKE + "Sec-WebSocket-Version: 8\r\n\r\n"), (ws, message) -> {
+		}));
+		assertTrue(baos.toString().startsWith("HTTP/1.1 426 Upgrade Required\r\n"));
+		assertTrue(baos.toString().contains("sec-websocket-version: 13\r\n"));
+
+		baos = new ByteArrayOutputStream();
+		response = new HttpResponse(baos);
+		assertNull(response.upgrade(createRequest("GET /ws HTTP/1.1\r\nHost: localhost\r\n\r\n"), (ws, message) -> {
+		}));
+		assertTrue(baos.toString().startsWith("HTTP/1.1 400 Bad Request\r\n"));
+	}
+
+	@Test
+	public void testMessages() throws IOException
+	{
+		List<String> events = new ArrayList<>();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpWebSocket webSocket = upgrade(baos, new HttpWebSocketHandler()
+		{
+			@Override
+			public void onText(HttpWebSocket webSocket, String message)
+			{
+				events.add("text:" + message);
+				webSocket.send(message.toUpperCase());
+			}
+
+			@Override
+			public void onBinary(HttpWebSocket webSocket, byte[] message)
+			{
+				events.add("binary:" + message.length);
+			}
+
+			@Override
+			public void onClose(HttpWebSocket webSocket, int code, String reason)
+			{
+				events.add("close:" + code + ":" + reason);
+			}
+		});
+		int headLength = baos.size();
+
+		ByteArrayOutputStream input = new ByteArrayOutputStream();
+		input.write(frame(true, 0x1, "hello".getBytes(StandardCharsets.UTF_8)));
+		input.write(frame(false, 0x1, "wor".getBytes(StandardCharsets.UTF_8)));
+		input.write(frame(true, 0x9, "p".getBytes(StandardCharsets.UTF_8)));
+		input.write(frame(true, 0x0, "ld".getBytes(StandardCharsets.UTF_8)));
+		input.write(frame(true, 0x2, new byte[300]));
+		byte[] bytes = input.toByteArray();
+
+		webSocket.receive(ByteBuffer.wrap(bytes, 0, 3));
+		webSocket.receive(ByteBuffer.wrap(bytes, 3, bytes.length - 3));
+		assertEquals(3, events.size());
+		assertEquals("text:hello", events.get(0));
+		assertEquals("text:world", events.get(1));
+		assertEquals("binary:300", events.get(2));
+
+		byte[] output = baos.toByteArray();
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		expected.write(new byte[] { (byte) 0x81, 5 });
+		expected.write("HELLO".getBytes(StandardCharsets.UTF_8));
+		expected.write(new byte[] { (byte) 0x8A, 1, 'p' });
+		expected.write(new byte[] { (byte) 0x81, 5 });
+		expected.write("WORLD".getBytes(StandardCharsets.UTF_8));
+		assertArrayEquals(expected.toByteArray(), Arrays.copyOfRange(output, headLength, output.length));
+
+		webSocket.receive(ByteBuffer.wrap(frame(true, 0x8, new byte[] { 0x03, (byte) 0xE8, 'b', 'y', 'e' })));
+		assertTrue(webSocket.isClosed());
+		assertEquals("close:1000:bye", events.get(3));
+		output = baos.toByteArray();
+		assertEquals((byte) 0x88, output[output.length - 4]);
+		assertFalse(webSocket.send("late"));
+
+		webSocket.abort();
+		assertEquals(4, events.size());
+	}
+
+	@Test
+	public void testInvalidFrames() throws IOException
+	{
+		List<Integer> codes = new ArrayList<>();
+		HttpWebSocketHandler handler = new HttpWebSocketHandler()
+		{
+			@Override
+			public void onText(HttpWebSocket webSocket, String message)
+			{
+			}
+
+			@Override
+			public void onClose(HttpWebSocket webSocket, int code, String reason)
+			{
+				codes.add(code);
+			}
+		};
+
+		HttpWebSocket webSocket = upgrade(new ByteArrayOutputStream(), handler);
+		byte[] unmasked = { (byte) 0x81, 1, 'a' };
+		webSocket.receive(ByteBuffer.wrap(unmasked));
+		assertTrue(webSocket.isClosed());
+
+		webSocket = upgrade(new ByteArrayOutputStream(), handler);
+		webSocket.receive(ByteBuffer.wrap(frame(true, 0x1, new byte[] { (byte) 0xC3, 0x28 })));
+
+		webSocket = upgrade(new ByteArrayOutputStream(), handler);
+		webSocket.setMaxMessageSize(4);
+		webSocket.receive(ByteBuffer.wrap(frame(false, 0x1, "abc".getBytes(StandardCharsets.UTF_8))));
+		webSocket.receive(ByteBuffer.wrap(frame(true, 0x0, "de".getBytes(StandardCharsets.UTF_8))));
+
+		webSocket = upgrade(new ByteArrayOutputStream(), handler);
+		webSocket.read(new ByteArrayInputStream(new byte[0]));
+
+		assertEquals(4, codes.size());
+		assertEquals(HttpWebSocket.PROTOCOL_ERROR, codes.get(0).intValue());
+		assertEquals(HttpWebSocket.INVALID_PAYLOAD, codes.get(1).intValue());
+		assertEquals(HttpWebSocket.MESSAGE_TOO_BIG, codes.get(2).intValue());
+		assertEquals(HttpWebSocket.ABNORMAL_CLOSURE, codes.get(3).intValue());
+	}
+
+	private static HttpRequest createRequest(String raw) throws IOException
+	{
+		return new HttpRequest(new ByteArrayInputStream(raw.getBytes(StandardCharsets.US_ASCII)), "127.0.0.1");
+	}
+
+	private static HttpWebSocket upgrade(ByteArrayOutputStream baos, HttpWebSocketHandler handler) throws IOException
+	{
+		return new HttpResponse(baos).upgrade(createRequest(HANDSHAKE + "Sec-WebSocket-Version: 13\r\n\r\n"), handler);
+	}
+
+	private static byte[] frame(boolean fin, int opcode, byte[] payload)
+	{
+		byte[] mask = { 0x12, 0x34, 0x56, 0x78 };
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		baos.write((fin ? 0x80 : 0) | opcode);
+		if (payload.length < 126)
+		{
+			baos.write(0x80 | payload.length);
+		}
+		else
+		{
+			baos.write(0x80 | 126);
+			baos.write(payload.length >> 8);
+			baos.write(payload.length);
+		}
+		baos.write(mask, 0, mask.length);
+		for (int i = 0; i < payload.length; i++)
+		{
+			baos.write(payload[i] ^ mask[i & 3]);
+		}
+		return baos.toByteArray();
+	}
+}
@@ -0,0 +1,229 @@
+package cz.tvrzna.pointy.http.router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import org.junit.jupiter.api.Test;
+
+import cz.tvrzna.pointy.http.HttpContext;
+import cz.tvrzna.pointy.http.HttpRequest;
+import cz.tvrzna.pointy.http.HttpResponse;
+import cz.tvrzna.pointy.router.PointyEndpoint;
+import cz.tvrzna.pointy.router.PointyRoute;
+import cz.tvrzna.pointy.router.PointyRouteGroup;
+import cz.tvrzna.pointy.router.PointyRouteTable;
+
+public class PointyRouteTableTest
+{
+	private HttpContext createContext(String method, String uri, ByteArrayOutputStream baos) throws IOException
+	{
+		String request = method + " " + uri + " HTTP/1.1\r\n\r\n";
+		return new HttpContext(new HttpRequest(new ByteArrayInputStream(request.getBytes()), "127.0.0.1"), new HttpResponse(baos));
+	}
+
+	@Test
+	public void testCompile() throws IOException
+	{
+		PointyRouteGroup group = new PointyRouteGroup("/api/");
+		group.ANY(".*", ctx -> ctx.setHeader("X-Filter", "api"));
+		PointyRoute route = new PointyRoute("/users");
+		route.GET("/[0-9]+", ctx -> ctx.send("user " + ctx.getHeader("X-Filter")));
+		route.POST("", ctx -> ctx.send("created"));
+		group.addRoute(route);
+
+		PointyRouteTable table = PointyRouteTable.compile(group);
+		assertEquals(3, table.size());
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		HttpContext context = createContext("GET", "/api/users/12", baos);
+		table.handle(context);
+		assertTrue(context.getResponse().isClosed());
+		assertEquals("api", context.getResponse().getHttpHeaders().get("X-Filter"));
+
+		context = createContext("POST", "/api/users", new ByteArrayOutputStream());
+		table.handle(context);
+		assertTrue(context.getResponse().isClosed());
+
+		context = createContext("GET", "/api/users/abc", new ByteArrayOutputStream());
+		table.handle(context);
+		assertFalse(context.getResponse().isClosed());
+	}
+
+	@Test
+	public void testPathParams() throws IOException
+	{
+		PointyRouteGroup group = new PointyRouteGroup("/users");
+		group.GET("/{name}\\.json", ctx -> ctx.send("json " + ctx.getPathParam("name")));
+		group.GET("/{id}", ctx -> ctx.send("user " + ctx.getPathParam("id")));
+		group.GET("/{id}/posts/{postId}", ctx -> ctx.send(ctx.getPathParam("id") + ":" + ctx.getPathParam("postId")));
+		group.GET("/me", ctx -> ctx.send("me"));
+
+		PointyRouteTable table = PointyRouteTable.compile(group);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		table.handle(createContext("GET", "/users/12", baos));
+		assertTrue(baos.toString().endsWith("user 12"));
+
+		baos = new ByteArrayOutputStream();
+		table.handle(createContext("GET", "/users/a%20b/posts/7", baos));
+		assertTrue(baos.toString().endsWith("a b:7"));
+
+		baos = new ByteArrayOutputStream();
+		table.handle(createContext("GET", "/users/abc.json", baos));
+		assertTrue(baos.toString().endsWith("json abc"));
+
+		// Parameter route is registered before literal one, so it wins.
+		baos = new ByteArrayOutputStream();
+		table.handle(createContext("GET", "/users/me", baos));
+		assertTrue(baos.toString().endsWith("user me"));
+
+		HttpContext context = createContext("GET", "/users/", new ByteArrayOutputStream());
+		table.handle(context);
+		assertFalse(context.getResponse().isClosed());
+
+		context = createContext("POST", "/users/12", new ByteArrayOutputStream());
+		table.handle(context);
+		assertFalse(context.getResponse().isClosed());
+	}
+
+	@Test
+	public void testOrder() throws IOException
+	{
+		PointyRouteGroup group = new PointyRouteGroup("");
+		group.ANY("/.*", ctx -> ctx.setHeader("X-Order", "regex"));
+		group.ANY("/items/{id}", ctx -> ctx.setHeader("X-Order", ctx.getResponse().getHttpHeaders().get("X-Order") + ",trie"));
+		group.GET("/items/[0-9]+", ctx -> ctx.send(ctx.getResponse().getHttpHeaders().get("X-Order") + "," + ctx.getPathParams().size()));
+
+		PointyRouteTable table = PointyRouteTable.compile(group);
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		table.handle(createContext("GET", "/items/5", baos));
+		assertTrue(baos.toString().endsWith("regex,trie,0"));
+	}
+
+	@Test
+	public void testMethods() throws IOException
+	{
+		PointyRoute route = new PointyRoute("/items");
+		route.ANY("/.*", ctx -> ctx.setHeader("X-Any", "true"));
+		route.GET("/{id}", ctx -> ctx.send("get"));
+		route.DELETE("/{id}", ctx -> ctx.send("delete"));
+		route.PATCH("/{id}", ctx -> ctx.send("patch"));
+		route.HEAD("/{id}", ctx -> ctx.send("head"));
+		route.OPTIONS("/{id}", ctx -> ctx.send("options"));
+		route.ANY("/{id}", ctx -> ctx.send("any"));
+
+		PointyRouteGroup group = new PointyRouteGroup("");
+		group.addRoute(route);
+		PointyRouteTable table = PointyRouteTable.compile(group);
+		assertEquals(7, table.size());
+
+		for (String method : new String[] { "GET", "DELETE", "PATCH", "HEAD", "OPTIONS" })
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			HttpContext context = createContext(method, "/items/1", baos);
+			table.handle(context);
+			assertEquals("true", context.getResponse().getHttpHeaders().get("X-Any"));
+			if ("HEAD".equals(method))
+			{
+				assertTrue(baos.toString().contains("content-length: 4\r\n"));
+				assertTrue(baos.toString().endsWith("\r\n\r\n"));
+			}
+			else
+			{
+				assertTrue(baos.toString().endsWith(method.toLowerCase()));
+			}
+		}
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		table.handle(createContext("POST", "/items/1", baos));
+		assertTrue(baos.toString().endsWith("any"));
+	}
+
+	@Test
+	public void testPrefix() throws IOException
+	{
+		PointyRouteGroup group = new PointyRouteGroup("");
+		PointyRouteGroup users = new PointyRouteGroup("/users");
+		users.GET("/[0-9]+", ctx -> ctx.send("user"));
+		group.addRouteGroup(users);
+		PointyRouteGroup orders = new PointyRouteGroup("/orders");
+		orders.GET("/[0-9]+", ctx -> ctx.send("order"));
+		group.addRouteGroup(orders);
+		group.GET("/optional/?", ctx -> ctx.send("optional"));
+		group.GET("/joined/*slash", ctx -> ctx.send("joined"));
+		group.GET("/first|/second", ctx -> ctx.send("alternation"));
+
+		String[][] requests = { { "/users/1", "user" }, { "/orders/1", "order" }, { "/optional", "optional" }, { "/joinedslash", "joined" }, { "/second", "alternation" } };
+		PointyRouteTable table = PointyRouteTable.compile(group);
+		for (String[] request : requests)
+		{
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			table.handle(createContext("GET", request[0], baos));
+			assertTrue(baos.toString().endsWith(request[1]), request[0]);
+		}
+
+		HttpContext context = createContext("GET", "/products/1", new ByteArrayOutputStream());
+		table.handle(context);
+		assertFalse(context.getResponse().isClosed());
+	}
+
+	@Test
+	public void testCompileRoutes() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/first", ctx -> ctx.send("first"));
+			}
+		};
+		endpoint.onInit();
+		endpoint.compileRoutes();
+		endpoint.GET("/second", ctx -> ctx.send("second"));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		endpoint.handle(createContext("GET", "/second", baos));
+		assertTrue(baos.toString().endsWith("404 File Not Found"));
+
+		endpoint.compileRoutes();
+		baos = new ByteArrayOutputStream();
+		endpoint.handle(createContext("GET", "/second", baos));
+		assertTrue(baos.toString().endsWith("second"));
+	}
+
+	@Test
+	public void testSwapRoutes() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/version", ctx -> ctx.send("blue"));
+			}
+		};
+		endpoint.onInit();
+		endpoint.compileRoutes();
+		PointyRouteTable blue = endpoint.getRouteTable();
+
+		PointyRouteGroup green = new PointyRouteGroup("");
+		green.GET("/version", ctx -> ctx.send("green"));
+		assertSame(blue, endpoint.swapRoutes(green));
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		endpoint.handle(createContext("GET", "/version", baos));
+		assertTrue(baos.toString().endsWith("green"));
+
+		endpoint.swapRouteTable(blue);
+		baos = new ByteArrayOutputStream();
+		endpoint.handle(createContext("GET", "/version", baos));
+		assertTrue(baos.toString().endsWith("blue"));
+	}
+}
@@ -0,0 +1,256 @@
+package cz.tvrzna.pointy.http.router;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+
+import org.junit.jupiter.api.Test;
+
+import cz.tvrzna.pointy.http.HttpContext;
+import cz.tvrzna.pointy.http.HttpHeaders;
+import cz.tvrzna.pointy.http.HttpRequest;
+import cz.tvrzna.pointy.http.HttpResponse;
+import cz.tvrzna.pointy.router.PointyStaticAsset;
+import cz.tvrzna.pointy.router.PointyStaticCache;
+import cz.tvrzna.pointy.router.PointyStaticRoute;
+
+public class PointyStaticCacheTest
+{
+	@Test
+	public void testEviction()
+	{
+		PointyStaticCache cache = new PointyStaticCache(100);
+		assertTrue(cache.put("/a", new PointyStaticAsset(new byte[20], "application/octet-stream")));
+		assertTrue(cache.put("/b", new PointyStaticAsset(new byte[20], "application/octet-stream")));
+		assertTrue(cache.put("/c", new PointyStaticAsset(new byte[20], "application/octet-stream")));
+		assertTrue(cache.put("/d", new PointyStaticAsset(new byte[20], "application/octet-stream")));
+		assertFalse(cache.put("/large", new PointyStaticAsset(new byte[30], "application/octet-stream")));
+		assertEquals(80, cache.getSize());
+
+		assertNotNull(cache.get("/a"));
+		assertTrue(cache.put("/e", new PointyStaticAsset(new byte[25], "application/octet-stream")));
+		assertEquals(4, cache.getCount());
+		assertEquals(85, cache.getSize());
+		assertNull(cache.get("/b"));
+		assertNotNull(cache.get("/a"));
+
+		assertEquals(2, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+		assertEquals(1, cache.getEvictionCount());
+	}
+
+	@Test
+	public void testStaticRoute() throws IOException
+	{
+		PointyStaticCache cache = new PointyStaticCache(1024 * 1024);
+		PointyStaticRoute route = new PointyStaticRoute("/.*", "testapp", cache);
+
+		String first = handle(route, "/");
+		String second = handle(route, "/index.html");
+		assertTrue(first.startsWith("HTTP/1.1 200"));
+		assertTrue(first.contains("content-type: text/html\r\n"));
+		assertTrue(first.contains("etag: \""));
+		assertEquals(first.substring(first.indexOf("\r\n\r\n")), second.substring(second.indexOf("\r\n\r\n")));
+		assertEquals(1, cache.getCount());
+		assertEquals(1, cache.getHitCount());
+		assertEquals(1, cache.getMissCount());
+
+		assertTrue(handle(route, "/missing.css").startsWith("HTTP/1.1 404"));
+		assertEquals(1, cache.getCount());
+	}
+
+	@Test
+	public void testOversizeResource() throws IOException
+	{
+		PointyStaticCache cache = new PointyStaticCache(64);
+		PointyStaticRoute route = new PointyStaticRoute("/.*", "testapp", cache);
+
+		for (int i = 0; i < 2; i++)
+		{
+			String response = handle(route, "/index.html");
+			assertTrue(response.startsWith("HTTP/1.1 200"));
+			assertFalse(response.contains("etag"));
+			assertTrue(response.endsWith("</html>"));
+		}
+		assertEquals(0, cache.getCount());
+		assertFalse(cache.isCacheable(17));
+		assertTrue(cache.isCacheable(16));
+	}
+
+	@Test
+	public void testGzip() throws IOException
+	{
+		PointyStaticCache cache = new PointyStaticCache(1024 * 1024);
+		PointyStaticRoute route = new PointyStaticRoute("/.*", "testapp", cache);
+
+		String plain = handle(route, "/index.html");
+		String gzip = handle(route, "/index.html", "Accept-Encoding: gzip, deflate\r\n");
+		assertFalse(plain.contains("content-encoding: gzip"));
+		assertTrue(plain.contains("vary: Accept-Encoding\r\n"));
+		assertTrue(gzip.contains("content-encoding: gzip\r\n"));
+		assertTrue(gzip.contains("vary: Accept-Encoding\r\n"));
+		assertEquals(1, cache.getCount());
+
+		PointyStaticAsset asset = cache.get("testapp/index.html");
+		assertNotNull(asset.getGzipContent());
+		assertEquals(asset.getContent().length + asset.getGzipContent().length, cache.getSize());
+		assertTrue(gzip.endsWith(new String(asset.getGzipContent(), StandardCharsets.ISO_8859_1)));
+
+		PointyStaticAsset image = new PointyStaticAsset(new byte[] { 1, 2, 3 }, "image/png");
+		cache.put("testapp/image.png", image);
+		String binary = handle(route, "/image.png", "Accept-Encoding: gzip\r\n");
+		assertFalse(binary.contains("content-encoding"));
+		assertTrue(binary.contains("etag: " + image.getETag() + "\r\n"));
+		assertTrue(binary.endsWith("\r\n\r\n\u0001\u0002\u0003"));
+
+		String uncached = handle(new PointyStaticRoute("/.*", "testapp", null), "/index.html", "Accept-Encoding: gzip\r\n");
+		assertFalse(uncached.contains("content-encoding"));
+		assertTrue(uncached.endsWith(new String(asset.getContent(), StandardCharsets.ISO_8859_1)));
+
+		Path directory = Files.createTempDirectory("pointy");
+		try
+		{
+			Files.write(directory.resolve("app.js"), "plain".getBytes(StandardCharsets.US_ASCII));
+			Files.write(directory.resolve("app.js.gz"), "precompressed".getBytes(StandardCharsets.US_ASCII));
+			PointyStaticRoute fileRoute = new PointyStaticRoute("/.*", directory);
+
+			assertTrue(handle(fileRoute, "/app.js").endsWith("\r\n\r\nplain"));
+			String precompressed = handle(fileRoute, "/app.js", "Accept-Encoding: gzip\r\n");
+			assertTrue(precompressed.contains("content-encoding: gzip\r\n"));
+			assertTrue(precompressed.endsWith("\r\n\r\nprecompressed"));
+		}
+		finally
+		{
+			Files.delete(directory.resolve("app.js.gz"));
+			Files.delete(directory.resolve("app.js"));
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testConditional() throws IOException
+	{
+		PointyStaticCache cache = new PointyStaticCache(1024 * 1024);
+		PointyStaticRoute route = new PointyStaticRoute("/.*", "testapp", cache);
+		PointyStaticAsset asset = cache.get("testapp/index.html");
+		assertNull(asset);
+
+		String full = handle(route, "/index.html");
+		asset = cache.get("testapp/index.html");
+		assertTrue(full.contains("etag: " + asset.getETag() + "\r\n"));
+		assertTrue(full.contains("last-modified: "));
+
+		String notModified = handle(route, "/index.html", "If-None-Match: \"other\", W/" + asset.getETag() + "\r\n");
+		assertTrue(notModified.startsWith("HTTP/1.1 304 Not Modified\r\n"));
+		assertTrue(notModified.contains("etag: " + asset.getETag() + "\r\n"));
+		assertFalse(notModified.contains("content-length"));
+		assertTrue(notModified.endsWith("\r\n\r\n"));
+
+		assertTrue(handle(route, "/index.html", "If-None-Match: " + asset.getETag() + "\r\nAccept-Encoding: gzip\r\n").startsWith("HTTP/1.1 200"));
+		assertTrue(handle(route, "/index.html", "If-None-Match: " + asset.getGzipETag() + "\r\nAccept-Encoding: gzip\r\n").startsWith("HTTP/1.1 304"));
+
+		PointyStaticRoute uncachedRoute = new PointyStaticRoute("/.*", "testapp", null);
+		String uncached = handle(uncachedRoute, "/index.html");
+		int start = uncached.indexOf("last-modified: ") + "last-modified: ".length();
+		String resourceModified = uncached.substring(start, uncached.indexOf("\r\n", start));
+		String uncachedNotModified = handle(uncachedRoute, "/index.html", "If-Modified-Since: " + resourceModified + "\r\n");
+		assertTrue(uncachedNotModified.startsWith("HTTP/1.1 304"));
+		assertTrue(uncachedNotModified.endsWith("\r\n\r\n"));
+
+		Path directory = Files.createTempDirectory("pointy");
+		Path file = directory.resolve("app.js");
+		try
+		{
+			Files.write(file, "plain".getBytes(StandardCharsets.US_ASCII));
+			Files.setLastModifiedTime(file, FileTime.fromMillis(1500000000000l));
+			PointyStaticRoute fileRoute = new PointyStaticRoute("/.*", directory);
+
+			String lastModified = HttpHeaders.formatDate(1500000000000l);
+			assertTrue(handle(fileRoute, "/app.js").contains("last-modified: " + lastModified + "\r\n"));
+			assertTrue(handle(fileRoute, "/app.js", "If-Modified-Since: " + lastModified + "\r\n").startsWith("HTTP/1.1 304"));
+			assertTrue(handle(fileRoute, "/app.js", "If-Modified-Since: " + HttpHeaders.formatDate(1400000000000l) + "\r\n").startsWith("HTTP/1.1 200"));
+			assertTrue(handle(fileRoute, "/app.js", "If-None-Match: \"other\"\r\nIf-Modified-Since: " + lastModified + "\r\n").startsWith("HTTP/1.1 200"));
+		}
+		finally
+		{
+			Files.delete(file);
+			Files.delete(directory);
+		}
+	}
+
+	@Test
+	public void testRange() throws IOException
+	{
+		PointyStaticCache cache = new PointyStaticCache(1024 * 1024);
+		PointyStaticRoute route = new PointyStaticRoute("/.*", "testapp", cache);
+		handle(route, "/index.html");
+		PointyStaticAsset asset = cache.get("testapp/index.html");
+		String content = new String(asset.getContent(), StandardCharsets.ISO_8859_1);
+		int length = asset.getLength();
+
+		String partial = handle(route, "/index.html", "Range: bytes=-10\r\nAccept-Encoding: gzip\r\n");
+		assertTrue(partial.startsWith("HTTP/1.1 206 Partial Content\r\n"));
+		assertTrue(partial.contains("content-range: bytes " + (length - 10) + "-" + (length - 1) + "/" + length + "\r\n"));
+		assertTrue(partial.contains("content-length: 10\r\n"));
+		assertFalse(partial.contains("content-encoding"));
+		assertTrue(partial.endsWith("\r\n\r\n" + content.substring(length - 10)));
+
+		String multipart = handle(route, "/index.html", "Range: bytes=0-4,20-24\r\n");
+		assertTrue(multipart.contains("content-type: multipart/byteranges; boundary="));
+		assertTrue(multipart.contains("Content-Type: text/html\r\nContent-Range: bytes 0-4/" + length + "\r\n\r\n" + content.substring(0, 5) + "\r\n--"));
+		assertTrue(multipart.contains("Content-Range: bytes 20-24/" + length + "\r\n\r\n" + content.substring(20, 25) + "\r\n--"));
+		String head = multipart.substring(0, multipart.indexOf("\r\n\r\n"));
+		int contentLength = Integer.parseInt(head.substring(head.indexOf("content-length: ") + 16).split("\r\n")[0]);
+		assertEquals(multipart.length() - head.length() - 4, contentLength);
+
+		assertTrue(handle(route, "/index.html", "Range: bytes=" + length + "-\r\n").startsWith("HTTP/1.1 416"));
+		assertTrue(handle(route, "/index.html", "Range: bytes=0-4\r\nIf-Range: " + asset.getETag() + "\r\n").startsWith("HTTP/1.1 206"));
+		assertTrue(handle(route, "/index.html", "Range: bytes=0-4\r\nIf-Range: \"other\"\r\n").startsWith("HTTP/1.1 200"));
+
+		Path directory = Files.createTempDirectory("pointy");
+		Path file = directory.resolve("video.mp4");
+		try
+		{
+			Files.write(file, "0123456789".getBytes(StandardCharsets.US_ASCII));
+			PointyStaticRoute fileRoute = new PointyStaticRoute("/.*", directory);
+
+			String response = handle(fileRoute, "/video.mp4", "Range: bytes=2-5\r\n");
+			assertTrue(response.startsWith("HTTP/1.1 206"));
+			assertTrue(response.contains("accept-ranges: bytes\r\n"));
+			assertTrue(response.contains("content-range: bytes 2-5/10\r\n"));
+			assertTrue(response.endsWith("\r\n\r\n2345"));
+
+			response = handle(fileRoute, "/video.mp4", "Range: bytes=20-30\r\n");
+			assertTrue(response.startsWith("HTTP/1.1 416"));
+			assertTrue(response.contains("content-range: bytes */10\r\n"));
+		}
+		finally
+		{
+			Files.delete(file);
+			Files.delete(directory);
+		}
+	}
+
+	private String handle(PointyStaticRoute route, String uri) throws IOException
+	{
+		return handle(route, uri, "");
+	}
+
+	private String handle(PointyStaticRoute route, String uri, String headers) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		String request = "GET " + uri + " HTTP/1.1\r\n" + headers + "\r\n";
+		route.getRouteHandler().handle(new HttpContext(new HttpRequest(new ByteArrayInputStream(request.getBytes()), "127.0.0.1"), new HttpResponse(baos)));
+		return new String(baos.toByteArray(), StandardCharsets.ISO_8859_1);
+	}
+}
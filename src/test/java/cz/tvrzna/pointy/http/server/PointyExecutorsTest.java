@@ -0,0 +1,60 @@
+package cz.tvrzna.pointy.http.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+import cz.tvrzna.pointy.server.PointyExecutors;
+
+public class PointyExecutorsTest
+{
+
+	@Test
+	public void testBoundedPool() throws Exception
+	{
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch latch = new CountDownLatch(1);
+		ExecutorService executor = PointyExecutors.newBoundedPool(1, 1, 1, 1000l);
+
+		executor.execute(() -> {
+			try
+			{
+				started.countDown();
+				latch.await(5, TimeUnit.SECONDS);
+			}
+			catch (InterruptedException e)
+			{
+				Thread.currentThread().interrupt();
+			}
+		});
+		started.await(5, TimeUnit.SECONDS);
+		Future<String> queued = executor.submit(() -> Thread.currentThread().getName());
+		assertThrows(RejectedExecutionException.class, () -> executor.execute(() -> {
+		}));
+
+		latch.countDown();
+		assertTrue(queued.get(5, TimeUnit.SECONDS).startsWith("pointyWorker-"));
+		executor.shutdown();
+	}
+
+	@Test
+	public void testVirtualThreadPerTaskExecutor() throws Exception
+	{
+		if (!PointyExecutors.isVirtualThreadSupported())
+		{
+			assertThrows(UnsupportedOperationException.class, () -> PointyExecutors.newVirtualThreadPerTaskExecutor());
+			return;
+		}
+		ExecutorService executor = PointyExecutors.newVirtualThreadPerTaskExecutor();
+		assertEquals(Boolean.TRUE, executor.submit(() -> Thread.class.getMethod("isVirtual").invoke(Thread.currentThread())).get(5, TimeUnit.SECONDS));
+		executor.shutdown();
+	}
+}
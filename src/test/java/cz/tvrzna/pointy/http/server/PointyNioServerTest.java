@@ -0,0 +1,607 @@
+package cz.tvrzna.pointy.http.server;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.Socket;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import cz.tvrzna.pointy.http.HttpEvent;
+import cz.tvrzna.pointy.http.HttpEventBroadcaster;
+import cz.tvrzna.pointy.http.HttpStatus;
+import cz.tvrzna.pointy.http.HttpWebSocket;
+import cz.tvrzna.pointy.http.HttpWebSocketHandler;
+import cz.tvrzna.pointy.router.PointyEndpoint;
+import cz.tvrzna.pointy.router.PointyStaticRoute;
+import cz.tvrzna.pointy.server.PointyNioServer;
+
+public class PointyNioServerTest
+{
+	private PointyEndpoint createEndpoint()
+	{
+		return new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/testEndpoint", context -> context.send("ok"));
+				POST("/echo", context -> context.send(context.getRequest().getBody()));
+			}
+		};
+	}
+
+	@Test
+	public void testPointyNioServer() throws IOException
+	{
+		PointyNioServer server = new PointyNioServer("", 0, createEndpoint());
+		assertFalse(server.isRunning());
+		assertEquals(-1, server.getPort());
+		server.stop();
+		server.start();
+		assertTrue(server.isRunning());
+
+		HttpURLConnection conn = openConnection(server, "/testEndpoint");
+		assertEquals(HttpStatus.OK_200, conn.getResponseCode());
+		assertEquals("ok", readBody(conn.getInputStream()));
+
+		assertEquals(HttpStatus.NOT_FOUND_404, openConnection(server, "/nothing").getResponseCode());
+
+		server.stop();
+		assertFalse(server.isRunning());
+	}
+
+	@Test
+	public void testPost() throws IOException
+	{
+		PointyNioServer server = new PointyNioServer("", 0, createEndpoint());
+		server.start();
+
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < 5000; i++)
+		{
+			sb.append("message");
+		}
+
+		HttpURLConnection conn = openConnection(server, "/echo");
+		conn.setRequestMethod("POST");
+		conn.setDoOutput(true);
+		try (OutputStream os = conn.getOutputStream())
+		{
+			os.write(sb.toString().getBytes());
+		}
+		assertEquals(HttpStatus.OK_200, conn.getResponseCode());
+		assertEquals(sb.toString(), readBody(conn.getInputStream()));
+
+		server.stop();
+	}
+
+	@Test
+	public void testParallelRequests() throws InterruptedException
+	{
+		PointyNioServer server = new PointyNioServer("", 0, createEndpoint(), 2, 4);
+		server.start();
+
+		AtomicInteger succeeded = new AtomicInteger();
+		List<Thread> lstThreads = new ArrayList<>();
+		for (int i = 0; i < 20; i++)
+		{
+			lstThreads.add(new Thread(() -> {
+				try
+				{
+					if (openConnection(server, "/testEndpoint").getResponseCode() == HttpStatus.OK_200)
+					{
+						succeeded.incrementAndGet();
+					}
+				}
+				catch (IOException e)
+				{
+					e.printStackTrace();
+				}
+			}));
+		}
+		for (Thread thread : lstThreads)
+		{
+			thread.start();
+		}
+		for (Thread thread : lstThreads)
+		{
+			thread.join();
+		}
+
+		assertEquals(20, succeeded.get());
+		server.stop();
+	}
+
+	@Test
+	public void testKeepAlive() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/testEndpoint", context -> context.send("ok"));
+			}
+		};
+
+		PointyNioServer server = new PointyNioServer("", 0, endpoint);
+		server.setMaxKeepAliveRequests(3);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			OutputStream os = socket.getOutputStream();
+			InputStream is = socket.getInputStream();
+
+			os.write("GET /testEndpoint HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			assertTrue(readResponse(is).contains("connection: keep-alive"));
+			os.write("GET /testEndpoint HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			assertTrue(readResponse(is).contains("connection: keep-alive"));
+			os.write("GET /testEndpoint HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			assertTrue(readResponse(is).contains("connection: close"));
+			assertEquals(-1, is.read());
+		}
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write("GET /testEndpoint HTTP/1.0\r\n\r\n".getBytes());
+			assertTrue(readResponse(socket.getInputStream()).contains("connection: close"));
+			assertEquals(-1, socket.getInputStream().read());
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testPipelining() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/first", context -> context.send("first"));
+				POST("/echo", context -> context.send(context.getRequest().getBody()));
+				GET("/last", context -> context.send("last"));
+			}
+		};
+
+		PointyNioServer server = new PointyNioServer("", 0, endpoint);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n" + "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 6\r\n\r\nsecond"
+					+ "GET /last HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+			InputStream is = socket.getInputStream();
+			assertTrue(readResponse(is).endsWith("\r\n\r\nfirst"));
+			assertTrue(readResponse(is).endsWith("\r\n\r\nsecond"));
+			assertTrue(readResponse(is).endsWith("\r\n\r\nlast"));
+			assertEquals(-1, is.read());
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testHeadPipelining() throws IOException
+	{
+		Path file = Files.createTempFile("pointy", ".bin");
+		Files.write(file, new byte[10000]);
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/text", context -> context.send("text"));
+				ANY("/stream", context -> context.stream(os -> os.write("streamed".getBytes())));
+				ANY("/file", context -> context.send(file));
+			}
+		};
+
+		PointyNioServer server = new PointyNioServer("", 0, endpoint);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(("HEAD /text HTTP/1.1\r\nHost: localhost\r\n\r\n" + "HEAD /stream HTTP/1.1\r\nHost: localhost\r\n\r\n"
+					+ "HEAD /file HTTP/1.1\r\nHost: localhost\r\n\r\n" + "GET /text HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+			InputStream is = socket.getInputStream();
+			String head = readHead(is);
+			assertTrue(head.startsWith("http/1.1 200"));
+			assertTrue(head.contains("content-length: 4\r\n"));
+			head = readHead(is);
+			assertTrue(head.startsWith("http/1.1 200"));
+			assertTrue(head.contains("transfer-encoding: chunked\r\n"));
+			head = readHead(is);
+			assertTrue(head.startsWith("http/1.1 200"));
+			assertTrue(head.contains("content-length: 10000\r\n"));
+			assertTrue(readResponse(is).endsWith("\r\n\r\ntext"));
+			assertEquals(-1, is.read());
+		}
+		finally
+		{
+			server.stop();
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testStream() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/stream", context -> context.stream(os -> {
+					for (int i = 0; i < 10000; i++)
+					{
+						os.write(("line " + i + "\n").getBytes());
+					}
+				}));
+				GET("/broken", context -> context.stream(os -> {
+					os.write("partial".getBytes());
+					throw new IOException("Broken stream");
+				}));
+			}
+		};
+
+		PointyNioServer server = new PointyNioServer("", 0, endpoint);
+		server.start();
+		try
+		{
+			StringBuilder expected = new StringBuilder();
+			for (int i = 0; i < 10000; i++)
+			{
+				expected.append("line ").append(i).append("\n");
+			}
+			HttpURLConnection conn = openConnection(server, "/stream");
+			assertEquals(HttpStatus.OK_200, conn.getResponseCode());
+			assertEquals("chunked", conn.getHeaderField("Transfer-Encoding"));
+			assertEquals(expected.toString(), readBody(conn.getInputStream()));
+
+			HttpURLConnection broken = openConnection(server, "/broken");
+			assertEquals(HttpStatus.OK_200, broken.getResponseCode());
+			assertThrows(IOException.class, () -> readBody(broken.getInputStream()));
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testEventStream() throws IOException, InterruptedException
+	{
+		HttpEventBroadcaster broadcaster = new HttpEventBroadcaster();
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/events", context -> broadcaster.subscribe(context.eventStream()));
+			}
+		};
+
+		PointyNioServer server = new PointyNioServer("", 0, endpoint, 1, 1);
+		server.start();
+		try (Socket first = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			String event = "event: update\ndata: {\"value\":1}\n\n";
+			String chunk = Integer.toHexString(event.length()) + "\r\n" + event + "\r\n";
+			try (Socket second = new Socket(server.getIpAddress(), server.getPort()))
+			{
+				for (Socket socket : new Socket[] { first, second })
+				{
+					socket.setSoTimeout(5000);
+					socket.getOutputStream().write("GET /events HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+					assertTrue(readHead(socket.getInputStream()).contains("content-type: text/event-stream"));
+				}
+				for (int i = 0; i < 50 && broadcaster.getSubscriberCount() < 2; i++)
+				{
+					Thread.sleep(100);
+				}
+				assertEquals(2, broadcaster.getSubscriberCount());
+
+				assertEquals(2, broadcaster.broadcast(new HttpEvent("update", "{\"value\":1}")));
+				assertEquals(chunk, readString(first.getInputStream(), chunk.length()));
+				assertEquals(chunk, readString(second.getInputStream(), chunk.length()));
+			}
+
+			for (int i = 0; i < 50 && broadcaster.heartbeat() > 1; i++)
+			{
+				Thread.sleep(100);
+			}
+			assertEquals(1, broadcaster.getSubscriberCount());
+
+			broadcaster.close();
+			String rest = readBody(first.getInputStream());
+			assertTrue(rest.endsWith("0\r\n\r\n"));
+			assertEquals("", rest.substring(0, rest.length() - 5).replace("3\r\n:\n\n\r\n", ""));
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+
+	@Test
+	public void testWebSocket() throws IOException, InterruptedException
+	{
+		List<String> closed = new ArrayList<>();
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/testEndpoint", context -> context.send("ok"));
+				WEBSOCKET("/ws", new HttpWebSocketHandler()
+				{
+					@Override
+					public void onText(HttpWebSocket webSocket, String message)
+					{
+						webSocket.send("echo:" + message);
+					}
+
+					@Override
+					public void onBinary(HttpWebSocket webSocket, byte[] message)
+					{
+						webSocket.send(message);
+					}
+
+					@Override
+					public void onClose(HttpWebSocket webSocket, int code, String reason)
+					{
+						synchronized (closed)
+						{
+							closed.add(code + ":" + reason);
+						}
+					}
+				});
+			}
+		};
+
+		PointyNioServer server = new PointyNioServer("", 0, endpoint, 1, 1);
+		server.start();
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			OutputStream os = socket.getOutputStream();
+			InputStream is = socket.getInputStream();
+			ByteArrayOutputStream handshake = new ByteArrayOutputStream();
+			handshake.write(("GET /ws HTTP/1.1\r\nHost: localhost\r\nUpgrade: websocket\r\nConnection: Upgrade\r\n"
+					+ "Sec-WebSocket-Key: dGhlIHNhbXBsZSBub25jZQ==\r\nSec-WebSocket-Version: 13\r\n\r\n").getBytes());
+			writeFrame(handshake, 0x1, "first".getBytes());
+			os.write(handshake.toByteArray());
+
+			String head = readHead(is);
+			assertTrue(head.startsWith("http/1.1 101 switching protocols\r\n"));
+			assertTrue(head.contains("sec-websocket-accept: s3pplmbitxaq9kygzzhzrbk+xoo=\r\n"));
+			assertEquals("echo:first", new String(readFrame(is, 0x1)));
+
+			byte[] large = new byte[70000];
+			for (int i = 0; i < large.length; i++)
+			{
+				large[i] = (byte) i;
+			}
+			writeFrame(os, 0x2, large);
+			writeFrame(os, 0x9, "ping".getBytes());
+			assertArrayEquals(large, readFrame(is, 0x2));
+			assertEquals("ping", new String(readFrame(is, 0xA)));
+
+			assertEquals(HttpStatus.OK_200, openConnection(server, "/testEndpoint").getResponseCode());
+
+			writeFrame(os, 0x8, new byte[] { 0x03, (byte) 0xE8 });
+			assertEquals(1000, ByteBuffer.wrap(readFrame(is, 0x8)).getShort());
+			assertEquals(-1, is.read());
+			for (int i = 0; i < 50 && closed.isEmpty(); i++)
+			{
+				Thread.sleep(100);
+			}
+			assertEquals("1000:", closed.get(0));
+		}
+		finally
+		{
+			server.stop();
+		}
+	}
+
+	private void writeFrame(OutputStream os, int opcode, byte[] payload) throws IOException
+	{
+		byte[] mask = { 0x0f, 0x1e, 0x2d, 0x3c };
+		os.write(0x80 | opcode);
+		if (payload.length < 126)
+		{
+			os.write(0x80 | payload.length);
+		}
+		else
+		{
+			os.write(0x80 | 127);
+			for (int i = 7; i >= 0; i--)
+			{
+				os.write((int) ((long) payload.length >> (8 * i)));
+			}
+		}
+		os.write(mask);
+		byte[] masked = new byte[payload.length];
+		for (int i = 0; i < payload.length; i++)
+		{
+			masked[i] = (byte) (payload[i] ^ mask[i & 3]);
+		}
+		os.write(masked);
+	}
+
+	private byte[] readFrame(InputStream is, int opcode) throws IOException
+	{
+		assertEquals(0x80 | opcode, is.read());
+		long length = is.read();
+		if (length == 126)
+		{
+			length = (is.read() << 8) | is.read();
+		}
+		else if (length == 127)
+		{
+			length = 0;
+			for (int i = 0; i < 8; i++)
+			{
+				length = (length << 8) | is.read();
+			}
+		}
+		byte[] payload = new byte[(int) length];
+		for (int i = 0; i < payload.length; i++)
+		{
+			payload[i] = (byte) is.read();
+		}
+		return payload;
+	}
+
+	private String readHead(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		while (!head.toString().endsWith("\r\n\r\n"))
+		{
+			int b = is.read();
+			if (b < 0)
+			{
+				throw new IOException("Unexpected end of stream.");
+			}
+			head.write(b);
+		}
+		return head.toString().toLowerCase();
+	}
+
+	private String readString(InputStream is, int length) throws IOException
+	{
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++)
+		{
+			int b = is.read();
+			if (b < 0)
+			{
+				throw new IOException("Unexpected end of stream.");
+			}
+			bytes[i] = (byte) b;
+		}
+		return new String(bytes);
+	}
+
+	@Test
+	public void testStaticFile() throws IOException
+	{
+		Path directory = Files.createTempDirectory("pointy");
+		byte[] content = new byte[1024 * 1024];
+		for (int i = 0; i < content.length; i++)
+		{
+			content[i] = (byte) ('a' + i % 26);
+		}
+		Files.write(directory.resolve("large.txt"), content);
+		Files.write(directory.resolve("small.css"), new String(content, 0, 1000).getBytes());
+
+		PointyNioServer server = new PointyNioServer("", 0, new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				addStaticRoute(new PointyStaticRoute("/.*", directory));
+			}
+		});
+		server.start();
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(("GET /large.txt HTTP/1.1\r\nHost: localhost\r\n\r\nGET /large.txt HTTP/1.1\r\nHost: localhost\r\nRange: bytes=0-9,1000000-1000009\r\n\r\n"
+					+ "GET /../large.txt HTTP/1.1\r\nHost: localhost\r\n\r\n" + "GET /large.txt HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\n\r\n"
+					+ "GET /small.css HTTP/1.1\r\nHost: localhost\r\nAccept-Encoding: gzip\r\nConnection: close\r\n\r\n").getBytes());
+
+			InputStream is = socket.getInputStream();
+			String response = readResponse(is);
+			assertTrue(response.startsWith("http/1.1 200"));
+			assertTrue(response.endsWith("\r\n\r\n" + new String(content)));
+			String partial = readResponse(is);
+			assertTrue(partial.startsWith("http/1.1 206"));
+			assertTrue(partial.contains("content-range: bytes 0-9/1048576\r\n\r\n" + new String(content, 0, 10) + "\r\n"));
+			assertTrue(partial.contains("content-range: bytes 1000000-1000009/1048576\r\n\r\n" + new String(content, 1000000, 10) + "\r\n"));
+			assertTrue(readResponse(is).startsWith("http/1.1 404"));
+
+			String uncompressed = readResponse(is);
+			assertTrue(uncompressed.startsWith("http/1.1 200"));
+			assertFalse(uncompressed.contains("content-encoding"));
+			assertFalse(uncompressed.contains("-gz\""));
+			assertTrue(uncompressed.endsWith("\r\n\r\n" + new String(content)));
+
+			String compressed = readHead(is);
+			assertTrue(compressed.contains("content-encoding: gzip\r\n"));
+			assertTrue(compressed.contains("transfer-encoding: chunked\r\n"));
+			assertTrue(compressed.contains("-gz\"\r\n"));
+			assertTrue(readBody(is).endsWith("\r\n0\r\n\r\n"));
+		}
+		finally
+		{
+			server.stop();
+			Files.delete(directory.resolve("large.txt"));
+			Files.delete(directory.resolve("small.css"));
+			Files.delete(directory);
+		}
+	}
+
+	private String readResponse(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		while (!head.toString().endsWith("\r\n\r\n"))
+		{
+			int b = is.read();
+			if (b < 0)
+			{
+				throw new IOException("Unexpected end of stream.");
+			}
+			head.write(b);
+		}
+		String strHead = head.toString().toLowerCase();
+		int start = strHead.indexOf("content-length: ") + "content-length: ".length();
+		int contentLength = Integer.parseInt(strHead.substring(start, strHead.indexOf("\r\n", start)));
+		for (int i = 0; i < contentLength; i++)
+		{
+			head.write(is.read());
+		}
+		return head.toString().toLowerCase();
+	}
+
+	private HttpURLConnection openConnection(PointyNioServer server, String uri) throws IOException
+	{
+		return (HttpURLConnection) new URL("http://" + server.getIpAddress() + ":" + server.getPort() + uri).openConnection();
+	}
+
+	private String readBody(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = is.read(buffer)) > 0)
+		{
+			baos.write(buffer, 0, read);
+		}
+		is.close();
+		return baos.toString();
+	}
+}
@@ -4,11 +4,21 @@ import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.HttpURLConnection;
+import java.net.Socket;
 import java.net.URL;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
@@ -78,8 +88,8 @@ public class PointyServerTest
 			lstThreads.add(new Thread(() -> {
 				try
 				{
-					doConnection(server.getIpAddress(), server.getPort());
-					if (threadId > 1)
+					int status = doConnection(server.getIpAddress(), server.getPort());
+					if (threadId > 1 && status != HttpStatus.SERVICE_UNAVAILABLE_503)
 					{
 						Assertions.fail("Threads 2, 3 and 4 should not perform correct request to server.");
 					}
@@ -108,6 +118,377 @@ public class PointyServerTest
 		server.stop();
 	}
 
+	@Test
+	public void testPointyServerRejection() throws InterruptedException, IOException
+	{
+		CountDownLatch latch = new CountDownLatch(1);
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/testEndpoint", context -> {
+					try
+					{
+						latch.await(5, TimeUnit.SECONDS);
+					}
+					catch (InterruptedException e)
+					{
+						throw new InternalServerErrorException("Error", e);
+					}
+					context.send("ok");
+				});
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint, 1, 1, 0, 30000l);
+		server.start();
+
+		List<Integer> statuses = new ArrayList<>();
+		Thread blocking = new Thread(() -> {
+			try
+			{
+				statuses.add(doConnection(server.getIpAddress(), server.getPort()));
+			}
+			catch (IOException e)
+			{
+				Assertions.fail("Blocking request should not throw any exception", e);
+			}
+		});
+		blocking.start();
+		Thread.sleep(200l);
+
+		try
+		{
+			assertEquals(HttpStatus.SERVICE_UNAVAILABLE_503, doConnection(server.getIpAddress(), server.getPort()));
+		}
+		catch (IOException e)
+		{
+			// Rejected connection could be reset before response is read.
+		}
+		latch.countDown();
+		blocking.join();
+
+		assertEquals(HttpStatus.OK_200, statuses.get(0));
+		server.stop();
+	}
+
+	@Test
+	public void testPointyServerWithExecutor() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/testEndpoint", context -> context.send("ok"));
+			}
+		};
+
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		PointyServer server = new PointyServer("", 0, endpoint, executor, 30000l);
+		server.start();
+		assertEquals(executor, server.getExecutor());
+
+		assertEquals(HttpStatus.OK_200, doConnection(server.getIpAddress(), server.getPort()));
+
+		server.stop();
+		assertFalse(executor.isShutdown());
+		executor.shutdown();
+	}
+
+	@Test
+	public void testPointyServerVirtualThreads() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/testEndpoint", context -> context.send("ok"));
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint);
+		assertFalse(server.isVirtualThreads());
+		server.setVirtualThreads(true);
+		assertTrue(server.isVirtualThreads());
+		server.start();
+
+		assertEquals(HttpStatus.OK_200, doConnection(server.getIpAddress(), server.getPort()));
+		server.stop();
+	}
+
+	@Test
+	public void testKeepAlive() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/testEndpoint", context -> context.send("ok"));
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint);
+		server.setMaxKeepAliveRequests(3);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			OutputStream os = socket.getOutputStream();
+			InputStream is = socket.getInputStream();
+
+			os.write("GET /testEndpoint HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			assertTrue(readResponse(is).contains("connection: keep-alive"));
+			os.write("GET /testEndpoint HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			assertTrue(readResponse(is).contains("connection: keep-alive"));
+			os.write("GET /testEndpoint HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			assertTrue(readResponse(is).contains("connection: close"));
+			assertEquals(-1, is.read());
+		}
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write("GET /testEndpoint HTTP/1.0\r\n\r\n".getBytes());
+			assertTrue(readResponse(socket.getInputStream()).contains("connection: close"));
+			assertEquals(-1, socket.getInputStream().read());
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testIdleConnectionRelease() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/testEndpoint", context -> context.send("ok"));
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint, 1, 30000l);
+		server.setKeepAliveTimeoutMs(30000l);
+		server.start();
+
+		try (Socket idle = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			idle.setSoTimeout(5000);
+			idle.getOutputStream().write("GET /testEndpoint HTTP/1.1\r\nHost: localhost\r\n\r\n".getBytes());
+			assertTrue(readResponse(idle.getInputStream()).contains("connection: keep-alive"));
+
+			long start = System.nanoTime();
+			assertEquals(HttpStatus.OK_200, doConnection(server.getIpAddress(), server.getPort()));
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 5000l);
+			assertEquals(-1, idle.getInputStream().read());
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testPipelining() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				GET("/first", context -> context.send("first"));
+				POST("/echo", context -> context.send(context.getRequest().getBody()));
+				GET("/last", context -> context.send("last"));
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(("GET /first HTTP/1.1\r\nHost: localhost\r\n\r\n" + "POST /echo HTTP/1.1\r\nHost: localhost\r\nContent-Length: 6\r\n\r\nsecond"
+					+ "GET /last HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+			InputStream is = socket.getInputStream();
+			assertTrue(readResponse(is).endsWith("\r\n\r\nfirst"));
+			assertTrue(readResponse(is).endsWith("\r\n\r\nsecond"));
+			assertTrue(readResponse(is).endsWith("\r\n\r\nlast"));
+			assertEquals(-1, is.read());
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testHeadPipelining() throws IOException
+	{
+		Path file = Files.createTempFile("pointy", ".bin");
+		Files.write(file, new byte[10000]);
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				ANY("/text", context -> context.send("text"));
+				ANY("/stream", context -> context.stream(os -> os.write("streamed".getBytes())));
+				ANY("/file", context -> context.send(file));
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(("HEAD /text HTTP/1.1\r\nHost: localhost\r\n\r\n" + "HEAD /stream HTTP/1.1\r\nHost: localhost\r\n\r\n"
+					+ "HEAD /file HTTP/1.1\r\nHost: localhost\r\n\r\n" + "GET /text HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n").getBytes());
+
+			InputStream is = socket.getInputStream();
+			String head = readHead(is);
+			assertTrue(head.startsWith("http/1.1 200"));
+			assertTrue(head.contains("content-length: 4\r\n"));
+			head = readHead(is);
+			assertTrue(head.startsWith("http/1.1 200"));
+			assertTrue(head.contains("transfer-encoding: chunked\r\n"));
+			head = readHead(is);
+			assertTrue(head.startsWith("http/1.1 200"));
+			assertTrue(head.contains("content-length: 10000\r\n"));
+			assertTrue(readResponse(is).endsWith("\r\n\r\ntext"));
+			assertEquals(-1, is.read());
+		}
+		finally
+		{
+			server.stop();
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testChunkedBody() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				POST("/echo", context -> context.send(context.getRequest().getBody()));
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint);
+		server.setMaxBodySize(10);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			socket.getOutputStream().write(("POST /echo HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n" + "4\r\nchun\r\n3;ext=1\r\nked\r\n0\r\nTrailer: x\r\n\r\n"
+					+ "POST /echo HTTP/1.1\r\nContent-Length: 11\r\n\r\ntoo large!!").getBytes());
+
+			InputStream is = socket.getInputStream();
+			assertTrue(readResponse(is).endsWith("\r\n\r\nchunked"));
+			assertTrue(readResponse(is).startsWith("http/1.1 413"));
+			assertEquals(-1, is.read());
+		}
+		server.stop();
+	}
+
+	@Test
+	public void testStreamingBody() throws IOException
+	{
+		PointyEndpoint endpoint = new PointyEndpoint()
+		{
+			@Override
+			public void onInit()
+			{
+				POST("/count", context -> {
+					long count = 0;
+					try (InputStream is = context.getBodyInputStream())
+					{
+						byte[] buffer = new byte[1024];
+						int read;
+						while ((read = is.read(buffer)) >= 0)
+						{
+							count += read;
+						}
+					}
+					catch (IOException e)
+					{
+						e.printStackTrace();
+					}
+					context.send(String.valueOf(count));
+				});
+				POST("/ignore", context -> context.send("ignored"));
+			}
+		};
+
+		PointyServer server = new PointyServer("", 0, endpoint);
+		server.start();
+
+		try (Socket socket = new Socket(server.getIpAddress(), server.getPort()))
+		{
+			socket.setSoTimeout(5000);
+			OutputStream os = socket.getOutputStream();
+			int size = 3 * 1024 * 1024;
+			os.write(("POST /count HTTP/1.1\r\nContent-Length: " + size + "\r\n\r\n").getBytes());
+			byte[] chunk = new byte[65536];
+			for (int i = 0; i < size / chunk.length; i++)
+			{
+				os.write(chunk);
+			}
+			os.write("POST /ignore HTTP/1.1\r\nContent-Length: 4\r\n\r\nbody".getBytes());
+			os.write("POST /count HTTP/1.1\r\nContent-Length: 2\r\nConnection: close\r\n\r\nok".getBytes());
+
+			InputStream is = socket.getInputStream();
+			assertTrue(readResponse(is).endsWith("\r\n\r\n" + size));
+			assertTrue(readResponse(is).endsWith("\r\n\r\nignored"));
+			assertTrue(readResponse(is).endsWith("\r\n\r\n2"));
+			assertEquals(-1, is.read());
+		}
+		server.stop();
+	}
+
+	private String readHead(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		while (!head.toString().endsWith("\r\n\r\n"))
+		{
+			int b = is.read();
+			if (b < 0)
+			{
+				throw new IOException("Unexpected end of stream.");
+			}
+			head.write(b);
+		}
+		return head.toString().toLowerCase();
+	}
+
+	private String readResponse(InputStream is) throws IOException
+	{
+		ByteArrayOutputStream head = new ByteArrayOutputStream();
+		while (!head.toString().endsWith("\r\n\r\n"))
+		{
+			int b = is.read();
+			if (b < 0)
+			{
+				throw new IOException("Unexpected end of stream.");
+			}
+			head.write(b);
+		}
+		String strHead = head.toString().toLowerCase();
+		int start = strHead.indexOf("content-length: ") + "content-length: ".length();
+		int contentLength = Integer.parseInt(strHead.substring(start, strHead.indexOf("\r\n", start)));
+		for (int i = 0; i < contentLength; i++)
+		{
+			head.write(is.read());
+		}
+		return head.toString().toLowerCase();
+	}
+
 	private int doConnection(String ip, int port) throws IOException
 	{
 		HttpURLConnection conn = (HttpURLConnection) new URL("http://" + ip + ":" + port + "/testEndpoint").openConnection();